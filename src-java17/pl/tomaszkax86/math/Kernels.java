@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+/**
+ * Low-level kernels operating on {@code float} arrays.
+ *
+ * This is Java 17 implementation used from multi-release jar. If module
+ * {@code jdk.incubator.vector} is available (for example, when running
+ * with {@code --add-modules jdk.incubator.vector}), longer arrays are
+ * processed with {@link SimdKernels}. Otherwise, plain scalar loops are used.
+ * SIMD kernels can be disabled by setting system property
+ * {@code pl.tomaszkax86.math.simd} to {@code false}.
+ *
+ * @author Tomasz Kapuściński
+ */
+final class Kernels
+{
+    // true if SIMD kernels are available
+    private static final boolean SIMD = detect();
+
+    // arrays shorter than this are processed with scalar loops
+    private static final int SIMD_THRESHOLD = 16;
+
+
+    private Kernels() { }
+
+    /**
+     * Checks if this implementation uses SIMD instructions.
+     * @return {@code true} if SIMD instructions are used
+     */
+    static boolean isVectorized()
+    {
+        return SIMD;
+    }
+
+    /**
+     * Calculates dot product of two array ranges.
+     * @param first the first array
+     * @param firstOffset the offset to the first array
+     * @param second the second array
+     * @param secondOffset the offset to the second array
+     * @param count the number of elements
+     * @return the dot product
+     */
+    static float dot(float[] first, int firstOffset,
+            float[] second, int secondOffset, int count)
+    {
+        if (SIMD && count >= SIMD_THRESHOLD)
+            return SimdKernels.dot(first, firstOffset,
+                    second, secondOffset, count);
+
+        float sum = 0.0f;
+
+        for (int i = 0; i < count; i++)
+        {
+            sum += first[firstOffset + i] * second[secondOffset + i];
+        }
+
+        return sum;
+    }
+
+    /**
+     * Calculates sum of squares of array range.
+     * @param values the array
+     * @param offset the offset to the array
+     * @param count the number of elements
+     * @return the sum of squares
+     */
+    static float sumOfSquares(float[] values, int offset, int count)
+    {
+        if (SIMD && count >= SIMD_THRESHOLD)
+            return SimdKernels.sumOfSquares(values, offset, count);
+
+        float sum = 0.0f;
+
+        for (int i = offset, last = offset + count; i < last; i++)
+        {
+            sum += values[i] * values[i];
+        }
+
+        return sum;
+    }
+
+    /**
+     * Multiplies every element of array range by value.
+     * @param values the array
+     * @param offset the offset to the array
+     * @param count the number of elements
+     * @param multiplier the multiplier
+     */
+    static void scale(float[] values, int offset, int count, float multiplier)
+    {
+        if (SIMD && count >= SIMD_THRESHOLD)
+        {
+            SimdKernels.scale(values, offset, count, multiplier);
+            return;
+        }
+
+        for (int i = offset, last = offset + count; i < last; i++)
+        {
+            values[i] *= multiplier;
+        }
+    }
+
+    /**
+     * Adds two arrays element by element.
+     * @param first the first array
+     * @param second the second array
+     * @param result the array for results
+     * @param count the number of elements
+     */
+    static void add(float[] first, float[] second, float[] result, int count)
+    {
+        if (SIMD && count >= SIMD_THRESHOLD)
+        {
+            SimdKernels.add(first, second, result, count);
+            return;
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            result[i] = first[i] + second[i];
+        }
+    }
+
+    /**
+     * Adds scaled array range to another array range.
+     * The result of this operation can be summarized as:
+     * {@code result += multiplier * values}.
+     * @param multiplier the multiplier
+     * @param values the array to scale
+     * @param offset the offset to the array to scale
+     * @param result the array to add to
+     * @param resultOffset the offset to the array to add to
+     * @param count the number of elements
+     */
+    static void addScaled(float multiplier, float[] values, int offset,
+            float[] result, int resultOffset, int count)
+    {
+        if (SIMD && count >= SIMD_THRESHOLD)
+        {
+            SimdKernels.addScaled(multiplier, values, offset,
+                    result, resultOffset, count);
+            return;
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            result[resultOffset + i] += multiplier * values[offset + i];
+        }
+    }
+
+    /**
+     * Checks if SIMD kernels can be used.
+     * @return {@code true} if SIMD kernels are available
+     */
+    private static boolean detect()
+    {
+        String enabled = System.getProperty("pl.tomaszkax86.math.simd", "true");
+
+        if (!Boolean.parseBoolean(enabled)) return false;
+
+        try
+        {
+            return SimdKernels.length() > 1;
+        }
+        catch (LinkageError e)
+        {
+            // jdk.incubator.vector module is not available
+            return false;
+        }
+    }
+}
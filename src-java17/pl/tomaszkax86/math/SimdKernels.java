@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD kernels implemented with {@code jdk.incubator.vector}.
+ * This class is used only through {@link Kernels}.
+ *
+ * Element-wise kernels give the same results as scalar loops.
+ * Reductions sum values in different order, so results can differ
+ * in the last bits.
+ *
+ * @author Tomasz Kapuściński
+ */
+final class SimdKernels
+{
+    private static final VectorSpecies<Float> SPECIES
+            = FloatVector.SPECIES_PREFERRED;
+
+
+    private SimdKernels() { }
+
+    /**
+     * Returns the number of lanes in SIMD vectors.
+     * @return the number of lanes
+     */
+    static int length()
+    {
+        return SPECIES.length();
+    }
+
+    /**
+     * SIMD version of {@link Kernels#dot}.
+     */
+    static float dot(float[] first, int firstOffset,
+            float[] second, int secondOffset, int count)
+    {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(count);
+        int i = 0;
+
+        for (; i < bound; i += SPECIES.length())
+        {
+            FloatVector x = FloatVector.fromArray(SPECIES, first, firstOffset + i);
+            FloatVector y = FloatVector.fromArray(SPECIES, second, secondOffset + i);
+
+            sum = x.fma(y, sum);
+        }
+
+        float result = sum.reduceLanes(VectorOperators.ADD);
+
+        for (; i < count; i++)
+        {
+            result += first[firstOffset + i] * second[secondOffset + i];
+        }
+
+        return result;
+    }
+
+    /**
+     * SIMD version of {@link Kernels#sumOfSquares}.
+     */
+    static float sumOfSquares(float[] values, int offset, int count)
+    {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(count);
+        int i = 0;
+
+        for (; i < bound; i += SPECIES.length())
+        {
+            FloatVector x = FloatVector.fromArray(SPECIES, values, offset + i);
+
+            sum = x.fma(x, sum);
+        }
+
+        float result = sum.reduceLanes(VectorOperators.ADD);
+
+        for (; i < count; i++)
+        {
+            float x = values[offset + i];
+            result += x * x;
+        }
+
+        return result;
+    }
+
+    /**
+     * SIMD version of {@link Kernels#scale}.
+     */
+    static void scale(float[] values, int offset, int count, float multiplier)
+    {
+        int bound = SPECIES.loopBound(count);
+        int i = 0;
+
+        for (; i < bound; i += SPECIES.length())
+        {
+            FloatVector.fromArray(SPECIES, values, offset + i)
+                    .mul(multiplier)
+                    .intoArray(values, offset + i);
+        }
+
+        for (; i < count; i++)
+        {
+            values[offset + i] *= multiplier;
+        }
+    }
+
+    /**
+     * SIMD version of {@link Kernels#add}.
+     */
+    static void add(float[] first, float[] second, float[] result, int count)
+    {
+        int bound = SPECIES.loopBound(count);
+        int i = 0;
+
+        for (; i < bound; i += SPECIES.length())
+        {
+            FloatVector x = FloatVector.fromArray(SPECIES, first, i);
+            FloatVector y = FloatVector.fromArray(SPECIES, second, i);
+
+            x.add(y).intoArray(result, i);
+        }
+
+        for (; i < count; i++)
+        {
+            result[i] = first[i] + second[i];
+        }
+    }
+
+    /**
+     * SIMD version of {@link Kernels#addScaled}.
+     */
+    static void addScaled(float multiplier, float[] values, int offset,
+            float[] result, int resultOffset, int count)
+    {
+        int bound = SPECIES.loopBound(count);
+        int i = 0;
+
+        for (; i < bound; i += SPECIES.length())
+        {
+            FloatVector x = FloatVector.fromArray(SPECIES, values, offset + i);
+            FloatVector y = FloatVector.fromArray(SPECIES, result, resultOffset + i);
+
+            // separate multiply and add keeps results equal to scalar loop
+            x.mul(multiplier).add(y).intoArray(result, resultOffset + i);
+        }
+
+        for (; i < count; i++)
+        {
+            result[resultOffset + i] += multiplier * values[offset + i];
+        }
+    }
+}
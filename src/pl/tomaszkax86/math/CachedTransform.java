@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+/**
+ * Class implementing 4x4 transformation matrix with cached
+ * derived matrices.
+ *
+ * Inverse, inverse-transpose and normal matrix are computed when first
+ * requested and reused until the transformation changes. Transformation
+ * should be changed only through methods of this class, or
+ * {@link #invalidate()} must be called afterwards.
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class CachedTransform
+{
+    // transformation matrix
+    private final Matrix matrix = new Matrix(4);
+
+    // derived matrices and flags telling if they are up to date
+    private final Matrix inverse = new Matrix(4);
+    private final Matrix inverseTranspose = new Matrix(4);
+    private final Matrix3f normal = new Matrix3f();
+
+    private boolean inverseValid;
+    private boolean inverseTransposeValid;
+    private boolean normalValid;
+
+
+    /**
+     * Creates new identity transformation.
+     */
+    public CachedTransform()
+    {
+        loadIdentity();
+    }
+
+    /**
+     * Creates new transformation from 4x4 matrix.
+     * @param matrix the matrix to copy
+     */
+    public CachedTransform(Matrix matrix)
+    {
+        set(matrix);
+    }
+
+    /**
+     * Returns the transformation matrix. Returned matrix is owned
+     * by this object; if it is modified, {@link #invalidate()}
+     * must be called.
+     * @return the transformation matrix
+     */
+    public Matrix getMatrix()
+    {
+        return matrix;
+    }
+
+    /**
+     * Returns inverse of transformation matrix.
+     * Returned matrix is owned by this object and must not be modified.
+     * @return the inverse matrix
+     */
+    public Matrix getInverse()
+    {
+        if (!inverseValid)
+        {
+            Matrix.inverse(matrix, inverse);
+            inverseValid = true;
+        }
+
+        return inverse;
+    }
+
+    /**
+     * Returns transpose of inverse of transformation matrix.
+     * Returned matrix is owned by this object and must not be modified.
+     * @return the inverse-transpose matrix
+     */
+    public Matrix getInverseTranspose()
+    {
+        if (!inverseTransposeValid)
+        {
+            Matrix.transpose(getInverse(), inverseTranspose);
+            inverseTransposeValid = true;
+        }
+
+        return inverseTranspose;
+    }
+
+    /**
+     * Returns normal matrix, that is inverse-transpose of upper-left
+     * 3x3 part of transformation matrix.
+     * Returned matrix is owned by this object and must not be modified.
+     * @return the normal matrix
+     */
+    public Matrix3f getNormalMatrix()
+    {
+        if (!normalValid)
+        {
+            final Matrix m = matrix;
+
+            normal.m00 = m.get(0, 0); normal.m01 = m.get(0, 1); normal.m02 = m.get(0, 2);
+            normal.m10 = m.get(1, 0); normal.m11 = m.get(1, 1); normal.m12 = m.get(1, 2);
+            normal.m20 = m.get(2, 0); normal.m21 = m.get(2, 1); normal.m22 = m.get(2, 2);
+
+            normal.inverse().transpose();
+            normalValid = true;
+        }
+
+        return normal;
+    }
+
+    /**
+     * Marks all derived matrices as out of date.
+     * Must be called after transformation matrix is modified directly.
+     */
+    public void invalidate()
+    {
+        inverseValid = false;
+        inverseTransposeValid = false;
+        normalValid = false;
+    }
+
+    /**
+     * Copies values from 4x4 matrix to transformation matrix.
+     * @param matrix the matrix to copy values from
+     * @return this transformation
+     */
+    public CachedTransform set(Matrix matrix)
+    {
+        Matrix.copy(matrix, this.matrix);
+        invalidate();
+
+        return this;
+    }
+
+    /**
+     * Loads transformation matrix with identity values.
+     * @return this transformation
+     */
+    public CachedTransform loadIdentity()
+    {
+        matrix.loadIdentity();
+        invalidate();
+
+        return this;
+    }
+
+    /**
+     * Transforms this transformation by 4x4 matrix.
+     * @param transform the transformation matrix
+     * @return this transformation
+     */
+    public CachedTransform transform(Matrix transform)
+    {
+        matrix.transform(transform);
+        invalidate();
+
+        return this;
+    }
+
+    /**
+     * Transforms this transformation by translation matrix.
+     * @param dx the translation of X axis
+     * @param dy the translation of Y axis
+     * @param dz the translation of Z axis
+     * @return this transformation
+     */
+    public CachedTransform translate(float dx, float dy, float dz)
+    {
+        matrix.translate(dx, dy, dz);
+        invalidate();
+
+        return this;
+    }
+
+    /**
+     * Transforms this transformation by scale matrix.
+     * @param sx the scale on X axis
+     * @param sy the scale on Y axis
+     * @param sz the scale on Z axis
+     * @return this transformation
+     */
+    public CachedTransform scale(float sx, float sy, float sz)
+    {
+        matrix.scale(sx, sy, sz);
+        invalidate();
+
+        return this;
+    }
+
+    /**
+     * Transforms this transformation by rotation matrix around X axis.
+     * @param angle the rotation angle in degrees
+     * @return this transformation
+     */
+    public CachedTransform rotateX(float angle)
+    {
+        matrix.rotateX(angle);
+        invalidate();
+
+        return this;
+    }
+
+    /**
+     * Transforms this transformation by rotation matrix around Y axis.
+     * @param angle the rotation angle in degrees
+     * @return this transformation
+     */
+    public CachedTransform rotateY(float angle)
+    {
+        matrix.rotateY(angle);
+        invalidate();
+
+        return this;
+    }
+
+    /**
+     * Transforms this transformation by rotation matrix around Z axis.
+     * @param angle the rotation angle in degrees
+     * @return this transformation
+     */
+    public CachedTransform rotateZ(float angle)
+    {
+        matrix.rotateZ(angle);
+        invalidate();
+
+        return this;
+    }
+
+    @Override
+    public String toString()
+    {
+        return matrix.toString();
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+/**
+ * This class implements conjugate gradient method with Jacobi
+ * (diagonal) preconditioner for sparse linear systems.
+ *
+ * Matrix must be symmetric and positive definite. Work vectors
+ * are allocated once, so one solver can be reused to solve
+ * many systems with the same matrix.
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class ConjugateGradient
+{
+    // the matrix of solved systems
+    private final SparseMatrix matrix;
+
+    // inverse of matrix diagonal, used as preconditioner
+    private final float[] inverseDiagonal;
+
+    // work vectors: residual, preconditioned residual,
+    // search direction and matrix times search direction
+    private final float[] r, z, p, q;
+
+    // solver settings
+    private float tolerance = 1e-6f;
+    private int maxIterations;
+    private boolean parallel;
+
+    // residual norm after last solve
+    private float residual;
+
+
+    /**
+     * Creates new solver for given matrix.
+     * @param matrix the symmetric positive definite matrix
+     */
+    public ConjugateGradient(SparseMatrix matrix)
+    {
+        if (matrix.getRows() != matrix.getColumns())
+            throw new IllegalArgumentException("Matrix is not square");
+
+        int n = matrix.getRows();
+
+        this.matrix = matrix;
+        this.inverseDiagonal = new float[n];
+        this.r = new float[n];
+        this.z = new float[n];
+        this.p = new float[n];
+        this.q = new float[n];
+        this.maxIterations = n;
+
+        matrix.getDiagonal(inverseDiagonal);
+
+        // rows with zero diagonal are left unpreconditioned
+        for (int i = 0; i < n; i++)
+        {
+            float d = inverseDiagonal[i];
+
+            inverseDiagonal[i] = d != 0.0f ? 1.0f / d : 1.0f;
+        }
+    }
+
+    /**
+     * Changes relative tolerance. Solving stops when residual norm
+     * is not greater than tolerance times norm of right-hand side.
+     * @param tolerance the relative tolerance
+     * @return this solver
+     */
+    public ConjugateGradient setTolerance(float tolerance)
+    {
+        this.tolerance = tolerance;
+
+        return this;
+    }
+
+    /**
+     * Changes maximum number of iterations.
+     * Default is the size of the matrix.
+     * @param maxIterations the maximum number of iterations
+     * @return this solver
+     */
+    public ConjugateGradient setMaxIterations(int maxIterations)
+    {
+        this.maxIterations = maxIterations;
+
+        return this;
+    }
+
+    /**
+     * Enables or disables multi-threaded matrix-vector multiplication.
+     * @param parallel true to use multiple threads
+     * @return this solver
+     */
+    public ConjugateGradient setParallel(boolean parallel)
+    {
+        this.parallel = parallel;
+
+        return this;
+    }
+
+    /**
+     * Returns residual norm after last call to {@code solve}.
+     * @return the residual norm
+     */
+    public float getResidual()
+    {
+        return residual;
+    }
+
+    /**
+     * Solves linear system {@code A x = b}.
+     * Initial value of {@code x} is used as starting guess.
+     * @param b the right-hand side vector
+     * @param x the solution vector
+     * @return the number of iterations performed
+     */
+    public int solve(Vector b, Vector x)
+    {
+        int n = r.length;
+
+        if (b.size() != n || x.size() != n)
+            throw new IllegalArgumentException("Incompatible vectors");
+
+        return solve(b.values, x.values);
+    }
+
+    /**
+     * Solves linear system {@code A x = b}.
+     * Initial value of {@code x} is used as starting guess.
+     * @param b the right-hand side vector
+     * @param x the solution vector
+     * @return the number of iterations performed
+     */
+    public int solve(float[] b, float[] x)
+    {
+        final int n = r.length;
+
+        // r = b - A x
+        SparseMatrix.multiply(matrix, x, q, parallel);
+
+        for (int i = 0; i < n; i++)
+            r[i] = b[i] - q[i];
+
+        float limit = tolerance * (float) Math.sqrt(Kernels.sumOfSquares(b, 0, n));
+
+        residual = (float) Math.sqrt(Kernels.sumOfSquares(r, 0, n));
+
+        if (residual <= limit)
+            return 0;
+
+        precondition();
+        System.arraycopy(z, 0, p, 0, n);
+
+        float rz = Kernels.dot(r, 0, z, 0, n);
+        int iteration = 0;
+
+        while (iteration < maxIterations)
+        {
+            iteration++;
+
+            SparseMatrix.multiply(matrix, p, q, parallel);
+
+            float pq = Kernels.dot(p, 0, q, 0, n);
+
+            if (pq <= 0.0f)
+                throw new ArithmeticException("Matrix is not positive definite");
+
+            float alpha = rz / pq;
+
+            Kernels.addScaled(alpha, p, 0, x, 0, n);
+            Kernels.addScaled(-alpha, q, 0, r, 0, n);
+
+            residual = (float) Math.sqrt(Kernels.sumOfSquares(r, 0, n));
+
+            if (residual <= limit)
+                break;
+
+            precondition();
+
+            float rzNext = Kernels.dot(r, 0, z, 0, n);
+            float beta = rzNext / rz;
+
+            rz = rzNext;
+
+            // p = z + beta p
+            for (int i = 0; i < n; i++)
+                p[i] = z[i] + beta * p[i];
+        }
+
+        return iteration;
+    }
+
+    /**
+     * Applies preconditioner to residual.
+     */
+    private void precondition()
+    {
+        for (int i = 0; i < r.length; i++)
+            z[i] = r[i] * inverseDiagonal[i];
+    }
+}
@@ -0,0 +1,480 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Class implementing matrix stored outside of Java heap.
+ *
+ * Values are kept in column-major order in a {@code FloatBuffer},
+ * which can be a part of larger direct buffer. This allows passing
+ * matrices to OpenGL without copying and keeping many matrices
+ * in one contiguous region (for example, a uniform buffer).
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class DirectMatrix
+{
+    // matrix dimensions
+    private final int rows, columns;
+
+    // matrix values in column-major order
+    private final FloatBuffer buffer;
+
+
+    /**
+     * Creates new matrix in its own direct buffer.
+     * @param rows the number of rows
+     * @param columns the number of columns
+     */
+    public DirectMatrix(int rows, int columns)
+    {
+        this(allocateBuffer(rows * columns), 0, rows, columns);
+    }
+
+    /**
+     * Creates new matrix using part of existing buffer.
+     * Values are not copied, so changes in this matrix are visible
+     * in the buffer and vice versa.
+     * @param buffer the buffer to store values in
+     * @param offset the index of the first value in the buffer
+     * @param rows the number of rows
+     * @param columns the number of columns
+     */
+    public DirectMatrix(FloatBuffer buffer, int offset, int rows, int columns)
+    {
+        FloatBuffer slice = buffer.duplicate();
+
+        // casts keep compatibility with Java 8 Buffer methods
+        ((Buffer) slice).limit(offset + rows * columns);
+        ((Buffer) slice).position(offset);
+
+        this.rows = rows;
+        this.columns = columns;
+        this.buffer = slice.slice();
+    }
+
+    /**
+     * Creates matrices stored one after another in one direct buffer.
+     * @param count the number of matrices
+     * @param rows the number of rows of every matrix
+     * @param columns the number of columns of every matrix
+     * @return the array of new matrices
+     */
+    public static DirectMatrix[] allocate(int count, int rows, int columns)
+    {
+        int size = rows * columns;
+        FloatBuffer buffer = allocateBuffer(count * size);
+        DirectMatrix[] result = new DirectMatrix[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            result[i] = new DirectMatrix(buffer, i * size, rows, columns);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of rows.
+     * @return the number of rows
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns.
+     * @return the number of columns
+     */
+    public int getColumns()
+    {
+        return columns;
+    }
+
+    /**
+     * Returns buffer with values of this matrix in column-major order.
+     * Returned buffer is shared with this matrix and can be passed directly
+     * to OpenGL. Its position and limit should not be changed.
+     * @return the buffer
+     */
+    public FloatBuffer getBuffer()
+    {
+        return buffer;
+    }
+
+    /**
+     * Returns the value under given row and column.
+     * @param row the row index
+     * @param column the column index
+     * @return the value
+     */
+    public float get(int row, int column)
+    {
+        return buffer.get(column * rows + row);
+    }
+
+    /**
+     * Changes the value under given row and column.
+     * @param row the row index
+     * @param column the column index
+     * @param value the new value
+     */
+    public void set(int row, int column, float value)
+    {
+        buffer.put(column * rows + row, value);
+    }
+
+    /**
+     * Copies values from generic matrix to this matrix.
+     * @param other the matrix to copy values from
+     * @return this matrix
+     */
+    public DirectMatrix set(Matrix other)
+    {
+        checkCompatibility(other.getRows(), other.getColumns());
+
+        for (int column = 0, index = 0; column < columns; column++)
+        {
+            for (int row = 0; row < rows; row++)
+            {
+                buffer.put(index++, other.get(row, column));
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Copies values from other matrix to this matrix.
+     * @param other the matrix to copy values from
+     * @return this matrix
+     */
+    public DirectMatrix set(DirectMatrix other)
+    {
+        checkCompatibility(other.rows, other.columns);
+
+        for (int i = 0, count = rows * columns; i < count; i++)
+        {
+            buffer.put(i, other.buffer.get(i));
+        }
+
+        return this;
+    }
+
+    /**
+     * Copies values from 4x4 matrix to this matrix.
+     * @param other the matrix to copy values from
+     * @return this matrix
+     */
+    public DirectMatrix set(Matrix4f other)
+    {
+        checkCompatibility(4, 4);
+
+        put4(other.m00, other.m01, other.m02, other.m03,
+                other.m10, other.m11, other.m12, other.m13,
+                other.m20, other.m21, other.m22, other.m23,
+                other.m30, other.m31, other.m32, other.m33);
+
+        return this;
+    }
+
+    /**
+     * Copies values from this matrix to generic matrix.
+     * @param other the matrix to copy values to
+     */
+    public void get(Matrix other)
+    {
+        checkCompatibility(other.getRows(), other.getColumns());
+
+        for (int column = 0, index = 0; column < columns; column++)
+        {
+            for (int row = 0; row < rows; row++)
+            {
+                other.set(row, column, buffer.get(index++));
+            }
+        }
+    }
+
+    /**
+     * Copies values from this matrix to 4x4 matrix.
+     * @param other the matrix to copy values to
+     */
+    public void get(Matrix4f other)
+    {
+        checkCompatibility(4, 4);
+
+        final FloatBuffer b = buffer;
+
+        other.m00 = b.get(0);  other.m10 = b.get(1);
+        other.m20 = b.get(2);  other.m30 = b.get(3);
+        other.m01 = b.get(4);  other.m11 = b.get(5);
+        other.m21 = b.get(6);  other.m31 = b.get(7);
+        other.m02 = b.get(8);  other.m12 = b.get(9);
+        other.m22 = b.get(10); other.m32 = b.get(11);
+        other.m03 = b.get(12); other.m13 = b.get(13);
+        other.m23 = b.get(14); other.m33 = b.get(15);
+    }
+
+    /**
+     * Creates new generic matrix with values of this matrix.
+     * @return the new matrix
+     */
+    public Matrix toMatrix()
+    {
+        Matrix matrix = new Matrix(rows, columns, Matrix.Order.COLUMN_MAJOR);
+
+        get(matrix);
+
+        return matrix;
+    }
+
+    /**
+     * Loads this matrix with identity values.
+     * @return this matrix
+     */
+    public DirectMatrix loadIdentity()
+    {
+        for (int column = 0, index = 0; column < columns; column++)
+        {
+            for (int row = 0; row < rows; row++)
+            {
+                buffer.put(index++, row == column ? 1.0f : 0.0f);
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Transforms this matrix by other matrix.
+     * @param transform the transformation matrix
+     * @return this matrix
+     */
+    public DirectMatrix transform(DirectMatrix transform)
+    {
+        multiply(this, transform, this);
+
+        return this;
+    }
+
+    /**
+     * Computes inverse of this matrix.
+     * @return this matrix
+     */
+    public DirectMatrix inverse()
+    {
+        inverse(this, this);
+
+        return this;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+
+        for (int row = 0; row < rows; row++)
+        {
+            if (row > 0) builder.append('\n');
+
+            for (int column = 0; column < columns; column++)
+            {
+                if (column > 0) builder.append('\t');
+
+                builder.append(get(row, column));
+            }
+        }
+
+        return builder.toString();
+    }
+
+
+    /**
+     * Multiplies two matrices and stores result in other matrix.
+     * Result matrix can be the same object as any of the source matrices.
+     * @param first the first matrix to multiply
+     * @param second the second matrix to multiply
+     * @param result the matrix where multiplication result is to be stored
+     */
+    public static void multiply(DirectMatrix first, DirectMatrix second,
+            DirectMatrix result)
+    {
+        if (first.rows != result.rows || second.columns != result.columns
+                || first.columns != second.rows)
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        if (first.rows == 4 && first.columns == 4 && second.columns == 4)
+        {
+            multiply4(first.buffer, second.buffer, result);
+            return;
+        }
+
+        final int rows = first.rows;
+        final int columns = second.columns;
+        final int depth = first.columns;
+
+        // compute all values before writing in case result is a source
+        float[] temp = new float[rows * columns];
+
+        for (int column = 0, index = 0; column < columns; column++)
+        {
+            for (int row = 0; row < rows; row++)
+            {
+                float sum = 0.0f;
+
+                for (int k = 0; k < depth; k++)
+                    sum += first.buffer.get(k * rows + row)
+                            * second.buffer.get(column * depth + k);
+
+                temp[index++] = sum;
+            }
+        }
+
+        for (int i = 0; i < temp.length; i++)
+        {
+            result.buffer.put(i, temp[i]);
+        }
+    }
+
+    /**
+     * Computes inverse of given matrix and stores it in other matrix.
+     * Destination matrix can be the same object as source matrix.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     * @see Matrix#inverse(Matrix, Matrix)
+     */
+    public static void inverse(DirectMatrix src, DirectMatrix dest)
+    {
+        if (src.rows != src.columns)
+            throw new IllegalArgumentException("Cannot invert non-square matrix");
+
+        dest.checkCompatibility(src.rows, src.columns);
+
+        if (src.rows == 4)
+        {
+            Matrix4f temp = new Matrix4f();
+
+            src.get(temp);
+            Matrix4f.inverse(temp, temp);
+            dest.set(temp);
+            return;
+        }
+
+        Matrix temp = src.toMatrix();
+
+        Matrix.inverse(temp, temp);
+        dest.set(temp);
+    }
+
+    /**
+     * Multiplies two 4x4 matrices stored in column-major order.
+     * @param a the first matrix values
+     * @param b the second matrix values
+     * @param result the matrix where multiplication result is to be stored
+     */
+    private static void multiply4(FloatBuffer a, FloatBuffer b,
+            DirectMatrix result)
+    {
+        float a00 = a.get(0), a10 = a.get(1), a20 = a.get(2), a30 = a.get(3);
+        float a01 = a.get(4), a11 = a.get(5), a21 = a.get(6), a31 = a.get(7);
+        float a02 = a.get(8), a12 = a.get(9), a22 = a.get(10), a32 = a.get(11);
+        float a03 = a.get(12), a13 = a.get(13), a23 = a.get(14), a33 = a.get(15);
+
+        float b00 = b.get(0), b10 = b.get(1), b20 = b.get(2), b30 = b.get(3);
+        float b01 = b.get(4), b11 = b.get(5), b21 = b.get(6), b31 = b.get(7);
+        float b02 = b.get(8), b12 = b.get(9), b22 = b.get(10), b32 = b.get(11);
+        float b03 = b.get(12), b13 = b.get(13), b23 = b.get(14), b33 = b.get(15);
+
+        result.put4(
+                a00 * b00 + a01 * b10 + a02 * b20 + a03 * b30,
+                a00 * b01 + a01 * b11 + a02 * b21 + a03 * b31,
+                a00 * b02 + a01 * b12 + a02 * b22 + a03 * b32,
+                a00 * b03 + a01 * b13 + a02 * b23 + a03 * b33,
+                a10 * b00 + a11 * b10 + a12 * b20 + a13 * b30,
+                a10 * b01 + a11 * b11 + a12 * b21 + a13 * b31,
+                a10 * b02 + a11 * b12 + a12 * b22 + a13 * b32,
+                a10 * b03 + a11 * b13 + a12 * b23 + a13 * b33,
+                a20 * b00 + a21 * b10 + a22 * b20 + a23 * b30,
+                a20 * b01 + a21 * b11 + a22 * b21 + a23 * b31,
+                a20 * b02 + a21 * b12 + a22 * b22 + a23 * b32,
+                a20 * b03 + a21 * b13 + a22 * b23 + a23 * b33,
+                a30 * b00 + a31 * b10 + a32 * b20 + a33 * b30,
+                a30 * b01 + a31 * b11 + a32 * b21 + a33 * b31,
+                a30 * b02 + a31 * b12 + a32 * b22 + a33 * b32,
+                a30 * b03 + a31 * b13 + a32 * b23 + a33 * b33);
+    }
+
+    /**
+     * Changes all values of 4x4 matrix. Arguments are given in row order.
+     */
+    private void put4(float m00, float m01, float m02, float m03,
+            float m10, float m11, float m12, float m13,
+            float m20, float m21, float m22, float m23,
+            float m30, float m31, float m32, float m33)
+    {
+        final FloatBuffer b = buffer;
+
+        b.put(0, m00);  b.put(1, m10);  b.put(2, m20);  b.put(3, m30);
+        b.put(4, m01);  b.put(5, m11);  b.put(6, m21);  b.put(7, m31);
+        b.put(8, m02);  b.put(9, m12);  b.put(10, m22); b.put(11, m32);
+        b.put(12, m03); b.put(13, m13); b.put(14, m23); b.put(15, m33);
+    }
+
+    /**
+     * Checks if this matrix has given dimensions.
+     * Throws {@code IllegalArgumentException} otherwise.
+     * @param rows the number of rows
+     * @param columns the number of columns
+     */
+    private void checkCompatibility(int rows, int columns)
+    {
+        if (this.rows != rows)
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: different row count");
+
+        if (this.columns != columns)
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: different column count");
+    }
+
+    /**
+     * Allocates direct buffer in native byte order.
+     * @param size the number of values
+     * @return the buffer
+     */
+    private static FloatBuffer allocateBuffer(int size)
+    {
+        return ByteBuffer.allocateDirect(size * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+/**
+ * This class implements eigen-decomposition of symmetric matrices
+ * using cyclic Jacobi method.
+ *
+ * Decomposition is computed once in constructor. Eigenvalues are sorted
+ * in descending order and eigenvectors are orthonormal. The method is
+ * accurate but takes O(n&sup3;) time per sweep, so it is meant for small
+ * matrices, like 3x3 covariance matrices.
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class EigenDecomposition
+{
+    // maximum number of sweeps over all off-diagonal values
+    private static final int MAX_SWEEPS = 50;
+
+    // size of decomposed matrix
+    private final int size;
+
+    // eigenvalues in descending order
+    private final float[] eigenvalues;
+
+    // eigenvectors stored row by row, row i belongs to eigenvalue i
+    private final float[] eigenvectors;
+
+
+    /**
+     * Computes eigen-decomposition of symmetric matrix.
+     * Only upper triangle of the matrix is used.
+     * Source matrix is not modified.
+     * @param matrix the symmetric matrix to decompose
+     */
+    public EigenDecomposition(Matrix matrix)
+    {
+        if (matrix.getRows() != matrix.getColumns())
+            throw new IllegalArgumentException("Matrix is not square");
+
+        final int n = matrix.getRows();
+
+        // work in double precision, rotations accumulate rounding errors
+        double[] a = new double[n * n];
+        double[] v = new double[n * n];
+
+        for (int row = 0; row < n; row++)
+        {
+            for (int column = row; column < n; column++)
+            {
+                double value = matrix.get(row, column);
+
+                a[row * n + column] = value;
+                a[column * n + row] = value;
+            }
+
+            v[row * n + row] = 1.0;
+        }
+
+        for (int sweep = 0; sweep < MAX_SWEEPS; sweep++)
+        {
+            double off = 0.0, diagonal = 0.0;
+
+            for (int p = 0; p < n; p++)
+            {
+                diagonal += a[p * n + p] * a[p * n + p];
+
+                for (int q = p + 1; q < n; q++)
+                    off += a[p * n + q] * a[p * n + q];
+            }
+
+            if (off <= 1e-30 * diagonal || off == 0.0)
+                break;
+
+            for (int p = 0; p < n; p++)
+            {
+                for (int q = p + 1; q < n; q++)
+                {
+                    rotate(a, v, n, p, q);
+                }
+            }
+        }
+
+        size = n;
+        eigenvalues = new float[n];
+        eigenvectors = new float[n * n];
+
+        // selection sort by eigenvalue, n is small
+        boolean[] used = new boolean[n];
+
+        for (int i = 0; i < n; i++)
+        {
+            int best = -1;
+
+            for (int j = 0; j < n; j++)
+            {
+                if (!used[j] && (best < 0 || a[j * n + j] > a[best * n + best]))
+                    best = j;
+            }
+
+            used[best] = true;
+            eigenvalues[i] = (float) a[best * n + best];
+
+            // eigenvectors are columns of v
+            for (int k = 0; k < n; k++)
+                eigenvectors[i * n + k] = (float) v[k * n + best];
+        }
+    }
+
+    /**
+     * Returns size of decomposed matrix.
+     * @return the matrix size
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns eigenvalue under given index.
+     * @param index the index of eigenvalue, 0 is the largest
+     * @return the eigenvalue
+     */
+    public float getEigenvalue(int index)
+    {
+        return eigenvalues[index];
+    }
+
+    /**
+     * Copies all eigenvalues to array in descending order.
+     * @param result the array for eigenvalues
+     */
+    public void getEigenvalues(float[] result)
+    {
+        System.arraycopy(eigenvalues, 0, result, 0, size);
+    }
+
+    /**
+     * Copies eigenvector of given eigenvalue to array.
+     * Eigenvector has unit length.
+     * @param index the index of eigenvalue, 0 is the largest
+     * @param result the array for eigenvector
+     */
+    public void getEigenvector(int index, float[] result)
+    {
+        System.arraycopy(eigenvectors, index * size, result, 0, size);
+    }
+
+    /**
+     * Copies eigenvector of given eigenvalue to vector.
+     * Eigenvector has unit length.
+     * @param index the index of eigenvalue, 0 is the largest
+     * @param result the vector for eigenvector
+     */
+    public void getEigenvector(int index, Vector result)
+    {
+        if (result.size() != size)
+            throw new IllegalArgumentException("Incompatible vector");
+
+        getEigenvector(index, result.values);
+    }
+
+    /**
+     * Stores eigenvectors as columns of matrix, in the same order
+     * as eigenvalues.
+     * @param result the matrix for eigenvectors
+     */
+    public void getEigenvectors(Matrix result)
+    {
+        if (result.getRows() != size || result.getColumns() != size)
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        for (int i = 0; i < size; i++)
+        {
+            for (int k = 0; k < size; k++)
+                result.set(k, i, eigenvectors[i * size + k]);
+        }
+    }
+
+    /**
+     * Applies Jacobi rotation zeroing value in row p and column q.
+     * @param a the symmetric matrix being diagonalized
+     * @param v the accumulated rotations
+     * @param n the matrix size
+     * @param p the first index
+     * @param q the second index
+     */
+    private static void rotate(double[] a, double[] v, int n, int p, int q)
+    {
+        double apq = a[p * n + q];
+
+        if (apq == 0.0)
+            return;
+
+        double app = a[p * n + p], aqq = a[q * n + q];
+        double theta = (aqq - app) / (2.0 * apq);
+
+        // smaller root of t^2 + 2 t theta - 1 = 0 for numerical stability
+        double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1.0));
+
+        if (theta == 0.0)
+            t = 1.0;
+
+        double c = 1.0 / Math.sqrt(t * t + 1.0);
+        double s = t * c;
+
+        for (int k = 0; k < n; k++)
+        {
+            double akp = a[k * n + p], akq = a[k * n + q];
+
+            a[k * n + p] = c * akp - s * akq;
+            a[k * n + q] = s * akp + c * akq;
+        }
+
+        for (int k = 0; k < n; k++)
+        {
+            double apk = a[p * n + k], aqk = a[q * n + k];
+
+            a[p * n + k] = c * apk - s * aqk;
+            a[q * n + k] = s * apk + c * aqk;
+        }
+
+        for (int k = 0; k < n; k++)
+        {
+            double vkp = v[k * n + p], vkq = v[k * n + q];
+
+            v[k * n + p] = c * vkp - s * vkq;
+            v[k * n + q] = s * vkp + c * vkq;
+        }
+    }
+}
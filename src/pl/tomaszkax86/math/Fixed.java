@@ -25,6 +25,10 @@
  */
 package pl.tomaszkax86.math;
 
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
 /**
  * Class for storage, calculations, and conversion between numberic formats
  * and fixed-point Q16.16 format.
@@ -268,21 +272,603 @@ public final class Fixed extends Number
     }
 
     /**
-     * Computes square root of fixed-point value.
-     * @param fixed fixed-point value
+     * Converts many {@code float} values to fixed-point representation.
+     * Result is the same as from {@link #toFixed(float)}; loop is kept
+     * simple, so it can be vectorized by compiler.
+     * @param src the array with {@code float} values
+     * @param srcOffset the index of first value
+     * @param dest the array for fixed-point values
+     * @param destOffset the index of first result
+     * @param count the number of values
+     */
+    public static void toFixed(float[] src, int srcOffset,
+            int[] dest, int destOffset, int count)
+    {
+        // multiplying by power of two is exact, like Math.scalb
+        for (int i = 0; i < count; i++)
+            dest[destOffset + i] = (int) (src[srcOffset + i] * FLOAT_ONE);
+    }
+
+    /**
+     * Converts many fixed-point values to {@code float} values.
+     * Result is the same as from {@link #toFloat(int)}.
+     * @param src the array with fixed-point values
+     * @param srcOffset the index of first value
+     * @param dest the array for {@code float} values
+     * @param destOffset the index of first result
+     * @param count the number of values
+     */
+    public static void toFloat(int[] src, int srcOffset,
+            float[] dest, int destOffset, int count)
+    {
+        for (int i = 0; i < count; i++)
+            dest[destOffset + i] = src[srcOffset + i] * FLOAT_UNIT;
+    }
+
+    /**
+     * Converts {@code float} values from one buffer to fixed-point values
+     * in other buffer. Values are read and written at current positions
+     * of buffers and positions are advanced.
+     * @param src the buffer with {@code float} values
+     * @param dest the buffer for fixed-point values
+     * @param count the number of values
+     */
+    public static void toFixed(FloatBuffer src, IntBuffer dest, int count)
+    {
+        int srcPosition = src.position();
+        int destPosition = dest.position();
+
+        if (src.remaining() < count || dest.remaining() < count)
+            throw new IndexOutOfBoundsException("Not enough values in buffer");
+
+        if (src.hasArray() && dest.hasArray())
+        {
+            toFixed(src.array(), src.arrayOffset() + srcPosition,
+                    dest.array(), dest.arrayOffset() + destPosition, count);
+        }
+        else
+        {
+            for (int i = 0; i < count; i++)
+                dest.put(destPosition + i, (int) (src.get(srcPosition + i) * FLOAT_ONE));
+        }
+
+        // casts keep compatibility with Java 8 Buffer methods
+        ((Buffer) src).position(srcPosition + count);
+        ((Buffer) dest).position(destPosition + count);
+    }
+
+    /**
+     * Converts fixed-point values from one buffer to {@code float} values
+     * in other buffer. Values are read and written at current positions
+     * of buffers and positions are advanced.
+     * @param src the buffer with fixed-point values
+     * @param dest the buffer for {@code float} values
+     * @param count the number of values
+     */
+    public static void toFloat(IntBuffer src, FloatBuffer dest, int count)
+    {
+        int srcPosition = src.position();
+        int destPosition = dest.position();
+
+        if (src.remaining() < count || dest.remaining() < count)
+            throw new IndexOutOfBoundsException("Not enough values in buffer");
+
+        if (src.hasArray() && dest.hasArray())
+        {
+            toFloat(src.array(), src.arrayOffset() + srcPosition,
+                    dest.array(), dest.arrayOffset() + destPosition, count);
+        }
+        else
+        {
+            for (int i = 0; i < count; i++)
+                dest.put(destPosition + i, src.get(srcPosition + i) * FLOAT_UNIT);
+        }
+
+        ((Buffer) src).position(srcPosition + count);
+        ((Buffer) dest).position(destPosition + count);
+    }
+
+    /**
+     * Adds fixed-point values from two arrays element by element.
+     * Destination can be the same array as any of the sources.
+     * @param a the first array
+     * @param aOffset the index of first value in first array
+     * @param b the second array
+     * @param bOffset the index of first value in second array
+     * @param dest the array for results
+     * @param destOffset the index of first result
+     * @param count the number of values
+     */
+    public static void add(int[] a, int aOffset, int[] b, int bOffset,
+            int[] dest, int destOffset, int count)
+    {
+        for (int i = 0; i < count; i++)
+            dest[destOffset + i] = a[aOffset + i] + b[bOffset + i];
+    }
+
+    /**
+     * Subtracts fixed-point values from two arrays element by element.
+     * Destination can be the same array as any of the sources.
+     * @param a the first array
+     * @param aOffset the index of first value in first array
+     * @param b the second array
+     * @param bOffset the index of first value in second array
+     * @param dest the array for results
+     * @param destOffset the index of first result
+     * @param count the number of values
+     */
+    public static void subtract(int[] a, int aOffset, int[] b, int bOffset,
+            int[] dest, int destOffset, int count)
+    {
+        for (int i = 0; i < count; i++)
+            dest[destOffset + i] = a[aOffset + i] - b[bOffset + i];
+    }
+
+    /**
+     * Multiplies fixed-point values from two arrays element by element.
+     * Result is the same as from {@link #multiply(int, int)}.
+     * Destination can be the same array as any of the sources.
+     * @param a the first array
+     * @param aOffset the index of first value in first array
+     * @param b the second array
+     * @param bOffset the index of first value in second array
+     * @param dest the array for results
+     * @param destOffset the index of first result
+     * @param count the number of values
+     */
+    public static void multiply(int[] a, int aOffset, int[] b, int bOffset,
+            int[] dest, int destOffset, int count)
+    {
+        for (int i = 0; i < count; i++)
+            dest[destOffset + i] = (int) (((long) a[aOffset + i] * b[bOffset + i]) >> BIT_SHIFT);
+    }
+
+    /**
+     * Multiplies fixed-point values in array by fixed-point scale.
+     * Destination can be the same array as source.
+     * @param scale the fixed-point scale
+     * @param src the array with fixed-point values
+     * @param srcOffset the index of first value
+     * @param dest the array for results
+     * @param destOffset the index of first result
+     * @param count the number of values
+     */
+    public static void scale(int scale, int[] src, int srcOffset,
+            int[] dest, int destOffset, int count)
+    {
+        final long s = scale;
+
+        for (int i = 0; i < count; i++)
+            dest[destOffset + i] = (int) ((src[srcOffset + i] * s) >> BIT_SHIFT);
+    }
+
+    /**
+     * Computes square root of fixed-point value. Result is computed
+     * bit by bit without division and is rounded down.
+     * @param fixed non-negative fixed-point value
      * @return square root as fixed-point value
      */
     public static int sqrt(int fixed)
     {
-        long fix = (long)fixed << BIT_SHIFT;
-        long result = fixed >> 1;
+        if (fixed < 0)
+            throw new IllegalArgumentException("Square root of negative value");
+
+        return (int) sqrt((long) fixed << BIT_SHIFT);
+    }
+
+    /**
+     * Computes reciprocal of fixed-point value. Result is the same
+     * as {@code divide(ONE, fixed)}, but is computed with Newton iterations
+     * instead of 64-bit division. Results too large to be represented are
+     * saturated.
+     * @param fixed non-zero fixed-point value
+     * @return reciprocal as fixed-point value
+     */
+    public static int reciprocal(int fixed)
+    {
+        if (fixed == 0)
+            throw new ArithmeticException("Reciprocal of zero");
+
+        long x = Math.abs((long) fixed);
+
+        // x = m 2^-s, where m is in Q1.30 format and 1 <= m < 2
+        int s = Long.numberOfLeadingZeros(x) - 33;
+        long m = (s >= 0) ? x << s : x >> -s;
+        long y = RECIPROCAL_TABLE[(int) (m >> 22) & 0xFF];
+
+        // y = y (2 - m y)
+        for (int i = 0; i < 2; i++)
+            y = (y * ((2L << 30) - ((m * y) >> 30))) >> 30;
+
+        long r = (s >= 28) ? y << (s - 28) : y >> (28 - s);
+
+        // correct last bits, so result is exactly 2^32 / x rounded down
+        while (r * x > (1L << 32))
+            r--;
+
+        while ((r + 1) * x <= (1L << 32))
+            r++;
+
+        if (r > Integer.MAX_VALUE) r = Integer.MAX_VALUE;
+
+        return (fixed < 0) ? (int) -r : (int) r;
+    }
+
+    /**
+     * Computes reciprocal of square root of fixed-point value with Newton
+     * iterations. Result is within one unit in the last place.
+     * @param fixed positive fixed-point value
+     * @return reciprocal of square root as fixed-point value
+     */
+    public static int inverseSqrt(int fixed)
+    {
+        if (fixed <= 0)
+            throw new IllegalArgumentException("Inverse square root of non-positive value");
+
+        // x = m 2^(14 - s), where s is even and 1/2 <= m < 2
+        int s = (Integer.numberOfLeadingZeros(fixed) - 1) & ~1;
+        long y = inverseSqrtMantissa((long) fixed << s);
+        int shift = 21 - s / 2;
+
+        return (int) ((y + (1L << (shift - 1))) >> shift);
+    }
+
+    /**
+     * Computes square roots of many fixed-point values.
+     * Destination can be the same array as source.
+     * @param src the array with non-negative fixed-point values
+     * @param srcOffset the index of first value
+     * @param dest the array for results
+     * @param destOffset the index of first result
+     * @param count the number of values
+     */
+    public static void sqrt(int[] src, int srcOffset,
+            int[] dest, int destOffset, int count)
+    {
+        for (int i = 0; i < count; i++)
+            dest[destOffset + i] = sqrt(src[srcOffset + i]);
+    }
+
+    /**
+     * Computes reciprocals of many fixed-point values.
+     * Destination can be the same array as source.
+     * @param src the array with non-zero fixed-point values
+     * @param srcOffset the index of first value
+     * @param dest the array for results
+     * @param destOffset the index of first result
+     * @param count the number of values
+     */
+    public static void reciprocal(int[] src, int srcOffset,
+            int[] dest, int destOffset, int count)
+    {
+        for (int i = 0; i < count; i++)
+            dest[destOffset + i] = reciprocal(src[srcOffset + i]);
+    }
 
-        for(int i=0; i<5; i++)
+    /**
+     * Computes reciprocals of square roots of many fixed-point values.
+     * Destination can be the same array as source.
+     * @param src the array with positive fixed-point values
+     * @param srcOffset the index of first value
+     * @param dest the array for results
+     * @param destOffset the index of first result
+     * @param count the number of values
+     */
+    public static void inverseSqrt(int[] src, int srcOffset,
+            int[] dest, int destOffset, int count)
+    {
+        for (int i = 0; i < count; i++)
+            dest[destOffset + i] = inverseSqrt(src[srcOffset + i]);
+    }
+
+    /**
+     * Computes integer square root bit by bit, rounded down. Square root
+     * of Q32.32 value is Q16.16 value.
+     * @param value the value, non-positive values give 0
+     * @return the square root
+     */
+    static long sqrt(long value)
+    {
+        if (value <= 0) return 0;
+
+        long root = 0;
+        long bit = 1L << ((63 - Long.numberOfLeadingZeros(value)) & ~1);
+
+        while (bit != 0)
         {
-            result = (result + fix / result) >> 1;
+            if (value >= root + bit)
+            {
+                value -= root + bit;
+                root = (root >> 1) + bit;
+            }
+            else
+            {
+                root >>= 1;
+            }
+
+            bit >>= 2;
         }
 
-        return (int) result;
+        return root;
+    }
+
+    /**
+     * Computes reciprocal of square root of mantissa with Newton iterations
+     * seeded from table.
+     * @param m the mantissa in Q1.30 format, 1/2 <= m < 2
+     * @return reciprocal of square root in Q1.30 format
+     */
+    static long inverseSqrtMantissa(long m)
+    {
+        long y = INVERSE_SQRT_TABLE[(int) (m >> 23) - 64];
+
+        // y = y (3 - m y^2) / 2
+        for (int i = 0; i < 2; i++)
+            y = (y * ((3L << 30) - ((((m * y) >> 30) * y) >> 30))) >> 31;
+
+        return y;
+    }
+
+    /**
+     * Computes sine of fixed-point angle. Sine is interpolated from
+     * a table generated with {@link StrictMath}, so result is the same
+     * on every platform. Absolute error is at most 2<sup>-15</sup>
+     * for any angle.
+     * @param angle fixed-point angle in radians
+     * @return sine as fixed-point value
+     */
+    public static int sin(int angle)
+    {
+        return sinPhase(radiansToPhase(angle));
+    }
+
+    /**
+     * Computes cosine of fixed-point angle. Absolute error is at most
+     * 2<sup>-15</sup> for any angle.
+     * @param angle fixed-point angle in radians
+     * @return cosine as fixed-point value
+     */
+    public static int cos(int angle)
+    {
+        return sinPhase(radiansToPhase(angle) + QUARTER_TURN);
+    }
+
+    /**
+     * Computes angle of vector (x, y) with CORDIC algorithm. Absolute
+     * error is at most 2<sup>-16</sup>. Result for zero vector is 0.
+     * @param y fixed-point Y coordinate
+     * @param x fixed-point X coordinate
+     * @return fixed-point angle in radians, from -pi to pi
+     */
+    public static int atan2(int y, int x)
+    {
+        if (x == 0 && y == 0) return 0;
+
+        long lx = x, ly = y, angle = 0;
+
+        // rotate left half-plane by pi, CORDIC converges within pi/2
+        if (lx < 0)
+        {
+            angle = (ly < 0) ? -PI_Q30 : PI_Q30;
+            lx = -lx;
+            ly = -ly;
+        }
+
+        // scale coordinates up, so shifts keep enough precision
+        int shift = Long.numberOfLeadingZeros(Math.max(lx, Math.abs(ly))) - 17;
+
+        lx <<= shift;
+        ly <<= shift;
+
+        for (int i = 0; i < ATAN_TABLE.length; i++)
+        {
+            long dx = lx >> i, dy = ly >> i;
+
+            if (ly > 0)
+            {
+                lx += dy;
+                ly -= dx;
+                angle += ATAN_TABLE[i];
+            }
+            else
+            {
+                lx -= dy;
+                ly += dx;
+                angle -= ATAN_TABLE[i];
+            }
+        }
+
+        return (int) ((angle + (1L << 13)) >> 14);
+    }
+
+    /**
+     * Computes exponential function of fixed-point value. Error is at most
+     * half a unit in the last place plus relative error of 2<sup>-29</sup>.
+     * Results too large to be represented are saturated to the largest
+     * positive fixed-point value.
+     * @param fixed fixed-point value
+     * @return exponential function as fixed-point value
+     */
+    public static int exp(int fixed)
+    {
+        // x = k ln(2) + r, where 0 <= r < ln(2)
+        long x = (long) fixed << 14;
+        long k = Math.floorDiv(x, LN2_Q30);
+        long r = x - k * LN2_Q30;
+
+        if (k >= 15) return Integer.MAX_VALUE;
+        if (k < -17) return 0;
+
+        // Taylor series of exp(r) in Q2.30 format
+        long result = ONE_Q30;
+
+        for (int i = EXP_TERMS; i > 0; i--)
+            result = ONE_Q30 + ((result * r) >> 30) / i;
+
+        // multiply by 2^k and round to Q16.16
+        int shift = 14 - (int) k;
+
+        if (shift > 0)
+            result = (result + (1L << (shift - 1))) >> shift;
+
+        return (result > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) result;
+    }
+
+    /**
+     * Computes natural logarithm of fixed-point value. Absolute error is at
+     * most 2<sup>-16</sup>.
+     * @param fixed positive fixed-point value
+     * @return natural logarithm as fixed-point value
+     */
+    public static int log(int fixed)
+    {
+        if (fixed <= 0)
+            throw new IllegalArgumentException("Logarithm of non-positive value");
+
+        // x = m 2^e, where 1 <= m < 2
+        int top = 31 - Integer.numberOfLeadingZeros(fixed);
+        int e = top - BIT_SHIFT;
+        long m = (long) fixed << (30 - top);
+
+        // ln(m) = 2 atanh(s), where s = (m - 1) / (m + 1) < 1/3
+        long s = ((m - ONE_Q30) << 30) / (m + ONE_Q30);
+        long s2 = (s * s) >> 30;
+        long sum = 0;
+
+        for (int i = LOG_TERMS; i >= 0; i--)
+            sum = ONE_Q30 / (2 * i + 1) + ((sum * s2) >> 30);
+
+        long result = ((s * sum) >> 29) + e * LN2_Q30;
+
+        return (int) ((result + (1L << 13)) >> 14);
+    }
+
+    /**
+     * Computes sine of many fixed-point angles.
+     * Destination can be the same array as source.
+     * @param src the array with fixed-point angles in radians
+     * @param srcOffset the index of first angle
+     * @param dest the array for results
+     * @param destOffset the index of first result
+     * @param count the number of values
+     */
+    public static void sin(int[] src, int srcOffset,
+            int[] dest, int destOffset, int count)
+    {
+        for (int i = 0; i < count; i++)
+            dest[destOffset + i] = sinPhase(radiansToPhase(src[srcOffset + i]));
+    }
+
+    /**
+     * Computes cosine of many fixed-point angles.
+     * Destination can be the same array as source.
+     * @param src the array with fixed-point angles in radians
+     * @param srcOffset the index of first angle
+     * @param dest the array for results
+     * @param destOffset the index of first result
+     * @param count the number of values
+     */
+    public static void cos(int[] src, int srcOffset,
+            int[] dest, int destOffset, int count)
+    {
+        for (int i = 0; i < count; i++)
+            dest[destOffset + i] = sinPhase(radiansToPhase(src[srcOffset + i]) + QUARTER_TURN);
+    }
+
+    /**
+     * Computes exponential function of many fixed-point values.
+     * Destination can be the same array as source.
+     * @param src the array with fixed-point values
+     * @param srcOffset the index of first value
+     * @param dest the array for results
+     * @param destOffset the index of first result
+     * @param count the number of values
+     */
+    public static void exp(int[] src, int srcOffset,
+            int[] dest, int destOffset, int count)
+    {
+        for (int i = 0; i < count; i++)
+            dest[destOffset + i] = exp(src[srcOffset + i]);
+    }
+
+    /**
+     * Computes natural logarithm of many fixed-point values.
+     * Destination can be the same array as source.
+     * @param src the array with positive fixed-point values
+     * @param srcOffset the index of first value
+     * @param dest the array for results
+     * @param destOffset the index of first result
+     * @param count the number of values
+     */
+    public static void log(int[] src, int srcOffset,
+            int[] dest, int destOffset, int count)
+    {
+        for (int i = 0; i < count; i++)
+            dest[destOffset + i] = log(src[srcOffset + i]);
+    }
+
+    /**
+     * Converts fixed-point angle in radians to phase, which is fraction
+     * of full turn in 2<sup>-32</sup> units. Conversion wraps around
+     * full turns.
+     * @param angle fixed-point angle in radians
+     * @return the phase
+     */
+    static int radiansToPhase(int angle)
+    {
+        return toPhase(angle, PHASE_PER_RADIAN);
+    }
+
+    /**
+     * Converts fixed-point angle in degrees to phase.
+     * @param angle fixed-point angle in degrees
+     * @return the phase
+     */
+    static int degreesToPhase(int angle)
+    {
+        return toPhase(angle, PHASE_PER_DEGREE);
+    }
+
+    /**
+     * Multiplies fixed-point angle by conversion factor with 32 fractional
+     * bits and returns lowest 32 bits of integer part. Factor is split
+     * into halves, so 96-bit product is not needed.
+     * @param angle fixed-point angle
+     * @param factor phase per angle unit with 32 fractional bits
+     * @return the phase
+     */
+    private static int toPhase(int angle, long factor)
+    {
+        long high = factor >>> 32;
+        long low = factor & 0xFFFFFFFFL;
+
+        return (int) (angle * high + ((angle * low) >> 32));
+    }
+
+    /**
+     * Computes sine of phase by linear interpolation in sine table.
+     * @param phase the fraction of full turn in 2<sup>-32</sup> units
+     * @return sine as fixed-point value
+     */
+    static int sinPhase(int phase)
+    {
+        int index = phase >>> (32 - SIN_BITS);
+        int fraction = phase & FRACTION_MASK;
+
+        int a = SIN_TABLE[index];
+        int b = SIN_TABLE[index + 1];
+
+        return a + (int) (((long) (b - a) * fraction + (1L << (31 - SIN_BITS))) >> (32 - SIN_BITS));
+    }
+
+    /**
+     * Computes cosine of phase by linear interpolation in sine table.
+     * @param phase the fraction of full turn in 2<sup>-32</sup> units
+     * @return cosine as fixed-point value
+     */
+    static int cosPhase(int phase)
+    {
+        return sinPhase(phase + QUARTER_TURN);
     }
 
 
@@ -319,4 +905,53 @@ public final class Fixed extends Number
 
     // constant bit shift for Q16.16 format
     private static final int BIT_SHIFT = 16;
+
+    // float conversion factors, both exact powers of two
+    private static final float FLOAT_ONE = 0x1p16f;
+    private static final float FLOAT_UNIT = 0x1p-16f;
+
+    // sine table, one entry per 1/4096 of full turn plus closing entry
+    private static final int SIN_BITS = 12;
+    private static final int[] SIN_TABLE = new int[(1 << SIN_BITS) + 1];
+    private static final int FRACTION_MASK = (1 << (32 - SIN_BITS)) - 1;
+
+    // phase of quarter turn, phase is fraction of turn in 2^-32 units
+    private static final int QUARTER_TURN = 1 << 30;
+
+    // fixed-point angle conversions to phase, in 2^-48 units
+    private static final long PHASE_PER_RADIAN = StrictMath.round(0x1p48 / (2.0 * StrictMath.PI));
+    private static final long PHASE_PER_DEGREE = StrictMath.round(0x1p48 / 360.0);
+
+    // CORDIC angles atan(2^-i) in Q2.30 format
+    private static final long[] ATAN_TABLE = new long[30];
+
+    // constants in Q2.30 format
+    private static final long ONE_Q30 = 1L << 30;
+    private static final long PI_Q30 = StrictMath.round(StrictMath.PI * 0x1p30);
+    private static final long LN2_Q30 = StrictMath.round(StrictMath.log(2.0) * 0x1p30);
+
+    // number of series terms for exp and log
+    private static final int EXP_TERMS = 12;
+    private static final int LOG_TERMS = 10;
+
+    // seeds for Newton iterations in Q1.30 format
+    private static final int[] RECIPROCAL_TABLE = new int[256];
+    private static final int[] INVERSE_SQRT_TABLE = new int[192];
+
+    static
+    {
+        // StrictMath gives the same tables on every platform
+        for (int i = 0; i < SIN_TABLE.length; i++)
+            SIN_TABLE[i] = (int) StrictMath.round(StrictMath.sin(2.0 * StrictMath.PI * i / (1 << SIN_BITS)) * 0x1p16);
+
+        for (int i = 0; i < ATAN_TABLE.length; i++)
+            ATAN_TABLE[i] = StrictMath.round(StrictMath.atan(StrictMath.scalb(1.0, -i)) * 0x1p30);
+
+        // table entries are values at middle of each interval
+        for (int i = 0; i < RECIPROCAL_TABLE.length; i++)
+            RECIPROCAL_TABLE[i] = (int) StrictMath.round(0x1p30 / (1.0 + (i + 0.5) / 256.0));
+
+        for (int i = 0; i < INVERSE_SQRT_TABLE.length; i++)
+            INVERSE_SQRT_TABLE[i] = (int) StrictMath.round(0x1p30 / StrictMath.sqrt((i + 64.5) / 128.0));
+    }
 }
@@ -0,0 +1,787 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Class implementing 4x4 matrix of fixed-point Q16.16 numbers.
+ *
+ * Values are kept as raw {@code int} representations (see {@link Fixed})
+ * in row-major order, so no objects are created. Every result value
+ * is a sum of products accumulated in 64 bits and rounded down once,
+ * so transformations are bit-identical on every platform. This makes
+ * the class suitable for deterministic lockstep simulation.
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class FixedMatrix implements Serializable
+{
+    // the number of values
+    static final int SIZE = 16;
+
+    // fixed-point values, value in row R and column C is at index 4 * R + C
+    final int[] values = new int[SIZE];
+
+
+    /**
+     * Creates new matrix with all values equal to zero.
+     */
+    public FixedMatrix()
+    {
+    }
+
+    /**
+     * Creates new matrix as a copy of another matrix.
+     * @param other the matrix to copy
+     */
+    public FixedMatrix(FixedMatrix other)
+    {
+        set(other);
+    }
+
+    /**
+     * Creates new matrix with values of floating-point matrix.
+     * @param other the matrix to convert
+     */
+    public FixedMatrix(Matrix4f other)
+    {
+        set(other);
+    }
+
+    /**
+     * Returns the fixed-point value under given row and column.
+     * @param row the row index
+     * @param column the column index
+     * @return the fixed-point value
+     */
+    public int get(int row, int column)
+    {
+        return values[index(row, column)];
+    }
+
+    /**
+     * Changes the fixed-point value under given row and column.
+     * @param row the row index
+     * @param column the column index
+     * @param value the new fixed-point value
+     */
+    public void set(int row, int column, int value)
+    {
+        values[index(row, column)] = value;
+    }
+
+    /**
+     * Copies values from other matrix to this matrix.
+     * @param other the matrix to copy values from
+     * @return this matrix
+     */
+    public FixedMatrix set(FixedMatrix other)
+    {
+        System.arraycopy(other.values, 0, values, 0, SIZE);
+
+        return this;
+    }
+
+    /**
+     * Converts values of floating-point matrix and copies them to this matrix.
+     * @param other the matrix to copy values from
+     * @return this matrix
+     */
+    public FixedMatrix set(Matrix4f other)
+    {
+        for (int row = 0; row < 4; row++)
+        {
+            for (int column = 0; column < 4; column++)
+                values[4 * row + column] = Fixed.toFixed(other.get(row, column));
+        }
+
+        return this;
+    }
+
+    /**
+     * Converts values of this matrix and copies them to floating-point matrix.
+     * @param other the matrix to copy values to
+     */
+    public void get(Matrix4f other)
+    {
+        for (int row = 0; row < 4; row++)
+        {
+            for (int column = 0; column < 4; column++)
+                other.set(row, column, Fixed.toFloat(values[4 * row + column]));
+        }
+    }
+
+    /**
+     * Creates new floating-point matrix with values of this matrix.
+     * @return the new matrix
+     */
+    public Matrix4f toMatrix4f()
+    {
+        Matrix4f matrix = new Matrix4f();
+
+        get(matrix);
+
+        return matrix;
+    }
+
+    /**
+     * Loads this matrix with identity values.
+     * @return this matrix
+     */
+    public FixedMatrix loadIdentity()
+    {
+        Arrays.fill(values, 0);
+
+        values[0] = values[5] = values[10] = values[15] = Fixed.ONE;
+
+        return this;
+    }
+
+    /**
+     * Loads this matrix with translation matrix for given values.
+     * @param dx the fixed-point X translation
+     * @param dy the fixed-point Y translation
+     * @param dz the fixed-point Z translation
+     * @return this matrix
+     */
+    public FixedMatrix loadTranslation(int dx, int dy, int dz)
+    {
+        loadIdentity();
+
+        values[3] = dx;
+        values[7] = dy;
+        values[11] = dz;
+
+        return this;
+    }
+
+    /**
+     * Loads this matrix with scale matrix for given values.
+     * @param sx the fixed-point X scale
+     * @param sy the fixed-point Y scale
+     * @param sz the fixed-point Z scale
+     * @return this matrix
+     */
+    public FixedMatrix loadScale(int sx, int sy, int sz)
+    {
+        Arrays.fill(values, 0);
+
+        values[0] = sx;
+        values[5] = sy;
+        values[10] = sz;
+        values[15] = Fixed.ONE;
+
+        return this;
+    }
+
+    /**
+     * Loads this matrix with rotation matrix around X axis.
+     * Sine and cosine come from {@link Fixed} tables, so result
+     * is the same on every platform.
+     * @param angle the fixed-point rotation angle in degrees
+     * @return this matrix
+     */
+    public FixedMatrix loadRotationX(int angle)
+    {
+        int phase = Fixed.degreesToPhase(angle);
+        int sin = Fixed.sinPhase(phase);
+        int cos = Fixed.cosPhase(phase);
+
+        loadIdentity();
+
+        values[5] = cos;
+        values[6] = -sin;
+        values[9] = sin;
+        values[10] = cos;
+
+        return this;
+    }
+
+    /**
+     * Loads this matrix with rotation matrix around Y axis.
+     * @param angle the fixed-point rotation angle in degrees
+     * @return this matrix
+     */
+    public FixedMatrix loadRotationY(int angle)
+    {
+        int phase = Fixed.degreesToPhase(angle);
+        int sin = Fixed.sinPhase(phase);
+        int cos = Fixed.cosPhase(phase);
+
+        loadIdentity();
+
+        values[0] = cos;
+        values[2] = sin;
+        values[8] = -sin;
+        values[10] = cos;
+
+        return this;
+    }
+
+    /**
+     * Loads this matrix with rotation matrix around Z axis.
+     * @param angle the fixed-point rotation angle in degrees
+     * @return this matrix
+     */
+    public FixedMatrix loadRotationZ(int angle)
+    {
+        int phase = Fixed.degreesToPhase(angle);
+        int sin = Fixed.sinPhase(phase);
+        int cos = Fixed.cosPhase(phase);
+
+        loadIdentity();
+
+        values[0] = cos;
+        values[1] = -sin;
+        values[4] = sin;
+        values[5] = cos;
+
+        return this;
+    }
+
+    /**
+     * Transforms this matrix by other matrix.
+     * @param transform the transformation matrix
+     * @return this matrix
+     */
+    public FixedMatrix transform(FixedMatrix transform)
+    {
+        multiply(this, transform, this);
+
+        return this;
+    }
+
+    /**
+     * Computes inverse of this matrix.
+     * @return this matrix
+     */
+    public FixedMatrix inverse()
+    {
+        inverse(this, this);
+
+        return this;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+
+        for (int row = 0; row < 4; row++)
+        {
+            if (row > 0) builder.append('\n');
+
+            for (int column = 0; column < 4; column++)
+            {
+                if (column > 0) builder.append('\t');
+
+                builder.append(Fixed.toFloat(values[4 * row + column]));
+            }
+        }
+
+        return builder.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) return true;
+        if (!(obj instanceof FixedMatrix)) return false;
+
+        return Arrays.equals(values, ((FixedMatrix) obj).values);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(values);
+    }
+
+
+    /**
+     * Multiplies two matrices and stores result in other matrix.
+     * Result matrix can be the same object as any of the source matrices.
+     * @param first the first matrix to multiply
+     * @param second the second matrix to multiply
+     * @param result the matrix where multiplication result is to be stored
+     */
+    public static void multiply(FixedMatrix first, FixedMatrix second,
+            FixedMatrix result)
+    {
+        final int[] a = first.values, b = second.values, r = result.values;
+
+        if (result != first)
+        {
+            // each column of result depends only on the same column of second
+            for (int c = 0; c < 4; c++)
+            {
+                long b0 = b[c], b1 = b[4 + c], b2 = b[8 + c], b3 = b[12 + c];
+
+                int r0 = (int) ((a[0] * b0 + a[1] * b1 + a[2] * b2 + a[3] * b3) >> BIT_SHIFT);
+                int r1 = (int) ((a[4] * b0 + a[5] * b1 + a[6] * b2 + a[7] * b3) >> BIT_SHIFT);
+                int r2 = (int) ((a[8] * b0 + a[9] * b1 + a[10] * b2 + a[11] * b3) >> BIT_SHIFT);
+                int r3 = (int) ((a[12] * b0 + a[13] * b1 + a[14] * b2 + a[15] * b3) >> BIT_SHIFT);
+
+                r[c] = r0; r[4 + c] = r1; r[8 + c] = r2; r[12 + c] = r3;
+            }
+        }
+        else
+        {
+            // each row of result depends only on the same row of first
+            final int[] s = (second == first) ? a.clone() : b;
+
+            for (int i = 0; i < SIZE; i += 4)
+            {
+                long a0 = a[i], a1 = a[i + 1], a2 = a[i + 2], a3 = a[i + 3];
+
+                int r0 = (int) ((a0 * s[0] + a1 * s[4] + a2 * s[8] + a3 * s[12]) >> BIT_SHIFT);
+                int r1 = (int) ((a0 * s[1] + a1 * s[5] + a2 * s[9] + a3 * s[13]) >> BIT_SHIFT);
+                int r2 = (int) ((a0 * s[2] + a1 * s[6] + a2 * s[10] + a3 * s[14]) >> BIT_SHIFT);
+                int r3 = (int) ((a0 * s[3] + a1 * s[7] + a2 * s[11] + a3 * s[15]) >> BIT_SHIFT);
+
+                r[i] = r0; r[i + 1] = r1; r[i + 2] = r2; r[i + 3] = r3;
+            }
+        }
+    }
+
+    /**
+     * Multiplies vector by a matrix. Vector must have 4 components.
+     * Result vector can be the same object as source vector.
+     * @param matrix the matrix to multiply
+     * @param vector the vector to multiply
+     * @param result the result of multiplication
+     */
+    public static void multiply(FixedMatrix matrix, FixedVector vector,
+            FixedVector result)
+    {
+        final int[] m = matrix.values, v = vector.values;
+
+        long x = v[0], y = v[1], z = v[2], w = v[3];
+
+        int r0 = (int) ((m[0] * x + m[1] * y + m[2] * z + m[3] * w) >> BIT_SHIFT);
+        int r1 = (int) ((m[4] * x + m[5] * y + m[6] * z + m[7] * w) >> BIT_SHIFT);
+        int r2 = (int) ((m[8] * x + m[9] * y + m[10] * z + m[11] * w) >> BIT_SHIFT);
+        int r3 = (int) ((m[12] * x + m[13] * y + m[14] * z + m[15] * w) >> BIT_SHIFT);
+
+        result.values[0] = r0;
+        result.values[1] = r1;
+        result.values[2] = r2;
+        result.values[3] = r3;
+    }
+
+    /**
+     * Transforms 3D points stored one after another in array by affine
+     * matrix. Points are treated as having W component equal to 1.
+     * Destination can be the same array as source.
+     * @param matrix the affine transformation matrix
+     * @param src the array with fixed-point point coordinates
+     * @param srcOffset the index of first coordinate in source array
+     * @param dest the array for transformed coordinates
+     * @param destOffset the index of first coordinate in destination array
+     * @param count the number of points
+     */
+    public static void transformPoints(FixedMatrix matrix,
+            int[] src, int srcOffset, int[] dest, int destOffset, int count)
+    {
+        final int[] m = matrix.values;
+
+        final long m00 = m[0], m01 = m[1], m02 = m[2], m03 = (long) m[3] << BIT_SHIFT;
+        final long m10 = m[4], m11 = m[5], m12 = m[6], m13 = (long) m[7] << BIT_SHIFT;
+        final long m20 = m[8], m21 = m[9], m22 = m[10], m23 = (long) m[11] << BIT_SHIFT;
+
+        for (int i = 0; i < count; i++, srcOffset += 3, destOffset += 3)
+        {
+            long x = src[srcOffset], y = src[srcOffset + 1], z = src[srcOffset + 2];
+
+            dest[destOffset] = (int) ((m00 * x + m01 * y + m02 * z + m03) >> BIT_SHIFT);
+            dest[destOffset + 1] = (int) ((m10 * x + m11 * y + m12 * z + m13) >> BIT_SHIFT);
+            dest[destOffset + 2] = (int) ((m20 * x + m21 * y + m22 * z + m23) >> BIT_SHIFT);
+        }
+    }
+
+    /**
+     * Transforms 3D directions stored one after another in array by affine
+     * matrix. Translation is ignored. Destination can be the same array
+     * as source.
+     * @param matrix the affine transformation matrix
+     * @param src the array with fixed-point direction coordinates
+     * @param srcOffset the index of first coordinate in source array
+     * @param dest the array for transformed coordinates
+     * @param destOffset the index of first coordinate in destination array
+     * @param count the number of directions
+     */
+    public static void transformDirections(FixedMatrix matrix,
+            int[] src, int srcOffset, int[] dest, int destOffset, int count)
+    {
+        final int[] m = matrix.values;
+
+        final long m00 = m[0], m01 = m[1], m02 = m[2];
+        final long m10 = m[4], m11 = m[5], m12 = m[6];
+        final long m20 = m[8], m21 = m[9], m22 = m[10];
+
+        for (int i = 0; i < count; i++, srcOffset += 3, destOffset += 3)
+        {
+            long x = src[srcOffset], y = src[srcOffset + 1], z = src[srcOffset + 2];
+
+            dest[destOffset] = (int) ((m00 * x + m01 * y + m02 * z) >> BIT_SHIFT);
+            dest[destOffset + 1] = (int) ((m10 * x + m11 * y + m12 * z) >> BIT_SHIFT);
+            dest[destOffset + 2] = (int) ((m20 * x + m21 * y + m22 * z) >> BIT_SHIFT);
+        }
+    }
+
+    /**
+     * Computes inverse of given matrix and stores it in other matrix.
+     * Affine matrices use closed-form inverse of upper 3x3 part, other
+     * matrices use adjugate divided by determinant. Cofactors and
+     * determinant are computed exactly and each value is rounded once,
+     * so error is at most half a unit in the last place, plus 2^-14 units
+     * from truncating determinant to 46 bits in division. Determinant of
+     * matrix with 2x2 minors above 2^28 is scaled to fit in 128 bits,
+     * so its error can be slightly larger. Throws
+     * {@code ArithmeticException} if any value of inverse is outside
+     * fixed-point range. Destination matrix can be the same object
+     * as source matrix.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    public static void inverse(FixedMatrix src, FixedMatrix dest)
+    {
+        final int[] m = src.values;
+
+        if (m[12] == 0 && m[13] == 0 && m[14] == 0 && m[15] == Fixed.ONE)
+            inverseAffine(m, dest.values);
+        else
+            inverseGeneral(m, dest.values);
+    }
+
+    /**
+     * Computes inverse of affine matrix. Cofactors are computed exactly
+     * and sums of products are accumulated in 128 bits, so each result
+     * is rounded once, at the final division.
+     * @param m the source values
+     * @param d the destination values, can be the same array
+     */
+    private static void inverseAffine(int[] m, int[] d)
+    {
+        // exact cofactors of upper 3x3 part in Q32.32 format
+        long c00 = (long) m[5] * m[10] - (long) m[6] * m[9];
+        long c01 = (long) m[6] * m[8] - (long) m[4] * m[10];
+        long c02 = (long) m[4] * m[9] - (long) m[5] * m[8];
+        long c10 = (long) m[2] * m[9] - (long) m[1] * m[10];
+        long c11 = (long) m[0] * m[10] - (long) m[2] * m[8];
+        long c12 = (long) m[1] * m[8] - (long) m[0] * m[9];
+        long c20 = (long) m[1] * m[6] - (long) m[2] * m[5];
+        long c21 = (long) m[2] * m[4] - (long) m[0] * m[6];
+        long c22 = (long) m[0] * m[5] - (long) m[1] * m[4];
+
+        Int128 sum = new Int128().add(m[0], c00).add(m[1], c01).add(m[2], c02);
+
+        if (sum.isZero())
+            throw new IllegalArgumentException(
+                    "Matrix cannot be inverted: determinant is 0");
+
+        // determinant is det * 2^exponent in Q48 format
+        long det = sum.mantissa();
+        int exponent = sum.exponent();
+
+        // translation is -R^-1 * t, computed from cofactors before rounding
+        long tx = m[3], ty = m[7], tz = m[11];
+
+        int d3 = divide(sum.clear().add(-c00, tx).add(-c10, ty).add(-c20, tz), det, BIT_SHIFT - exponent);
+        int d7 = divide(sum.clear().add(-c01, tx).add(-c11, ty).add(-c21, tz), det, BIT_SHIFT - exponent);
+        int d11 = divide(sum.clear().add(-c02, tx).add(-c12, ty).add(-c22, tz), det, BIT_SHIFT - exponent);
+
+        // inverse of 3x3 part is transposed cofactor matrix divided by determinant
+        int e = 2 * BIT_SHIFT - exponent;
+
+        int r00 = divide(c00, det, e), r01 = divide(c10, det, e), r02 = divide(c20, det, e);
+        int r10 = divide(c01, det, e), r11 = divide(c11, det, e), r12 = divide(c21, det, e);
+        int r20 = divide(c02, det, e), r21 = divide(c12, det, e), r22 = divide(c22, det, e);
+
+        d[0] = r00; d[1] = r01; d[2] = r02; d[3] = d3;
+        d[4] = r10; d[5] = r11; d[6] = r12; d[7] = d7;
+        d[8] = r20; d[9] = r21; d[10] = r22; d[11] = d11;
+
+        d[12] = 0; d[13] = 0; d[14] = 0; d[15] = Fixed.ONE;
+    }
+
+    /**
+     * Computes {@code numerator * 2^shift / denominator} rounded to nearest,
+     * ties away from zero. Throws {@code ArithmeticException} if result is
+     * outside fixed-point range.
+     * @param numerator the numerator
+     * @param denominator the non-zero denominator
+     * @param shift the binary exponent of numerator
+     * @return the rounded quotient
+     */
+    private static int divide(long numerator, long denominator, int shift)
+    {
+        // keep 46 bits of denominator, so remainder can be shifted by 16 bits
+        int s = Math.max(0, 18 - Long.numberOfLeadingZeros(Math.abs(denominator)));
+
+        denominator >>= s;
+        shift -= s;
+
+        if (shift < 0)
+        {
+            numerator >>= -shift;
+            shift = 0;
+        }
+
+        long quotient = numerator / denominator;
+        long remainder = numerator % denominator;
+
+        // long division, at most 16 bits of quotient at a time
+        for (; shift > 0; shift -= 16)
+        {
+            int step = Math.min(16, shift);
+
+            if (Math.abs(quotient) > (1L << (31 - step)))
+                throw new ArithmeticException("Fixed-point overflow");
+
+            remainder <<= step;
+            quotient = (quotient << step) + remainder / denominator;
+            remainder %= denominator;
+        }
+
+        if (Math.abs(remainder) >= Math.abs(denominator) - Math.abs(remainder))
+            quotient += ((numerator ^ denominator) < 0) ? -1 : 1;
+
+        return toInt(quotient);
+    }
+
+    /**
+     * Converts value to {@code int}. Throws {@code ArithmeticException}
+     * if value is outside fixed-point range.
+     * @param value the value
+     * @return the value as {@code int}
+     */
+    private static int toInt(long value)
+    {
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            throw new ArithmeticException("Fixed-point overflow");
+
+        return (int) value;
+    }
+
+    /**
+     * Computes inverse of general matrix as adjugate divided by determinant.
+     * Cofactors and determinant are accumulated exactly from 2x2 minors
+     * in 128 bits and each result is rounded once, at the final division.
+     * @param m the source values
+     * @param d the destination values, can be the same array
+     */
+    private static void inverseGeneral(int[] m, int[] d)
+    {
+        long a00 = m[0], a01 = m[1], a02 = m[2], a03 = m[3];
+        long a10 = m[4], a11 = m[5], a12 = m[6], a13 = m[7];
+        long a20 = m[8], a21 = m[9], a22 = m[10], a23 = m[11];
+        long a30 = m[12], a31 = m[13], a32 = m[14], a33 = m[15];
+
+        // exact 2x2 minors of upper and lower two rows in Q32.32 format
+        long s0 = a00 * a11 - a10 * a01;
+        long s1 = a00 * a12 - a10 * a02;
+        long s2 = a00 * a13 - a10 * a03;
+        long s3 = a01 * a12 - a11 * a02;
+        long s4 = a01 * a13 - a11 * a03;
+        long s5 = a02 * a13 - a12 * a03;
+
+        long c0 = a20 * a31 - a30 * a21;
+        long c1 = a20 * a32 - a30 * a22;
+        long c2 = a20 * a33 - a30 * a23;
+        long c3 = a21 * a32 - a31 * a22;
+        long c4 = a21 * a33 - a31 * a23;
+        long c5 = a22 * a33 - a32 * a23;
+
+        // minors of very large matrices are scaled to 60 bits, so determinant fits in 128 bits
+        long max = Math.max(
+                Math.max(Math.max(Math.abs(s0), Math.abs(s1)), Math.max(Math.abs(s2), Math.abs(s3))),
+                Math.max(Math.max(Math.abs(s4), Math.abs(s5)), Math.max(Math.abs(c0), Math.abs(c1))));
+        max = Math.max(max, Math.max(Math.max(Math.abs(c2), Math.abs(c3)), Math.max(Math.abs(c4), Math.abs(c5))));
+        int shift = Math.max(0, 4 - Long.numberOfLeadingZeros(max));
+
+        Int128 sum = new Int128()
+                .add(s0 >> shift, c5 >> shift).add(-(s1 >> shift), c4 >> shift)
+                .add(s2 >> shift, c3 >> shift).add(s3 >> shift, c2 >> shift)
+                .add(-(s4 >> shift), c1 >> shift).add(s5 >> shift, c0 >> shift);
+
+        if (sum.isZero())
+            throw new IllegalArgumentException(
+                    "Matrix cannot be inverted: determinant is 0");
+
+        // determinant is det * 2^exponent in Q64 format, cofactors are in Q48 format
+        long det = sum.mantissa();
+        int exponent = sum.exponent() + 2 * shift;
+
+        int e = 2 * BIT_SHIFT - exponent;
+
+        int r00 = divide(sum.clear().add(a11, c5).add(-a12, c4).add(a13, c3), det, e);
+        int r01 = divide(sum.clear().add(-a01, c5).add(a02, c4).add(-a03, c3), det, e);
+        int r02 = divide(sum.clear().add(a31, s5).add(-a32, s4).add(a33, s3), det, e);
+        int r03 = divide(sum.clear().add(-a21, s5).add(a22, s4).add(-a23, s3), det, e);
+
+        int r10 = divide(sum.clear().add(-a10, c5).add(a12, c2).add(-a13, c1), det, e);
+        int r11 = divide(sum.clear().add(a00, c5).add(-a02, c2).add(a03, c1), det, e);
+        int r12 = divide(sum.clear().add(-a30, s5).add(a32, s2).add(-a33, s1), det, e);
+        int r13 = divide(sum.clear().add(a20, s5).add(-a22, s2).add(a23, s1), det, e);
+
+        int r20 = divide(sum.clear().add(a10, c4).add(-a11, c2).add(a13, c0), det, e);
+        int r21 = divide(sum.clear().add(-a00, c4).add(a01, c2).add(-a03, c0), det, e);
+        int r22 = divide(sum.clear().add(a30, s4).add(-a31, s2).add(a33, s0), det, e);
+        int r23 = divide(sum.clear().add(-a20, s4).add(a21, s2).add(-a23, s0), det, e);
+
+        int r30 = divide(sum.clear().add(-a10, c3).add(a11, c1).add(-a12, c0), det, e);
+        int r31 = divide(sum.clear().add(a00, c3).add(-a01, c1).add(a02, c0), det, e);
+        int r32 = divide(sum.clear().add(-a30, s3).add(a31, s1).add(-a32, s0), det, e);
+        int r33 = divide(sum.clear().add(a20, s3).add(-a21, s1).add(a22, s0), det, e);
+
+        d[0] = r00; d[1] = r01; d[2] = r02; d[3] = r03;
+        d[4] = r10; d[5] = r11; d[6] = r12; d[7] = r13;
+        d[8] = r20; d[9] = r21; d[10] = r22; d[11] = r23;
+        d[12] = r30; d[13] = r31; d[14] = r32; d[15] = r33;
+    }
+
+    /**
+     * Computes {@code numerator * 2^shift / denominator} rounded to nearest.
+     * @param numerator the numerator
+     * @param denominator the non-zero denominator
+     * @param shift the binary exponent of numerator
+     * @return the rounded quotient
+     */
+    private static int divide(Int128 numerator, long denominator, int shift)
+    {
+        return divide(numerator.mantissa(), denominator, shift + numerator.exponent());
+    }
+
+    /**
+     * Returns index of value in row and column. Throws
+     * {@code IndexOutOfBoundsException} if it is outside matrix.
+     * @param row the row index
+     * @param column the column index
+     * @return the index in values array
+     */
+    private static int index(int row, int column)
+    {
+        if (row < 0 || row >= 4 || column < 0 || column >= 4)
+            throw new IndexOutOfBoundsException(
+                    "Invalid index: " + row + ", " + column);
+
+        return 4 * row + column;
+    }
+
+    /**
+     * Signed 128-bit accumulator of exact products of {@code long} values.
+     */
+    private static final class Int128
+    {
+        private long high, low;
+
+        /**
+         * Sets this value to zero.
+         * @return this value
+         */
+        Int128 clear()
+        {
+            high = 0;
+            low = 0;
+            return this;
+        }
+
+        /**
+         * Adds exact product of two values to this value.
+         * @param x the first factor
+         * @param y the second factor
+         * @return this value
+         */
+        Int128 add(long x, long y)
+        {
+            long sum = low + x * y;
+
+            high += multiplyHigh(x, y) + ((Long.compareUnsigned(sum, low) < 0) ? 1 : 0);
+            low = sum;
+            return this;
+        }
+
+        /**
+         * Checks if this value is zero.
+         * @return {@code true} if this value is zero
+         */
+        boolean isZero()
+        {
+            return (high | low) == 0;
+        }
+
+        /**
+         * Returns number of low bits dropped by {@link #mantissa()}.
+         * @return the binary exponent of mantissa
+         */
+        int exponent()
+        {
+            long sign = high >> 63;
+            int bits = (high != sign)
+                    ? 128 - Long.numberOfLeadingZeros(high ^ sign)
+                    : 64 - Long.numberOfLeadingZeros(low ^ sign);
+
+            return Math.max(0, bits - 62);
+        }
+
+        /**
+         * Returns this value truncated to at most 62 significant bits.
+         * @return the mantissa
+         */
+        long mantissa()
+        {
+            int k = exponent();
+
+            if (k == 0) return low;
+            if (k < 64) return (low >>> k) | (high << (64 - k));
+            return high >> (k - 64);
+        }
+
+        /**
+         * Computes high 64 bits of signed 128-bit product.
+         * @param x the first factor
+         * @param y the second factor
+         * @return the high bits of product
+         */
+        private static long multiplyHigh(long x, long y)
+        {
+            long x1 = x >> 32, x2 = x & 0xFFFFFFFFL;
+            long y1 = y >> 32, y2 = y & 0xFFFFFFFFL;
+
+            long t = x1 * y2 + ((x2 * y2) >>> 32);
+            long u = (t & 0xFFFFFFFFL) + x2 * y1;
+
+            return x1 * y1 + (t >> 32) + (u >> 32);
+        }
+    }
+
+
+    // constant bit shift for Q16.16 format
+    private static final int BIT_SHIFT = 16;
+}
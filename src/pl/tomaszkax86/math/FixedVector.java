@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * This class implements vectors of fixed-point Q16.16 numbers and static
+ * methods for vector operations.
+ *
+ * Values are kept as raw {@code int} representations (see {@link Fixed}),
+ * so no objects are created. Sums of products are accumulated in 64 bits
+ * and rounded once, so results are bit-identical on every platform.
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class FixedVector implements Serializable
+{
+    // fixed-point values of this vector
+    final int[] values;
+
+
+    /**
+     * Creates new vector with specific length.
+     * @param length the length of new vector
+     */
+    public FixedVector(int length)
+    {
+        values = new int[length];
+    }
+
+    /**
+     * Creates new vector with given fixed-point values.
+     * @param values the fixed-point values
+     */
+    public FixedVector(int... values)
+    {
+        this.values = values.clone();
+    }
+
+    /**
+     * Creates new vector as a copy of other vector.
+     * @param other the vector to copy
+     */
+    public FixedVector(FixedVector other)
+    {
+        this.values = other.values.clone();
+    }
+
+    /**
+     * Creates new vector with values of floating-point vector.
+     * @param other the vector to convert
+     */
+    public FixedVector(Vector other)
+    {
+        this.values = new int[other.size()];
+
+        for (int i = 0; i < values.length; i++)
+            values[i] = Fixed.toFixed(other.values[i]);
+    }
+
+    /**
+     * Returns the length of this vector.
+     * @return the length of this vector
+     */
+    public int size()
+    {
+        return values.length;
+    }
+
+    /**
+     * Returns the fixed-point value under given index.
+     * @param index the index
+     * @return the fixed-point value
+     */
+    public int get(int index)
+    {
+        return values[index];
+    }
+
+    /**
+     * Changes the fixed-point value under given index.
+     * @param index the index
+     * @param value the new fixed-point value
+     */
+    public void set(int index, int value)
+    {
+        values[index] = value;
+    }
+
+    /**
+     * Copies values of this vector to floating-point vector.
+     * @param vector the vector to copy values to
+     */
+    public void get(Vector vector)
+    {
+        if (vector.size() != values.length)
+            throw new IllegalArgumentException("Incompatible vectors");
+
+        for (int i = 0; i < values.length; i++)
+            vector.values[i] = Fixed.toFloat(values[i]);
+    }
+
+    /**
+     * Creates new floating-point vector with values of this vector.
+     * @return the new vector
+     */
+    public Vector toVector()
+    {
+        Vector vector = new Vector(values.length);
+
+        get(vector);
+
+        return vector;
+    }
+
+    /**
+     * Normalizes this vector.
+     */
+    public void normalize()
+    {
+        normalize(values, 0, values.length);
+    }
+
+    /**
+     * Calculates length of this vector.
+     * @return the fixed-point length, saturated to the largest
+     * fixed-point value if it cannot be represented
+     */
+    public int length()
+    {
+        return length(values, 0, values.length);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append('[');
+
+        for (int i = 0; i < values.length; i++)
+        {
+            if (i > 0) builder.append(", ");
+
+            builder.append(Fixed.toFloat(values[i]));
+        }
+
+        builder.append(']');
+
+        return builder.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) return true;
+        if (!(obj instanceof FixedVector)) return false;
+
+        return Arrays.equals(values, ((FixedVector) obj).values);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(values);
+    }
+
+
+    /**
+     * Calculates dot product of two vectors.
+     * @param first the first vector
+     * @param second the second vector
+     * @return the fixed-point dot product
+     */
+    public static int dot(FixedVector first, FixedVector second)
+    {
+        if (first.values.length != second.values.length)
+            throw new IllegalArgumentException("Incompatible vectors");
+
+        return (int) (dot(first.values, 0, second.values, 0,
+                first.values.length) >> BIT_SHIFT);
+    }
+
+    /**
+     * Calculates cross product of two 3-component vectors and stores it
+     * in other vector. Result can be the same object as any of the sources.
+     * @param first the first vector
+     * @param second the second vector
+     * @param result the vector for result
+     * @return the result vector
+     */
+    public static FixedVector cross(FixedVector first, FixedVector second,
+            FixedVector result)
+    {
+        final int[] a = first.values, b = second.values;
+
+        int x = (int) (((long) a[1] * b[2] - (long) a[2] * b[1]) >> BIT_SHIFT);
+        int y = (int) (((long) a[2] * b[0] - (long) a[0] * b[2]) >> BIT_SHIFT);
+        int z = (int) (((long) a[0] * b[1] - (long) a[1] * b[0]) >> BIT_SHIFT);
+
+        result.values[0] = x;
+        result.values[1] = y;
+        result.values[2] = z;
+
+        return result;
+    }
+
+    /**
+     * Normalizes vector stored in array. Each value of result is within
+     * 1.5 units in the last place. Zero vector is left unchanged.
+     * @param values the array with fixed-point values
+     * @param first the index of first value
+     * @param count the number of values
+     */
+    public static void normalize(int[] values, int first, int count)
+    {
+        // sum of squares is scaled down by 2^(2s) when it would overflow
+        int s = squareShift(values, first, count);
+        long sum = sumOfSquares(values, first, count, s);
+
+        if (sum == 0) return;
+
+        // sum = m 2^k, where m is in Q1.30 format, 1/2 <= m < 2 and k is even
+        int k = (64 - Long.numberOfLeadingZeros(sum) - 30) & ~1;
+        long m = (k >= 0) ? sum >> k : sum << -k;
+
+        // 1 / length = y 2^(1 - k/2 - s), multiply instead of dividing each value
+        long y = Fixed.inverseSqrtMantissa(m);
+        int shift = 29 + k / 2 + s;
+        long half = 1L << (shift - 1);
+
+        for (int i = first; i < first + count; i++)
+            values[i] = (int) ((values[i] * y + half) >> shift);
+    }
+
+    /**
+     * Normalizes many 3-component vectors stored one after another in array.
+     * Zero vectors are left unchanged.
+     * @param values the array with fixed-point values
+     * @param offset the index of first value
+     * @param count the number of vectors
+     */
+    public static void normalize3(int[] values, int offset, int count)
+    {
+        for (int i = 0; i < count; i++, offset += 3)
+            normalize(values, offset, 3);
+    }
+
+    /**
+     * Calculates length of vector stored in array. Result is rounded down;
+     * if sum of squares does not fit in 64 bits, relative error is at most
+     * 2<sup>-29</sup>.
+     * @param values the array with fixed-point values
+     * @param first the index of first value
+     * @param count the number of values
+     * @return the fixed-point length, saturated to the largest
+     * fixed-point value if it cannot be represented
+     */
+    public static int length(int[] values, int first, int count)
+    {
+        int s = squareShift(values, first, count);
+        long length = Fixed.sqrt(sumOfSquares(values, first, count, s)) << s;
+
+        return (int) Math.min(length, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns shift s, such that sum of squares of values divided
+     * by 2<sup>2s</sup> fits in {@code long}.
+     * @param values the array with fixed-point values
+     * @param first the index of first value
+     * @param count the number of values
+     * @return the shift
+     */
+    private static int squareShift(int[] values, int first, int count)
+    {
+        long max = 0;
+
+        for (int i = first; i < first + count; i++)
+            max = Math.max(max, Math.abs((long) values[i]));
+
+        int bits = 64 - Long.numberOfLeadingZeros(max);
+        int countBits = 32 - Integer.numberOfLeadingZeros(count);
+
+        // count * 2^(2 bits - 2s) must not exceed 2^62
+        return Math.max(0, (2 * bits + countBits - 61) / 2);
+    }
+
+    /**
+     * Calculates sum of squares of fixed-point values in Q32.32 format,
+     * divided by 2<sup>2s</sup>.
+     * @param values the array with fixed-point values
+     * @param first the index of first value
+     * @param count the number of values
+     * @param s the shift from {@link #squareShift(int[], int, int)}
+     * @return the scaled sum of squares
+     */
+    private static long sumOfSquares(int[] values, int first, int count, int s)
+    {
+        long sum = 0;
+
+        for (int i = first; i < first + count; i++)
+            sum += ((long) values[i] * values[i]) >> (2 * s);
+
+        return sum;
+    }
+
+    /**
+     * Calculates sum of products of fixed-point values in Q32.32 format.
+     * @param a the first array
+     * @param aOffset the index of first value in first array
+     * @param b the second array
+     * @param bOffset the index of first value in second array
+     * @param count the number of values
+     * @return the sum of products, not rounded
+     */
+    static long dot(int[] a, int aOffset, int[] b, int bOffset, int count)
+    {
+        long sum = 0;
+
+        for (int i = 0; i < count; i++)
+            sum += (long) a[aOffset + i] * b[bOffset + i];
+
+        return sum;
+    }
+
+
+    // constant bit shift for Q16.16 format
+    private static final int BIT_SHIFT = 16;
+}
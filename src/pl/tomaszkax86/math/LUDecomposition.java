@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+/**
+ * This class implements LU decomposition with partial pivoting.
+ *
+ * Decomposition is computed once in constructor and can be then used
+ * to solve linear systems with many right-hand sides, each in O(n&sup2;)
+ * time, instead of inverting the matrix every time.
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class LUDecomposition
+{
+    // size of decomposed matrix
+    private final int size;
+
+    // L (below diagonal, with implicit ones on diagonal)
+    // and U (on and above diagonal) stored row by row
+    private final float[] lu;
+
+    // row permutation, row i of LU is row pivot[i] of source matrix
+    private final int[] pivot;
+
+    // determinant of source matrix
+    private final float determinant;
+
+
+    /**
+     * Computes LU decomposition of square matrix.
+     * Source matrix is not modified.
+     * @param matrix the matrix to decompose
+     */
+    public LUDecomposition(Matrix matrix)
+    {
+        if (matrix.getRows() != matrix.getColumns())
+            throw new IllegalArgumentException("Matrix is not square");
+
+        final int n = matrix.getRows();
+
+        this.size = n;
+        this.lu = new float[n * n];
+        this.pivot = new int[n];
+
+        for (int row = 0; row < n; row++)
+        {
+            pivot[row] = row;
+
+            for (int column = 0; column < n; column++)
+                lu[row * n + column] = matrix.get(row, column);
+        }
+
+        float det = 1.0f;
+
+        for (int k = 0; k < n; k++)
+        {
+            // find row with the largest value in this column
+            int p = k;
+            float max = Math.abs(lu[k * n + k]);
+
+            for (int row = k + 1; row < n; row++)
+            {
+                float value = Math.abs(lu[row * n + k]);
+
+                if (value > max)
+                {
+                    p = row;
+                    max = value;
+                }
+            }
+
+            if (p != k)
+            {
+                swapRows(k, p);
+
+                int temp = pivot[k];
+                pivot[k] = pivot[p];
+                pivot[p] = temp;
+
+                det = -det;
+            }
+
+            float diagonal = lu[k * n + k];
+            det *= diagonal;
+
+            // singular matrix, nothing to eliminate in this column
+            if (diagonal == 0.0f) continue;
+
+            for (int row = k + 1; row < n; row++)
+            {
+                float factor = lu[row * n + k] / diagonal;
+                lu[row * n + k] = factor;
+
+                if (factor == 0.0f) continue;
+
+                Kernels.addScaled(-factor, lu, k * n + k + 1,
+                        lu, row * n + k + 1, n - k - 1);
+            }
+        }
+
+        this.determinant = det;
+    }
+
+    /**
+     * Returns the number of rows and columns of decomposed matrix.
+     * @return the size
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns determinant of decomposed matrix.
+     * @return the determinant
+     */
+    public float determinant()
+    {
+        return determinant;
+    }
+
+    /**
+     * Checks if decomposed matrix is singular.
+     * @return {@code true} if matrix is singular
+     */
+    public boolean isSingular()
+    {
+        return determinant == 0.0f;
+    }
+
+    /**
+     * Solves linear system {@code A * x = b}.
+     * @param b the right-hand side
+     * @return the solution
+     */
+    public Vector solve(Vector b)
+    {
+        Vector x = new Vector(size);
+
+        solve(b.values, x.values);
+
+        return x;
+    }
+
+    /**
+     * Solves linear system {@code A * x = b}.
+     * Solution vector can be the same object as right-hand side.
+     * @param b the right-hand side
+     * @param x the vector for solution
+     */
+    public void solve(Vector b, Vector x)
+    {
+        solve(b.values, x.values);
+    }
+
+    /**
+     * Solves linear system {@code A * x = b}.
+     * Solution array can be the same object as right-hand side.
+     * @param b the right-hand side
+     * @param x the array for solution
+     */
+    public void solve(float[] b, float[] x)
+    {
+        if (b.length < size)
+            throw new IllegalArgumentException("Source vector too short");
+
+        if (x.length < size)
+            throw new IllegalArgumentException("Destination vector too short");
+
+        if (isSingular())
+            throw new IllegalStateException("Matrix is singular");
+
+        if (b == x) b = b.clone();
+
+        final int n = size;
+
+        // forward substitution: L * y = P * b
+        for (int i = 0; i < n; i++)
+        {
+            x[i] = b[pivot[i]] - Kernels.dot(lu, i * n, x, 0, i);
+        }
+
+        // back substitution: U * x = y
+        for (int i = n - 1; i >= 0; i--)
+        {
+            float sum = Kernels.dot(lu, i * n + i + 1, x, i + 1, n - i - 1);
+
+            x[i] = (x[i] - sum) / lu[i * n + i];
+        }
+    }
+
+    /**
+     * Solves linear system {@code A * X = B} for every column of {@code B}.
+     * @param b the right-hand side
+     * @return the solution
+     */
+    public Matrix solve(Matrix b)
+    {
+        Matrix x = new Matrix(size, b.getColumns(), b.getOrder());
+
+        solve(b, x);
+
+        return x;
+    }
+
+    /**
+     * Solves linear system {@code A * X = B} for every column of {@code B}.
+     * Solution matrix can be the same object as right-hand side.
+     * @param b the right-hand side
+     * @param x the matrix for solution
+     */
+    public void solve(Matrix b, Matrix x)
+    {
+        if (b.getRows() != size || x.getRows() != size)
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: different row count");
+
+        if (b.getColumns() != x.getColumns())
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: different column count");
+
+        float[] column = new float[size];
+        float[] solution = new float[size];
+
+        for (int i = 0; i < b.getColumns(); i++)
+        {
+            b.getColumn(i, column);
+            solve(column, solution);
+            x.setColumn(i, solution);
+        }
+    }
+
+    /**
+     * Swaps two rows of decomposition.
+     * @param first the first row
+     * @param second the second row
+     */
+    private void swapRows(int first, int second)
+    {
+        int a = first * size;
+        int b = second * size;
+
+        for (int i = 0; i < size; i++, a++, b++)
+        {
+            float temp = lu[a];
+            lu[a] = lu[b];
+            lu[b] = temp;
+        }
+    }
+}
@@ -0,0 +1,844 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class implementing matrix stored in a file.
+ *
+ * Matrix is divided into square tiles, each stored in row-major order in
+ * a contiguous region of the file. Tiles are accessed through memory-mapped
+ * regions kept in a bounded least-recently-used cache, so matrices much
+ * larger than available memory can be processed. Operations work tile by
+ * tile and keep only a few tiles in heap memory at a time.
+ *
+ * File starts with a 16-byte header (magic number, rows, columns and
+ * tile size), followed by tiles ordered row by row. All values are
+ * little-endian.
+ *
+ * This class is not thread-safe.
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class MappedMatrix implements Closeable
+{
+    // file header
+    private static final int MAGIC = 0x5441_4D4D;
+    private static final int HEADER_SIZE = 16;
+
+    // default tile size and number of cached tiles
+    private static final int DEFAULT_TILE_SIZE = 256;
+    private static final int DEFAULT_CACHE_SIZE = 64;
+
+    // matrix dimensions
+    private final int rows, columns;
+
+    // tile dimensions and number of tiles in each direction
+    private final int tileSize, tileRows, tileColumns;
+
+    private final FileChannel channel;
+
+    // recently used tiles, in access order
+    private final Map<Long, MappedByteBuffer> cache;
+
+
+    private MappedMatrix(FileChannel channel, int rows, int columns,
+            int tileSize, final int cacheSize)
+    {
+        this.channel = channel;
+        this.rows = rows;
+        this.columns = columns;
+        this.tileSize = tileSize;
+        this.tileRows = (rows - 1) / tileSize + 1;
+        this.tileColumns = (columns - 1) / tileSize + 1;
+
+        this.cache = new LinkedHashMap<Long, MappedByteBuffer>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, MappedByteBuffer> eldest)
+            {
+                if (size() <= cacheSize)
+                    return false;
+
+                // unmapped region is released by garbage collector
+                eldest.getValue().force();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Creates new file-backed matrix with all values equal to zero.
+     * Existing file is overwritten.
+     * @param file the file to store matrix in
+     * @param rows the number of rows
+     * @param columns the number of columns
+     * @return the new matrix
+     * @throws IOException when I/O error occurs
+     */
+    public static MappedMatrix create(File file, int rows, int columns)
+            throws IOException
+    {
+        return create(file, rows, columns, DEFAULT_TILE_SIZE, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates new file-backed matrix with all values equal to zero.
+     * Existing file is overwritten.
+     * @param file the file to store matrix in
+     * @param rows the number of rows
+     * @param columns the number of columns
+     * @param tileSize the number of rows and columns of one tile
+     * @param cacheSize the maximum number of mapped tiles
+     * @return the new matrix
+     * @throws IOException when I/O error occurs
+     */
+    public static MappedMatrix create(File file, int rows, int columns,
+            int tileSize, int cacheSize) throws IOException
+    {
+        if (rows <= 0 || columns <= 0 || tileSize <= 0 || cacheSize <= 0)
+            throw new IllegalArgumentException("Invalid matrix parameters");
+
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            header.putInt(MAGIC).putInt(rows).putInt(columns).putInt(tileSize);
+
+            // cast keeps compatibility with Java 8 Buffer methods
+            ((Buffer) header).flip();
+
+            channel.write(header, 0);
+
+            // last byte sets file size, the rest is filled with zeros
+            channel.write(ByteBuffer.allocate(1), fileSize(rows, columns, tileSize) - 1);
+
+            return new MappedMatrix(channel, rows, columns, tileSize, cacheSize);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens existing file-backed matrix.
+     * @param file the file with matrix
+     * @return the matrix
+     * @throws IOException when I/O error occurs or file is invalid
+     */
+    public static MappedMatrix open(File file) throws IOException
+    {
+        return open(file, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Opens existing file-backed matrix.
+     * @param file the file with matrix
+     * @param cacheSize the maximum number of mapped tiles
+     * @return the matrix
+     * @throws IOException when I/O error occurs or file is invalid
+     */
+    public static MappedMatrix open(File file, int cacheSize) throws IOException
+    {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            while (header.hasRemaining())
+            {
+                if (channel.read(header, header.position()) < 0)
+                    break;
+            }
+
+            ((Buffer) header).flip();
+
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC)
+                throw new IOException("Invalid matrix file: " + file);
+
+            int rows = header.getInt();
+            int columns = header.getInt();
+            int tileSize = header.getInt();
+
+            // file must hold all tiles declared in header
+            if (rows <= 0 || columns <= 0 || tileSize <= 0
+                    || channel.size() < fileSize(rows, columns, tileSize))
+                throw new IOException("Invalid matrix file: " + file);
+
+            return new MappedMatrix(channel, rows, columns, tileSize, cacheSize);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of rows.
+     * @return the number of rows
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns.
+     * @return the number of columns
+     */
+    public int getColumns()
+    {
+        return columns;
+    }
+
+    /**
+     * Returns the number of rows and columns of one tile.
+     * @return the tile size
+     */
+    public int getTileSize()
+    {
+        return tileSize;
+    }
+
+    /**
+     * Returns the value under given row and column.
+     * @param row the row index
+     * @param column the column index
+     * @return the value
+     */
+    public float get(int row, int column)
+    {
+        checkIndex(row, column);
+
+        return tile(row / tileSize, column / tileSize)
+                .getFloat(4 * ((row % tileSize) * tileSize + column % tileSize));
+    }
+
+    /**
+     * Changes the value under given row and column.
+     * @param row the row index
+     * @param column the column index
+     * @param value the new value
+     */
+    public void set(int row, int column, float value)
+    {
+        checkIndex(row, column);
+
+        tile(row / tileSize, column / tileSize)
+                .putFloat(4 * ((row % tileSize) * tileSize + column % tileSize), value);
+    }
+
+    /**
+     * Copies values from in-memory matrix to this matrix.
+     * @param matrix the matrix to copy values from
+     * @return this matrix
+     */
+    public MappedMatrix set(Matrix matrix)
+    {
+        checkSize(matrix);
+
+        float[] tile = new float[tileSize * tileSize];
+
+        for (int tr = 0; tr < tileRows; tr++)
+        {
+            for (int tc = 0; tc < tileColumns; tc++)
+            {
+                int height = Math.min(tileSize, rows - tr * tileSize);
+                int width = Math.min(tileSize, columns - tc * tileSize);
+
+                // padding outside matrix must stay zero
+                if (height < tileSize || width < tileSize)
+                    Arrays.fill(tile, 0.0f);
+
+                for (int r = 0; r < height; r++)
+                {
+                    for (int c = 0; c < width; c++)
+                        tile[r * tileSize + c] = matrix.get(tr * tileSize + r, tc * tileSize + c);
+                }
+
+                writeTile(tr, tc, tile);
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Copies values of this matrix to in-memory matrix.
+     * @param matrix the matrix to copy values to
+     */
+    public void get(Matrix matrix)
+    {
+        checkSize(matrix);
+
+        float[] tile = new float[tileSize * tileSize];
+
+        for (int tr = 0; tr < tileRows; tr++)
+        {
+            for (int tc = 0; tc < tileColumns; tc++)
+            {
+                int height = Math.min(tileSize, rows - tr * tileSize);
+                int width = Math.min(tileSize, columns - tc * tileSize);
+
+                readTile(tr, tc, tile);
+
+                for (int r = 0; r < height; r++)
+                {
+                    for (int c = 0; c < width; c++)
+                        matrix.set(tr * tileSize + r, tc * tileSize + c, tile[r * tileSize + c]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates new in-memory matrix with values of this matrix.
+     * @return the new matrix
+     */
+    public Matrix toMatrix()
+    {
+        Matrix matrix = new Matrix(rows, columns);
+
+        get(matrix);
+
+        return matrix;
+    }
+
+    /**
+     * Writes all changes to the file.
+     */
+    public void flush()
+    {
+        for (MappedByteBuffer tile : cache.values())
+            tile.force();
+    }
+
+    /**
+     * Writes all changes and closes the file.
+     * @throws IOException when I/O error occurs
+     */
+    @Override
+    public void close() throws IOException
+    {
+        flush();
+        cache.clear();
+        channel.close();
+    }
+
+    /**
+     * Computes LU decomposition with partial pivoting in place.
+     *
+     * After decomposition, this matrix contains L (below diagonal, with
+     * implicit ones on diagonal) and U (on and above diagonal) of row-permuted
+     * source matrix. Matrix is processed in panels one tile wide; the panel
+     * is kept in heap memory, which requires {@code rows * tileSize} values.
+     *
+     * @return row permutation, row i of LU is row {@code pivot[i]}
+     * of source matrix
+     */
+    public int[] decomposeLU()
+    {
+        if (rows != columns)
+            throw new IllegalStateException("Matrix is not square");
+
+        final int n = rows, t = tileSize;
+        int[] pivot = new int[n];
+
+        for (int i = 0; i < n; i++)
+            pivot[i] = i;
+
+        float[] panel = new float[tileRows * t * t];
+        float[] tile = new float[t * t];
+        float[] update = new float[t * t];
+        int[] swaps = new int[t];
+
+        for (int kb = 0; kb < tileRows; kb++)
+        {
+            final int k0 = kb * t;
+            final int width = Math.min(t, n - k0);
+            final int height = n - k0;
+
+            // load tile column into panel, tiles one below another
+            for (int ib = kb; ib < tileRows; ib++)
+                readTile(ib, kb, panel, (ib - kb) * t * t);
+
+            factorPanel(panel, width, height, swaps);
+
+            for (int ib = kb; ib < tileRows; ib++)
+                writeTile(ib, kb, panel, (ib - kb) * t * t);
+
+            for (int j = 0; j < width; j++)
+            {
+                int p = swaps[j];
+
+                if (p == j) continue;
+
+                int temp = pivot[k0 + j];
+                pivot[k0 + j] = pivot[k0 + p];
+                pivot[k0 + p] = temp;
+
+                // apply the swap to other tile columns
+                for (int jb = 0; jb < tileColumns; jb++)
+                {
+                    if (jb != kb) swapRows(k0 + j, k0 + p, jb);
+                }
+            }
+
+            for (int jb = kb + 1; jb < tileColumns; jb++)
+            {
+                // U12 = L11^-1 A12, L11 has ones on diagonal
+                readTile(kb, jb, tile, 0);
+
+                for (int r = 1; r < width; r++)
+                {
+                    for (int q = 0; q < r; q++)
+                        Kernels.addScaled(-panel[r * t + q], tile, q * t, tile, r * t, t);
+                }
+
+                writeTile(kb, jb, tile, 0);
+
+                // A22 -= L21 U12
+                for (int ib = kb + 1; ib < tileRows; ib++)
+                {
+                    readTile(ib, jb, update, 0);
+
+                    int l = (ib - kb) * t * t;
+
+                    for (int r = 0; r < t; r++)
+                    {
+                        for (int q = 0; q < width; q++)
+                        {
+                            float value = panel[l + r * t + q];
+
+                            if (value != 0.0f)
+                                Kernels.addScaled(-value, tile, q * t, update, r * t, t);
+                        }
+                    }
+
+                    writeTile(ib, jb, update, 0);
+                }
+            }
+        }
+
+        return pivot;
+    }
+
+
+    /**
+     * Solves linear system using LU decomposition stored in matrix.
+     * @param lu the matrix after {@link #decomposeLU()}
+     * @param pivot the row permutation returned by {@link #decomposeLU()}
+     * @param b the right-hand side vector
+     * @param x the array for solution, can be the same as {@code b}
+     */
+    public static void solveLU(MappedMatrix lu, int[] pivot, float[] b, float[] x)
+    {
+        if (lu.rows != lu.columns)
+            throw new IllegalArgumentException("Matrix is not square");
+
+        final int n = lu.rows, t = lu.tileSize;
+        float[] y = new float[lu.tileRows * t];
+        float[] tile = new float[t * t];
+
+        for (int i = 0; i < n; i++)
+            y[i] = b[pivot[i]];
+
+        // forward substitution with L
+        for (int ib = 0; ib < lu.tileRows; ib++)
+        {
+            for (int kb = 0; kb < ib; kb++)
+            {
+                lu.readTile(ib, kb, tile, 0);
+
+                for (int r = 0; r < t; r++)
+                    y[ib * t + r] -= Kernels.dot(tile, r * t, y, kb * t, t);
+            }
+
+            lu.readTile(ib, ib, tile, 0);
+
+            for (int r = 1; r < t; r++)
+                y[ib * t + r] -= Kernels.dot(tile, r * t, y, ib * t, r);
+        }
+
+        // back substitution with U
+        for (int ib = lu.tileRows - 1; ib >= 0; ib--)
+        {
+            for (int kb = lu.tileRows - 1; kb > ib; kb--)
+            {
+                lu.readTile(ib, kb, tile, 0);
+
+                for (int r = 0; r < t; r++)
+                    y[ib * t + r] -= Kernels.dot(tile, r * t, y, kb * t, t);
+            }
+
+            lu.readTile(ib, ib, tile, 0);
+
+            for (int r = Math.min(t, n - ib * t) - 1; r >= 0; r--)
+            {
+                int i = ib * t + r;
+                float diagonal = tile[r * t + r];
+
+                if (diagonal == 0.0f)
+                    throw new IllegalStateException("Matrix is singular");
+
+                y[i] -= Kernels.dot(tile, r * t + r + 1, y, i + 1, t - r - 1);
+                y[i] /= diagonal;
+            }
+        }
+
+        System.arraycopy(y, 0, x, 0, n);
+    }
+
+    /**
+     * Multiplies two matrices tile by tile and stores result in third one.
+     * All matrices must have the same tile size and result must be
+     * a different matrix than sources.
+     * @param first the first matrix to multiply
+     * @param second the second matrix to multiply
+     * @param result the matrix where multiplication result is to be stored
+     */
+    public static void multiply(MappedMatrix first, MappedMatrix second,
+            MappedMatrix result)
+    {
+        if (first.rows != result.rows || second.columns != result.columns
+                || first.columns != second.rows)
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        checkTiles(first, second);
+        checkTiles(first, result);
+
+        if (result == first || result == second)
+            throw new IllegalArgumentException("Result must be a different matrix");
+
+        final int t = first.tileSize;
+        float[] a = new float[t * t];
+        float[] b = new float[t * t];
+        float[] c = new float[t * t];
+
+        for (int ib = 0; ib < result.tileRows; ib++)
+        {
+            for (int jb = 0; jb < result.tileColumns; jb++)
+            {
+                Arrays.fill(c, 0.0f);
+
+                for (int kb = 0; kb < first.tileColumns; kb++)
+                {
+                    first.readTile(ib, kb, a, 0);
+                    second.readTile(kb, jb, b, 0);
+
+                    // padding outside matrix is zero, so whole tiles can be used
+                    for (int r = 0; r < t; r++)
+                    {
+                        for (int k = 0; k < t; k++)
+                        {
+                            float value = a[r * t + k];
+
+                            if (value != 0.0f)
+                                Kernels.addScaled(value, b, k * t, c, r * t, t);
+                        }
+                    }
+                }
+
+                result.writeTile(ib, jb, c, 0);
+            }
+        }
+    }
+
+    /**
+     * Computes transpose of matrix tile by tile and stores it in other matrix.
+     * Both matrices must have the same tile size.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    public static void transpose(MappedMatrix src, MappedMatrix dest)
+    {
+        if (src.rows != dest.columns || src.columns != dest.rows)
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        checkTiles(src, dest);
+
+        if (src == dest)
+            throw new IllegalArgumentException("Destination must be a different matrix");
+
+        final int t = src.tileSize;
+        float[] tile = new float[t * t];
+        float[] transposed = new float[t * t];
+
+        for (int ib = 0; ib < src.tileRows; ib++)
+        {
+            for (int jb = 0; jb < src.tileColumns; jb++)
+            {
+                src.readTile(ib, jb, tile, 0);
+
+                for (int r = 0; r < t; r++)
+                {
+                    for (int c = 0; c < t; c++)
+                        transposed[c * t + r] = tile[r * t + c];
+                }
+
+                dest.writeTile(jb, ib, transposed, 0);
+            }
+        }
+    }
+
+    /**
+     * Factorizes panel in place with partial pivoting.
+     * @param panel the panel values, row-major with tile size columns
+     * @param width the number of panel columns inside matrix
+     * @param height the number of panel rows inside matrix
+     * @param swaps the array for pivot rows, relative to panel
+     */
+    private void factorPanel(float[] panel, int width, int height, int[] swaps)
+    {
+        final int t = tileSize;
+
+        for (int j = 0; j < width; j++)
+        {
+            int p = j;
+            float max = Math.abs(panel[j * t + j]);
+
+            for (int r = j + 1; r < height; r++)
+            {
+                float value = Math.abs(panel[r * t + j]);
+
+                if (value > max)
+                {
+                    p = r;
+                    max = value;
+                }
+            }
+
+            swaps[j] = p;
+
+            if (p != j)
+            {
+                for (int c = 0; c < t; c++)
+                {
+                    float temp = panel[j * t + c];
+                    panel[j * t + c] = panel[p * t + c];
+                    panel[p * t + c] = temp;
+                }
+            }
+
+            // singular column, nothing to eliminate
+            if (max == 0.0f) continue;
+
+            float inv = 1.0f / panel[j * t + j];
+
+            for (int r = j + 1; r < height; r++)
+            {
+                float value = panel[r * t + j] * inv;
+
+                panel[r * t + j] = value;
+
+                for (int c = j + 1; c < width; c++)
+                    panel[r * t + c] -= value * panel[j * t + c];
+            }
+        }
+    }
+
+    /**
+     * Swaps two rows within one tile column.
+     * @param row the row index
+     * @param other the other row index
+     * @param tileColumn the tile column index
+     */
+    private void swapRows(int row, int other, int tileColumn)
+    {
+        ByteBuffer a = tile(row / tileSize, tileColumn);
+        ByteBuffer b = tile(other / tileSize, tileColumn);
+
+        int i = 4 * (row % tileSize) * tileSize;
+        int j = 4 * (other % tileSize) * tileSize;
+
+        for (int c = 0; c < tileSize; c++, i += 4, j += 4)
+        {
+            float temp = a.getFloat(i);
+            a.putFloat(i, b.getFloat(j));
+            b.putFloat(j, temp);
+        }
+    }
+
+    /**
+     * Copies tile values to array.
+     */
+    private void readTile(int tileRow, int tileColumn, float[] values)
+    {
+        readTile(tileRow, tileColumn, values, 0);
+    }
+
+    /**
+     * Copies tile values to array at given offset.
+     */
+    private void readTile(int tileRow, int tileColumn, float[] values, int offset)
+    {
+        FloatBuffer buffer = tile(tileRow, tileColumn).asFloatBuffer();
+
+        buffer.get(values, offset, tileSize * tileSize);
+    }
+
+    /**
+     * Copies array values to tile.
+     */
+    private void writeTile(int tileRow, int tileColumn, float[] values)
+    {
+        writeTile(tileRow, tileColumn, values, 0);
+    }
+
+    /**
+     * Copies array values at given offset to tile.
+     */
+    private void writeTile(int tileRow, int tileColumn, float[] values, int offset)
+    {
+        FloatBuffer buffer = tile(tileRow, tileColumn).asFloatBuffer();
+
+        buffer.put(values, offset, tileSize * tileSize);
+    }
+
+    /**
+     * Returns mapped region of given tile, mapping it if necessary.
+     * @param tileRow the tile row index
+     * @param tileColumn the tile column index
+     * @return the mapped tile
+     */
+    private MappedByteBuffer tile(int tileRow, int tileColumn)
+    {
+        long index = (long) tileRow * tileColumns + tileColumn;
+        MappedByteBuffer tile = cache.get(index);
+
+        if (tile == null)
+        {
+            try
+            {
+                tile = channel.map(FileChannel.MapMode.READ_WRITE,
+                        tileOffset(index), 4L * tileSize * tileSize);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+
+            tile.order(ByteOrder.LITTLE_ENDIAN);
+            cache.put(index, tile);
+        }
+
+        return tile;
+    }
+
+    /**
+     * Returns position of tile in the file.
+     * @param index the tile index, counting row by row
+     * @return the position in bytes
+     */
+    private long tileOffset(long index)
+    {
+        return HEADER_SIZE + index * 4L * tileSize * tileSize;
+    }
+
+    /**
+     * Returns size of file holding matrix with given dimensions.
+     * @param rows the number of rows
+     * @param columns the number of columns
+     * @param tileSize the number of rows and columns of one tile
+     * @return the size in bytes, or {@code Long.MAX_VALUE} if it does
+     * not fit in {@code long}
+     */
+    private static long fileSize(int rows, int columns, int tileSize)
+    {
+        long tiles = ((rows - 1L) / tileSize + 1) * ((columns - 1L) / tileSize + 1);
+
+        try
+        {
+            return Math.addExact(HEADER_SIZE,
+                    Math.multiplyExact(tiles, Math.multiplyExact(4L * tileSize, tileSize)));
+        }
+        catch (ArithmeticException e)
+        {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Checks if row and column are inside matrix. Throws
+     * {@code IndexOutOfBoundsException} otherwise.
+     * @param row the row index
+     * @param column the column index
+     */
+    private void checkIndex(int row, int column)
+    {
+        if (row < 0 || row >= rows || column < 0 || column >= columns)
+            throw new IndexOutOfBoundsException(
+                    "Invalid index: " + row + ", " + column);
+    }
+
+    /**
+     * Checks if in-memory matrix has the same dimensions. Throws
+     * {@code IllegalArgumentException} otherwise.
+     * @param matrix the matrix to check
+     */
+    private void checkSize(Matrix matrix)
+    {
+        if (matrix.getRows() != rows || matrix.getColumns() != columns)
+            throw new IllegalArgumentException("Incompatible matrices");
+    }
+
+    /**
+     * Checks if two matrices have the same tile size. Throws
+     * {@code IllegalArgumentException} otherwise.
+     * @param first the first matrix
+     * @param second the second matrix
+     */
+    private static void checkTiles(MappedMatrix first, MappedMatrix second)
+    {
+        if (first.tileSize != second.tileSize)
+            throw new IllegalArgumentException("Incompatible tile sizes");
+    }
+}
@@ -26,25 +26,47 @@
 package pl.tomaszkax86.math;
 
 import java.io.Serializable;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import java.util.Arrays;
 
 /**
  * Class implementing matrix storage and operations.
  *
  * Contains various methods for creating matrices for OpenGL usage.
  *
+ * Values are kept in a single contiguous array, either in row-major
+ * or column-major order (see {@link Order}). Row-major order is the default.
+ * Column-major order matches OpenGL and allows bulk transfers to buffers.
+ *
  * @author Tomasz Kapuściński
  */
 public final class Matrix implements Serializable
 {
+    /**
+     * Order of values in matrix storage.
+     */
+    public enum Order
+    {
+        /**
+         * Values in a row are stored next to each other.
+         */
+        ROW_MAJOR,
+
+        /**
+         * Values in a column are stored next to each other.
+         */
+        COLUMN_MAJOR
+    }
+
     // matrix dimensions and content
     private final int rows, columns;
-    private float[][] values;
+    private final Order order;
+    private float[] values;
 
-    // auxiliary matrices to speed up some operations
-    private transient Matrix transformation = null;
-    private transient Matrix result = null;
+    // distance between consecutive rows and columns in values array
+    private final int rowStride, columnStride;
 
 
     /**
@@ -63,23 +85,46 @@ public final class Matrix implements Serializable
      */
     public Matrix(int rows, int columns)
     {
+        this(rows, columns, Order.ROW_MAJOR);
+    }
+
+    /**
+     * Creates new matrix with given storage order.
+     * @param rows the number of rows
+     * @param columns the number of columns
+     * @param order the storage order
+     */
+    public Matrix(int rows, int columns, Order order)
+    {
+        if (order == null) throw new NullPointerException();
+
         this.rows = rows;
         this.columns = columns;
-        this.values = new float[rows][columns];
+        this.order = order;
+        this.values = new float[rows * columns];
+
+        if (order == Order.ROW_MAJOR)
+        {
+            this.rowStride = columns;
+            this.columnStride = 1;
+        }
+        else
+        {
+            this.rowStride = 1;
+            this.columnStride = rows;
+        }
     }
 
     /**
      * Creates new matrix as a copy of another matrix.
+     * Storage order of the other matrix is preserved.
      * @param other the matrix to copy
      */
     public Matrix(Matrix other)
     {
-        this(other.rows, other.columns);
+        this(other.rows, other.columns, other.order);
 
-        for (int i = 0; i < rows; i++)
-        {
-            System.arraycopy(other.values[i], 0, this.values[i], 0, columns);
-        }
+        System.arraycopy(other.values, 0, this.values, 0, values.length);
     }
 
     /**
@@ -100,6 +145,15 @@ public final class Matrix implements Serializable
         return columns;
     }
 
+    /**
+     * Returns the storage order of this matrix.
+     * @return the storage order
+     */
+    public Order getOrder()
+    {
+        return order;
+    }
+
     /**
      * Returns the value under given row and column.
      * @param row the row index
@@ -108,7 +162,7 @@ public final class Matrix implements Serializable
      */
     public float get(int row, int column)
     {
-        return values[row][column];
+        return values[index(row, column)];
     }
 
     /**
@@ -119,7 +173,7 @@ public final class Matrix implements Serializable
      */
     public void set(int row, int column, float value)
     {
-        values[row][column] = value;
+        values[index(row, column)] = value;
     }
 
     /**
@@ -129,7 +183,16 @@ public final class Matrix implements Serializable
      */
     public void getRow(int row, float[] values)
     {
-        System.arraycopy(this.values[row], 0, values, 0, columns);
+        if (order == Order.ROW_MAJOR)
+        {
+            System.arraycopy(this.values, row * rowStride, values, 0, columns);
+            return;
+        }
+
+        for (int i = 0, index = row; i < columns; i++, index += columnStride)
+        {
+            values[i] = this.values[index];
+        }
     }
 
     /**
@@ -139,7 +202,16 @@ public final class Matrix implements Serializable
      */
     public void setRow(int row, float[] values)
     {
-        System.arraycopy(values, 0, this.values[row], 0, columns);
+        if (order == Order.ROW_MAJOR)
+        {
+            System.arraycopy(values, 0, this.values, row * rowStride, columns);
+            return;
+        }
+
+        for (int i = 0, index = row; i < columns; i++, index += columnStride)
+        {
+            this.values[index] = values[i];
+        }
     }
 
     /**
@@ -149,9 +221,15 @@ public final class Matrix implements Serializable
      */
     public void getColumn(int column, float[] values)
     {
-        for (int i = 0; i < rows; i++)
+        if (order == Order.COLUMN_MAJOR)
+        {
+            System.arraycopy(this.values, column * columnStride, values, 0, rows);
+            return;
+        }
+
+        for (int i = 0, index = column; i < rows; i++, index += rowStride)
         {
-            values[i] = this.values[i][column];
+            values[i] = this.values[index];
         }
     }
 
@@ -162,9 +240,15 @@ public final class Matrix implements Serializable
      */
     public void setColumn(int column, float[] values)
     {
-        for (int i = 0; i < rows; i++)
+        if (order == Order.COLUMN_MAJOR)
+        {
+            System.arraycopy(values, 0, this.values, column * columnStride, rows);
+            return;
+        }
+
+        for (int i = 0, index = column; i < rows; i++, index += rowStride)
         {
-            this.values[i][column] = values[i];
+            this.values[index] = values[i];
         }
     }
 
@@ -179,9 +263,15 @@ public final class Matrix implements Serializable
      */
     public void addRow(int row, int other, float multiplier)
     {
+        int target = row * rowStride;
+        int source = other * rowStride;
+
         for (int i = 0; i < columns; i++)
         {
-            values[row][i] += multiplier * values[other][i];
+            values[target] += multiplier * values[source];
+
+            target += columnStride;
+            source += columnStride;
         }
     }
 
@@ -195,9 +285,15 @@ public final class Matrix implements Serializable
      */
     public void addColumn(int column, int other, float multiplier)
     {
+        int target = column * columnStride;
+        int source = other * columnStride;
+
         for (int i = 0; i < rows; i++)
         {
-            values[i][column] += multiplier * values[i][other];
+            values[target] += multiplier * values[source];
+
+            target += rowStride;
+            source += rowStride;
         }
     }
 
@@ -208,9 +304,11 @@ public final class Matrix implements Serializable
      */
     public void scaleRow(int row, float multiplier)
     {
-        for (int i = 0; i < columns; i++)
+        int index = row * rowStride;
+
+        for (int i = 0; i < columns; i++, index += columnStride)
         {
-            values[row][i] *= multiplier;
+            values[index] *= multiplier;
         }
     }
 
@@ -221,12 +319,48 @@ public final class Matrix implements Serializable
      */
     public void scaleColumn(int column, float multiplier)
     {
-        for (int i = 0; i < rows; i++)
+        int index = column * columnStride;
+
+        for (int i = 0; i < rows; i++, index += rowStride)
+        {
+            values[index] *= multiplier;
+        }
+    }
+
+    /**
+     * Swaps content of two rows.
+     * @param row the row index
+     * @param other the other row index
+     */
+    public void swapRow(int row, int other)
+    {
+        if (row == other) return;
+
+        int first = row * rowStride;
+        int second = other * rowStride;
+
+        for (int i = 0; i < columns; i++)
         {
-            values[i][column] *= multiplier;
+            float temp = values[first];
+            values[first] = values[second];
+            values[second] = temp;
+
+            first += columnStride;
+            second += columnStride;
         }
     }
 
+    /**
+     * Returns index of given row and column in values array.
+     * @param row the row index
+     * @param column the column index
+     * @return the index
+     */
+    private int index(int row, int column)
+    {
+        return row * rowStride + column * columnStride;
+    }
+
     @Override
     public String toString()
     {
@@ -240,7 +374,7 @@ public final class Matrix implements Serializable
             {
                 if (column > 0) builder.append('\t');
 
-                builder.append(values[row][column]);
+                builder.append(get(row, column));
             }
         }
 
@@ -260,21 +394,69 @@ public final class Matrix implements Serializable
 
     /**
      * Transforms this matrix by other matrix.
+     * Transformation matrix must be square with size equal to
+     * the number of columns of this matrix.
      * @param transform the transformation matrix
      * @return this matrix
      */
     public Matrix transform(Matrix transform)
     {
-        requestResult();
+        if (transform.rows != columns || transform.columns != columns)
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        if (transform == this) transform = new Matrix(this);
+
+        final float[] t = transform.values;
+        final int tr = transform.rowStride, tc = transform.columnStride;
+
+        // every row of result depends only on the same row of this matrix
+        if (columns == 4)
+        {
+            float t00 = t[0],      t01 = t[tc],          t02 = t[2 * tc],          t03 = t[3 * tc];
+            float t10 = t[tr],     t11 = t[tr + tc],     t12 = t[tr + 2 * tc],     t13 = t[tr + 3 * tc];
+            float t20 = t[2 * tr], t21 = t[2 * tr + tc], t22 = t[2 * tr + 2 * tc], t23 = t[2 * tr + 3 * tc];
+            float t30 = t[3 * tr], t31 = t[3 * tr + tc], t32 = t[3 * tr + 2 * tc], t33 = t[3 * tr + 3 * tc];
+
+            final int c = columnStride;
 
-        multiply(this, transform, result);
-        swap(this, result);
+            for (int row = 0, i = 0; row < rows; row++, i += rowStride)
+            {
+                float a0 = values[i], a1 = values[i + c];
+                float a2 = values[i + 2 * c], a3 = values[i + 3 * c];
+
+                values[i] = a0 * t00 + a1 * t10 + a2 * t20 + a3 * t30;
+                values[i + c] = a0 * t01 + a1 * t11 + a2 * t21 + a3 * t31;
+                values[i + 2 * c] = a0 * t02 + a1 * t12 + a2 * t22 + a3 * t32;
+                values[i + 3 * c] = a0 * t03 + a1 * t13 + a2 * t23 + a3 * t33;
+            }
+
+            return this;
+        }
+
+        float[] temp = new float[columns];
+
+        for (int row = 0; row < rows; row++)
+        {
+            getRow(row, temp);
+
+            for (int column = 0; column < columns; column++)
+            {
+                float sum = 0.0f;
+                int j = column * tc;
+
+                for (int k = 0; k < columns; k++, j += tr)
+                    sum += temp[k] * t[j];
+
+                values[index(row, column)] = sum;
+            }
+        }
 
         return this;
     }
 
     /**
      * Transforms this matrix by translation matrix.
+     * Only the last column is changed.
      * @param dx the translation of X axis
      * @param dy the translation of Y axis
      * @param dz the translation of Z axis
@@ -282,10 +464,15 @@ public final class Matrix implements Serializable
      */
     public Matrix translate(float dx, float dy, float dz)
     {
-        requestTransform();
+        checkColumns(this, 4);
+
+        final int c = columnStride;
 
-        loadTranslation(transformation, dx, dy, dz);
-        transform(transformation);
+        for (int row = 0, i = 0; row < rows; row++, i += rowStride)
+        {
+            values[i + 3 * c] += values[i] * dx
+                    + values[i + c] * dy + values[i + 2 * c] * dz;
+        }
 
         return this;
     }
@@ -299,14 +486,81 @@ public final class Matrix implements Serializable
      */
     public Matrix scale(float sx, float sy, float sz)
     {
-        requestTransform();
+        checkColumns(this, 4);
+
+        scaleColumn(0, sx);
+        scaleColumn(1, sy);
+        scaleColumn(2, sz);
+
+        return this;
+    }
+
+    /**
+     * Transforms this matrix by rotation matrix around X axis.
+     * @param angle the rotation angle in degrees
+     * @return this matrix
+     */
+    public Matrix rotateX(float angle)
+    {
+        checkColumns(this, 4);
+
+        rotateColumns(1, 2, angle);
+
+        return this;
+    }
+
+    /**
+     * Transforms this matrix by rotation matrix around Y axis.
+     * @param angle the rotation angle in degrees
+     * @return this matrix
+     */
+    public Matrix rotateY(float angle)
+    {
+        checkColumns(this, 4);
+
+        rotateColumns(2, 0, angle);
+
+        return this;
+    }
+
+    /**
+     * Transforms this matrix by rotation matrix around Z axis.
+     * @param angle the rotation angle in degrees
+     * @return this matrix
+     */
+    public Matrix rotateZ(float angle)
+    {
+        checkColumns(this, 4);
 
-        loadScale(transformation, sx, sy, sz);
-        transform(transformation);
+        rotateColumns(0, 1, angle);
 
         return this;
     }
 
+    /**
+     * Rotates two columns of this matrix in place.
+     * Only the given columns are changed.
+     * @param first the column rotated towards the second one
+     * @param second the other column
+     * @param angle the rotation angle in degrees
+     */
+    private void rotateColumns(int first, int second, float angle)
+    {
+        double radians = Math.toRadians(angle);
+        float cos = (float) Math.cos(radians);
+        float sin = (float) Math.sin(radians);
+
+        final int a = first * columnStride, b = second * columnStride;
+
+        for (int row = 0, i = 0; row < rows; row++, i += rowStride)
+        {
+            float va = values[i + a], vb = values[i + b];
+
+            values[i + a] = va * cos + vb * sin;
+            values[i + b] = vb * cos - va * sin;
+        }
+    }
+
     /**
      * Transforms this matrix by perspective projection matrix.
      * @param fov the field of view in degrees
@@ -317,10 +571,25 @@ public final class Matrix implements Serializable
      */
     public Matrix perspective(float fov, float aspect, float near, float far)
     {
-        requestTransform();
+        checkColumns(this, 4);
 
-        loadPerspective(transformation, fov, aspect, near, far);
-        transform(transformation);
+        float focal = (float) (1.0f / Math.tan(0.5f * Math.toRadians(fov)));
+        float a = -(far + near) / (far - near);
+        float b = -2.0f * far * near / (far - near);
+
+        scaleColumn(0, focal / aspect);
+        scaleColumn(1, focal);
+
+        final int c = columnStride;
+
+        for (int row = 0, i = 0; row < rows; row++, i += rowStride)
+        {
+            float z = values[i + 2 * c];
+            float w = values[i + 3 * c];
+
+            values[i + 2 * c] = a * z - w;
+            values[i + 3 * c] = b * z;
+        }
 
         return this;
     }
@@ -337,10 +606,16 @@ public final class Matrix implements Serializable
      */
     public Matrix ortho(float left, float right, float bottom, float top, float near, float far)
     {
-        requestTransform();
+        float sx = 2.0f / (right - left);
+        float sy = 2.0f / (top - bottom);
+        float sz = -2.0f / (far - near);
+
+        float tx = -(right + left) / (right - left);
+        float ty = -(top + bottom) / (top - bottom);
+        float tz = -(far + near) / (far - near);
 
-        loadOrtho(transformation, left, right, bottom, top, near, far);
-        transform(transformation);
+        translate(tx, ty, tz);
+        scale(sx, sy, sz);
 
         return this;
     }
@@ -355,12 +630,7 @@ public final class Matrix implements Serializable
      */
     public Matrix ortho2D(float left, float right, float bottom, float top)
     {
-        requestTransform();
-
-        loadOrtho2D(transformation, left, right, bottom, top);
-        transform(transformation);
-
-        return this;
+        return ortho(left, right, bottom, top, -1.0f, 1.0f);
     }
 
     /**
@@ -399,6 +669,64 @@ public final class Matrix implements Serializable
         store(this, buffer);
     }
 
+    /**
+     * Loads this matrix from {@code ByteBuffer} object at given position.
+     * @param buffer the {@code ByteBuffer} to load matrix from
+     * @param offset the position of first value in bytes
+     */
+    public void load(ByteBuffer buffer, int offset)
+    {
+        load(this, buffer, offset);
+    }
+
+    /**
+     * Loads this matrix from {@code FloatBuffer} object at given position.
+     * @param buffer the {@code FloatBuffer} to load matrix from
+     * @param offset the position of first value
+     */
+    public void load(FloatBuffer buffer, int offset)
+    {
+        load(this, buffer, offset);
+    }
+
+    /**
+     * Stores this matrix in {@code ByteBuffer} object at given position.
+     * @param buffer the {@code ByteBuffer} to store matrix to
+     * @param offset the position of first value in bytes
+     */
+    public void store(ByteBuffer buffer, int offset)
+    {
+        store(this, buffer, offset);
+    }
+
+    /**
+     * Stores this matrix in {@code FloatBuffer} object at given position.
+     * @param buffer the {@code FloatBuffer} to store matrix to
+     * @param offset the position of first value
+     */
+    public void store(FloatBuffer buffer, int offset)
+    {
+        store(this, buffer, offset);
+    }
+
+    /**
+     * Appends this matrix to {@code ByteBuffer} object at its current position.
+     * @param buffer the {@code ByteBuffer} to append matrix to
+     */
+    public void append(ByteBuffer buffer)
+    {
+        append(this, buffer);
+    }
+
+    /**
+     * Appends this matrix to {@code FloatBuffer} object at its current position.
+     * @param buffer the {@code FloatBuffer} to append matrix to
+     */
+    public void append(FloatBuffer buffer)
+    {
+        append(this, buffer);
+    }
+
     /**
      * Loads this matrix with translation matrix for given values.
      * @param dx the X translation
@@ -532,10 +860,7 @@ public final class Matrix implements Serializable
         if (rows != columns)
             throw new IllegalStateException("Cannot invert non-square matrix");
 
-        requestTransform();
-
-        inverse(this, transformation);
-        swap(this, transformation);
+        inverse(this, this);
 
         return this;
     }
@@ -546,68 +871,107 @@ public final class Matrix implements Serializable
      */
     public Matrix transpose()
     {
-        requestResult();
+        if (rows != columns)
+            throw new IllegalStateException(
+                    "Cannot transpose non-square matrix in place");
+
+        for (int row = 1; row < rows; row++)
+        {
+            for (int column = 0; column < row; column++)
+            {
+                int a = index(row, column);
+                int b = index(column, row);
 
-        transpose(this, result);
-        swap(this, result);
+                float temp = values[a];
+                values[a] = values[b];
+                values[b] = temp;
+            }
+        }
 
         return this;
     }
 
+
     /**
-     * Requests the transformation matrix.
+     * Loads matrix from {@code ByteBuffer} object.
+     * @param matrix the matrix to be loaded with values
+     * @param buffer the {@code ByteBuffer} to load matrix from
      */
-    private void requestTransform()
+    public static void load(Matrix matrix, ByteBuffer buffer)
     {
-        if (transformation == null) transformation = new Matrix(rows, columns);
+        load(matrix, buffer, 0);
     }
 
     /**
-     * Requests the result matrix.
+     * Loads matrix from {@code FloatBuffer} object.
+     * @param matrix the matrix to be loaded with values
+     * @param buffer the {@code FloatBuffer} to load matrix from
      */
-    private void requestResult()
+    public static void load(Matrix matrix, FloatBuffer buffer)
     {
-        if (result == null) result = new Matrix(rows, columns);
+        load(matrix, buffer, 0);
     }
 
-
     /**
-     * Loads matrix from {@code ByteBuffer} object.
+     * Loads matrix from {@code ByteBuffer} object, starting at given position.
+     * Values are read in byte order of the buffer. Position of the buffer
+     * is not changed.
      * @param matrix the matrix to be loaded with values
      * @param buffer the {@code ByteBuffer} to load matrix from
+     * @param offset the position of first value in bytes
      */
-    public static void load(Matrix matrix, ByteBuffer buffer)
+    public static void load(Matrix matrix, ByteBuffer buffer, int offset)
     {
+        if (matrix.order == Order.COLUMN_MAJOR)
+        {
+            view(buffer, offset).get(matrix.values);
+            return;
+        }
+
         int rows = matrix.getRows();
         int columns = matrix.getColumns();
-        int index = 0;
+        int index = offset;
 
         for (int column = 0; column < columns; column++)
         {
+            int element = column * matrix.columnStride;
+
             for (int row = 0; row < rows; row++)
             {
-                matrix.values[row][column] = buffer.getFloat(index);
+                matrix.values[element] = buffer.getFloat(index);
+                element += matrix.rowStride;
                 index += 4;
             }
         }
     }
 
     /**
-     * Loads matrix from {@code FloatBuffer} object.
+     * Loads matrix from {@code FloatBuffer} object, starting at given position.
+     * Position of the buffer is not changed.
      * @param matrix the matrix to be loaded with values
      * @param buffer the {@code FloatBuffer} to load matrix from
+     * @param offset the position of first value
      */
-    public static void load(Matrix matrix, FloatBuffer buffer)
+    public static void load(Matrix matrix, FloatBuffer buffer, int offset)
     {
+        if (matrix.order == Order.COLUMN_MAJOR)
+        {
+            view(buffer, offset).get(matrix.values);
+            return;
+        }
+
         int rows = matrix.getRows();
         int columns = matrix.getColumns();
-        int index = 0;
+        int index = offset;
 
         for (int column = 0; column < columns; column++)
         {
+            int element = column * matrix.columnStride;
+
             for (int row = 0; row < rows; row++)
             {
-                matrix.values[row][column] = buffer.get(index);
+                matrix.values[element] = buffer.get(index);
+                element += matrix.rowStride;
                 index++;
             }
         }
@@ -615,55 +979,132 @@ public final class Matrix implements Serializable
 
     /**
      * Stores matrix to {@code ByteBuffer} object.
+     * Buffer is cleared before and flipped after storing values.
      * @param matrix the matrix with values to be stored
      * @param buffer the {@code ByteBuffer} to store matrix to
      */
     public static void store(Matrix matrix, ByteBuffer buffer)
     {
+        // casts keep compatibility with Java 8 Buffer methods
+        ((Buffer) buffer).clear();
+        append(matrix, buffer);
+        ((Buffer) buffer).flip();
+    }
+
+    /**
+     * Stores matrix to {@code FloatBuffer} object.
+     * Buffer is cleared before and flipped after storing values.
+     * @param matrix the matrix with values to be stored
+     * @param buffer the {@code FloatBuffer} to store matrix to
+     */
+    public static void store(Matrix matrix, FloatBuffer buffer)
+    {
+        ((Buffer) buffer).clear();
+        append(matrix, buffer);
+        ((Buffer) buffer).flip();
+    }
+
+    /**
+     * Stores matrix to {@code ByteBuffer} object, starting at given position.
+     * Values are written in byte order of the buffer. Position of the buffer
+     * is not changed.
+     * @param matrix the matrix with values to be stored
+     * @param buffer the {@code ByteBuffer} to store matrix to
+     * @param offset the position of first value in bytes
+     */
+    public static void store(Matrix matrix, ByteBuffer buffer, int offset)
+    {
+        // column-major storage matches buffer layout
+        if (matrix.order == Order.COLUMN_MAJOR)
+        {
+            view(buffer, offset).put(matrix.values);
+            return;
+        }
+
         int rows = matrix.getRows();
         int columns = matrix.getColumns();
-
-        buffer.clear();
+        int index = offset;
 
         for (int column = 0; column < columns; column++)
         {
+            int element = column * matrix.columnStride;
+
             for (int row = 0; row < rows; row++)
             {
-                buffer.putFloat(matrix.values[row][column]);
+                buffer.putFloat(index, matrix.values[element]);
+                element += matrix.rowStride;
+                index += 4;
             }
         }
-
-        buffer.flip();
     }
 
     /**
-     * Stores matrix to {@code FloatBuffer} object.
+     * Stores matrix to {@code FloatBuffer} object, starting at given position.
+     * Position of the buffer is not changed.
      * @param matrix the matrix with values to be stored
      * @param buffer the {@code FloatBuffer} to store matrix to
+     * @param offset the position of first value
      */
-    public static void store(Matrix matrix, FloatBuffer buffer)
+    public static void store(Matrix matrix, FloatBuffer buffer, int offset)
     {
+        if (matrix.order == Order.COLUMN_MAJOR)
+        {
+            view(buffer, offset).put(matrix.values);
+            return;
+        }
+
         int rows = matrix.getRows();
         int columns = matrix.getColumns();
-
-        buffer.clear();
+        int index = offset;
 
         for (int column = 0; column < columns; column++)
         {
+            int element = column * matrix.columnStride;
+
             for (int row = 0; row < rows; row++)
             {
-                buffer.put(matrix.values[row][column]);
+                buffer.put(index, matrix.values[element]);
+                element += matrix.rowStride;
+                index++;
             }
         }
-
-        buffer.flip();
     }
 
     /**
-     * Loads matrix with identity values.
-     * @param matrix the matrix to be loaded with values
+     * Appends matrix to {@code ByteBuffer} object at its current position
+     * and advances the position. Values are written in byte order
+     * of the buffer. This allows storing many matrices in one buffer.
+     * @param matrix the matrix with values to be stored
+     * @param buffer the {@code ByteBuffer} to append matrix to
      */
-    public static void loadIdentity(Matrix matrix)
+    public static void append(Matrix matrix, ByteBuffer buffer)
+    {
+        int position = buffer.position();
+
+        store(matrix, buffer, position);
+        ((Buffer) buffer).position(position + 4 * matrix.values.length);
+    }
+
+    /**
+     * Appends matrix to {@code FloatBuffer} object at its current position
+     * and advances the position. This allows storing many matrices
+     * in one buffer.
+     * @param matrix the matrix with values to be stored
+     * @param buffer the {@code FloatBuffer} to append matrix to
+     */
+    public static void append(Matrix matrix, FloatBuffer buffer)
+    {
+        int position = buffer.position();
+
+        store(matrix, buffer, position);
+        ((Buffer) buffer).position(position + matrix.values.length);
+    }
+
+    /**
+     * Loads matrix with identity values.
+     * @param matrix the matrix to be loaded with values
+     */
+    public static void loadIdentity(Matrix matrix)
     {
         int rows = matrix.getRows();
         int columns = matrix.getColumns();
@@ -672,7 +1113,7 @@ public final class Matrix implements Serializable
         {
             for (int column = 0; column < columns; column++)
             {
-                matrix.values[row][column] = (row == column ? 1.0f : 0.0f);
+                matrix.set(row, column, (row == column ? 1.0f : 0.0f));
             }
         }
     }
@@ -689,9 +1130,9 @@ public final class Matrix implements Serializable
     {
         loadIdentity(matrix);
 
-        matrix.values[0][3] += dx;
-        matrix.values[1][3] += dy;
-        matrix.values[2][3] += dz;
+        matrix.set(0, 3, dx);
+        matrix.set(1, 3, dy);
+        matrix.set(2, 3, dz);
     }
 
     /**
@@ -705,9 +1146,9 @@ public final class Matrix implements Serializable
     {
         loadIdentity(matrix);
 
-        matrix.values[0][0] = sx;
-        matrix.values[1][1] = sy;
-        matrix.values[2][2] = sz;
+        matrix.set(0, 0, sx);
+        matrix.set(1, 1, sy);
+        matrix.set(2, 2, sz);
     }
 
     /**
@@ -725,12 +1166,12 @@ public final class Matrix implements Serializable
 
         float focal = (float) (1.0f / Math.tan(0.5f * Math.toRadians(fov)));
 
-        matrix.values[0][0] = focal / aspect;
-        matrix.values[1][1] = focal;
-        matrix.values[2][2] = -(far + near) / (far - near);
-        matrix.values[2][3] = -2.0f * far * near / (far - near);
-        matrix.values[3][2] = -1.0f;
-        matrix.values[3][3] = 0.0f;
+        matrix.set(0, 0, focal / aspect);
+        matrix.set(1, 1, focal);
+        matrix.set(2, 2, -(far + near) / (far - near));
+        matrix.set(2, 3, -2.0f * far * near / (far - near));
+        matrix.set(3, 2, -1.0f);
+        matrix.set(3, 3, 0.0f);
     }
 
     /**
@@ -748,13 +1189,13 @@ public final class Matrix implements Serializable
     {
         loadIdentity(matrix);
 
-        matrix.values[0][0] = 2.0f / (right - left);
-        matrix.values[1][1] = 2.0f / (top - bottom);
-        matrix.values[2][2] = -2.0f / (far - near);
+        matrix.set(0, 0, 2.0f / (right - left));
+        matrix.set(1, 1, 2.0f / (top - bottom));
+        matrix.set(2, 2, -2.0f / (far - near));
 
-        matrix.values[0][3] = -(right + left) / (right - left);
-        matrix.values[1][3] = -(top + bottom) / (top - bottom);
-        matrix.values[2][3] = -(far + near) / (far - near);
+        matrix.set(0, 3, -(right + left) / (right - left));
+        matrix.set(1, 3, -(top + bottom) / (top - bottom));
+        matrix.set(2, 3, -(far + near) / (far - near));
     }
 
     /**
@@ -816,30 +1257,18 @@ public final class Matrix implements Serializable
         // recalculate up vector
         upX = (forwardY * sideZ - forwardZ * sideY);
         upY = (forwardZ * sideX - forwardX * sideZ);
-        upZ = (forwardX * sideY - forwardY * sideZ);
+        upZ = (forwardX * sideY - forwardY * sideX);
 
-        // set matrix values
-        matrix.set(0, 0, sideX);
-        matrix.set(1, 0, sideY);
-        matrix.set(2, 0, sideZ);
-        matrix.set(3, 0, 0.0f);
+        // set matrix values, last column is translation by negated eye
+        checkSize(matrix, 4);
 
-        matrix.set(0, 1, upX);
-        matrix.set(1, 1, upY);
-        matrix.set(2, 1, upZ);
-        matrix.set(3, 1, 0.0f);
-
-        matrix.set(0, 2, forwardX);
-        matrix.set(1, 2, forwardY);
-        matrix.set(2, 2, forwardZ);
-        matrix.set(3, 2, 0.0f);
-
-        matrix.set(0, 3, 0.0f);
-        matrix.set(1, 3, 0.0f);
-        matrix.set(2, 3, 0.0f);
-        matrix.set(3, 3, 1.0f);
-
-        matrix.translate(-eyeX, -eyeY, -eyeZ);
+        matrix.set4(sideX, upX, forwardX,
+                -dot(sideX, upX, forwardX, eyeX, eyeY, eyeZ),
+                sideY, upY, forwardY,
+                -dot(sideY, upY, forwardY, eyeX, eyeY, eyeZ),
+                sideZ, upZ, forwardZ,
+                -dot(sideZ, upZ, forwardZ, eyeX, eyeY, eyeZ),
+                0.0f, 0.0f, 0.0f, 1.0f);
     }
 
     private static float dot(float x1, float y1, float z1,
@@ -866,21 +1295,35 @@ public final class Matrix implements Serializable
     public static void loadCameraView(Matrix matrix, float x, float y, float z,
             float pitch, float yaw, float roll)
     {
-        Matrix transformation = new Matrix(4);
+        checkSize(matrix, 4);
 
-        matrix.loadIdentity();
+        double radians = Math.toRadians(pitch);
+        float cx = (float) Math.cos(radians);
+        float sx = (float) Math.sin(radians);
 
-        transformation.loadRotationZ(roll);
-        matrix.transform(transformation);
+        radians = Math.toRadians(yaw);
+        float cy = (float) Math.cos(radians);
+        float sy = (float) Math.sin(radians);
 
-        transformation.loadRotationX(pitch);
-        matrix.transform(transformation);
+        radians = Math.toRadians(roll);
+        float cz = (float) Math.cos(radians);
+        float sz = (float) Math.sin(radians);
 
-        transformation.loadRotationY(yaw);
-        matrix.transform(transformation);
+        // rotation around Z axis, then X axis
+        float a00 = cz, a01 = -sz * cx, a02 = sz * sx;
+        float a10 = sz, a11 = cz * cx,  a12 = -cz * sx;
+        float a20 = 0.0f, a21 = sx,     a22 = cx;
 
-        transformation.loadTranslation(-x, -y, -z);
-        matrix.transform(transformation);
+        // then Y axis
+        float r00 = a00 * cy - a02 * sy, r02 = a00 * sy + a02 * cy;
+        float r10 = a10 * cy - a12 * sy, r12 = a10 * sy + a12 * cy;
+        float r20 = a20 * cy - a22 * sy, r22 = a20 * sy + a22 * cy;
+
+        // last column is rotated negated camera position
+        matrix.set4(r00, a01, r02, -dot(r00, a01, r02, x, y, z),
+                r10, a11, r12, -dot(r10, a11, r12, x, y, z),
+                r20, a21, r22, -dot(r20, a21, r22, x, y, z),
+                0.0f, 0.0f, 0.0f, 1.0f);
     }
 
     /**
@@ -896,10 +1339,10 @@ public final class Matrix implements Serializable
 
         loadIdentity(matrix);
 
-        matrix.values[1][1] = cos;
-        matrix.values[1][2] = -sin;
-        matrix.values[2][1] = sin;
-        matrix.values[2][2] = cos;
+        matrix.set(1, 1, cos);
+        matrix.set(1, 2, -sin);
+        matrix.set(2, 1, sin);
+        matrix.set(2, 2, cos);
     }
 
     /**
@@ -915,10 +1358,10 @@ public final class Matrix implements Serializable
 
         loadIdentity(matrix);
 
-        matrix.values[0][0] = cos;
-        matrix.values[0][2] = sin;
-        matrix.values[2][0] = -sin;
-        matrix.values[2][2] = cos;
+        matrix.set(0, 0, cos);
+        matrix.set(0, 2, sin);
+        matrix.set(2, 0, -sin);
+        matrix.set(2, 2, cos);
     }
 
     /**
@@ -934,10 +1377,10 @@ public final class Matrix implements Serializable
 
         loadIdentity(matrix);
 
-        matrix.values[0][0] = cos;
-        matrix.values[0][1] = -sin;
-        matrix.values[1][0] = sin;
-        matrix.values[1][1] = cos;
+        matrix.set(0, 0, cos);
+        matrix.set(0, 1, -sin);
+        matrix.set(1, 0, sin);
+        matrix.set(1, 1, cos);
     }
 
     /**
@@ -951,6 +1394,14 @@ public final class Matrix implements Serializable
         checkCompatibility(first, second);
         checkCompatibility(first, result);
 
+        // matrices with the same order can be added element by element
+        if (first.order == second.order && first.order == result.order)
+        {
+            Kernels.add(first.values, second.values,
+                    result.values, result.values.length);
+            return;
+        }
+
         int rows = first.getRows();
         int columns = first.getColumns();
 
@@ -958,23 +1409,31 @@ public final class Matrix implements Serializable
         {
             for (int column = 0; column < columns; column++)
             {
-                float x = first.values[row][column];
-                float y = second.values[row][column];
+                float x = first.get(row, column);
+                float y = second.get(row, column);
 
-                result.values[row][column] = x + y;
+                result.set(row, column, x + y);
             }
         }
     }
 
     /**
      * Multiplies two matrices and stores result in other matrix.
+     *
+     * Large matrices are multiplied using cache-blocked kernel with rows
+     * split between threads of common {@code ForkJoinPool}. Results don't
+     * depend on the number of threads used.
+     *
      * @param first the first matrix to multiply
      * @param second the second matrix to multiply
      * @param result the matrix where multiplication result is to be stored
      */
     public static void multiply(Matrix first, Matrix second, Matrix result)
     {
-        if(first.getColumns() != result.getColumns())
+        if(first.getRows() != result.getRows())
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        if(second.getColumns() != result.getColumns())
             throw new IllegalArgumentException("Incompatible matrices");
 
         if(first.getColumns() != second.getRows())
@@ -984,16 +1443,266 @@ public final class Matrix implements Serializable
         int columns = second.getColumns();
         int depth = first.getColumns();
 
+        if ((long) rows * columns * depth >= BLOCKED_MULTIPLY_THRESHOLD)
+        {
+            multiplyBlocked(1.0f, first, false, second, false, result, false);
+            return;
+        }
+
+        final float[] a = first.values;
+        final float[] b = second.values;
+        final float[] c = result.values;
+
+        final int aRow = first.rowStride, aColumn = first.columnStride;
+        final int bRow = second.rowStride, bColumn = second.columnStride;
+
         for (int row = 0; row < rows; row++)
         {
             for (int column = 0; column < columns; column++)
             {
                 float sum = 0.0f;
 
-                for (int k = 0; k < depth; k++)
-                    sum += first.values[row][k] * second.values[k][column];
+                int i = row * aRow;
+                int j = column * bColumn;
+
+                for (int k = 0; k < depth; k++, i += aColumn, j += bRow)
+                    sum += a[i] * b[j];
+
+                c[result.index(row, column)] = sum;
+            }
+        }
+    }
+
+    /**
+     * Multiplies two matrices, optionally transposed, without materializing
+     * transposes. Transposition only swaps strides used to read values.
+     * The result of this operation can be summarized as:
+     * {@code result = alpha * op(first) * op(second)}, or
+     * {@code result += alpha * op(first) * op(second)} if accumulating.
+     * Result matrix must not be the same object as any of the source ones.
+     * @param alpha the multiplier of the product
+     * @param first the first matrix to multiply
+     * @param firstTransposed true to use transpose of the first matrix
+     * @param second the second matrix to multiply
+     * @param secondTransposed true to use transpose of the second matrix
+     * @param result the matrix where result is to be stored
+     * @param accumulate true to add product to result
+     */
+    static void multiply(float alpha, Matrix first, boolean firstTransposed,
+            Matrix second, boolean secondTransposed,
+            Matrix result, boolean accumulate)
+    {
+        final int aRow = firstTransposed ? first.columnStride : first.rowStride;
+        final int aColumn = firstTransposed ? first.rowStride : first.columnStride;
+        final int bRow = secondTransposed ? second.columnStride : second.rowStride;
+        final int bColumn = secondTransposed ? second.rowStride : second.columnStride;
+        final int depth = firstTransposed ? first.rows : first.columns;
+
+        if ((firstTransposed ? first.columns : first.rows) != result.rows
+                || (secondTransposed ? second.rows : second.columns) != result.columns
+                || (secondTransposed ? second.columns : second.rows) != depth)
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        // large products use blocked kernel regardless of transposition
+        if ((long) result.rows * result.columns * depth >= BLOCKED_MULTIPLY_THRESHOLD)
+        {
+            multiplyBlocked(alpha, first, firstTransposed,
+                    second, secondTransposed, result, accumulate);
+            return;
+        }
+
+        if (!firstTransposed && !secondTransposed && !accumulate && alpha == 1.0f)
+        {
+            multiply(first, second, result);
+            return;
+        }
+
+        final float[] a = first.values;
+        final float[] b = second.values;
+        final float[] c = result.values;
+
+        for (int row = 0; row < result.rows; row++)
+        {
+            for (int column = 0; column < result.columns; column++)
+            {
+                float sum = 0.0f;
+
+                int i = row * aRow;
+                int j = column * bColumn;
+
+                for (int k = 0; k < depth; k++, i += aColumn, j += bRow)
+                    sum += a[i] * b[j];
+
+                int index = result.index(row, column);
+
+                c[index] = accumulate ? c[index] + alpha * sum : alpha * sum;
+            }
+        }
+    }
+
+    /**
+     * Adds scaled matrix, optionally transposed, to other matrix.
+     * The result of this operation can be summarized as:
+     * {@code result = alpha * op(src)}, or
+     * {@code result += alpha * op(src)} if accumulating.
+     * @param alpha the multiplier
+     * @param src the source matrix
+     * @param transposed true to use transpose of the source matrix
+     * @param result the matrix where result is to be stored
+     * @param accumulate true to add scaled matrix to result
+     */
+    static void addScaled(float alpha, Matrix src, boolean transposed,
+            Matrix result, boolean accumulate)
+    {
+        final int sRow = transposed ? src.columnStride : src.rowStride;
+        final int sColumn = transposed ? src.rowStride : src.columnStride;
+
+        if ((transposed ? src.columns : src.rows) != result.rows
+                || (transposed ? src.rows : src.columns) != result.columns)
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        final float[] s = src.values;
+        final float[] c = result.values;
+
+        for (int row = 0; row < result.rows; row++)
+        {
+            for (int column = 0; column < result.columns; column++)
+            {
+                float value = alpha * s[row * sRow + column * sColumn];
+                int index = result.index(row, column);
+
+                c[index] = accumulate ? c[index] + value : value;
+            }
+        }
+    }
+
+    /**
+     * Multiplies two large matrices, optionally transposed, using
+     * cache-blocked kernel. The result of this operation can be summarized
+     * as {@code result = alpha * op(first) * op(second)}, or
+     * {@code result += alpha * op(first) * op(second)} if accumulating.
+     *
+     * Second matrix is packed into panels of {@code BLOCK_COLUMNS} columns
+     * stored row by row. Result is computed in tiles of {@code BLOCK_ROWS}
+     * rows, each tile accumulating products in {@code BLOCK_DEPTH} steps,
+     * so the inner loop walks contiguous memory. Transposition only swaps
+     * strides used for reading values and packing. Sums are accumulated
+     * in the same order as in simple kernel.
+     *
+     * @param alpha the multiplier of the product
+     * @param first the first matrix to multiply
+     * @param firstTransposed true to use transpose of the first matrix
+     * @param second the second matrix to multiply
+     * @param secondTransposed true to use transpose of the second matrix
+     * @param result the matrix where multiplication result is to be stored
+     * @param accumulate true to add product to result
+     */
+    private static void multiplyBlocked(final float alpha,
+            final Matrix first, boolean firstTransposed,
+            Matrix second, boolean secondTransposed,
+            final Matrix result, final boolean accumulate)
+    {
+        final int rows = result.rows;
+        final int columns = result.columns;
+        final int depth = firstTransposed ? first.rows : first.columns;
+
+        final int aRow = firstTransposed ? first.columnStride : first.rowStride;
+        final int aColumn = firstTransposed ? first.rowStride : first.columnStride;
+        final int bRow = secondTransposed ? second.columnStride : second.rowStride;
+        final int bColumn = secondTransposed ? second.rowStride : second.columnStride;
+
+        // pack second matrix into column panels
+        final float[] packed = new float[depth * columns];
+        int index = 0;
+
+        for (int column = 0; column < columns; column += BLOCK_COLUMNS)
+        {
+            int width = Math.min(BLOCK_COLUMNS, columns - column);
+
+            for (int k = 0; k < depth; k++)
+            {
+                int source = k * bRow + column * bColumn;
+
+                for (int j = 0; j < width; j++, source += bColumn)
+                    packed[index++] = second.values[source];
+            }
+        }
+
+        int blocks = (rows + BLOCK_ROWS - 1) / BLOCK_ROWS;
+
+        Parallel.forRange(0, blocks, 1, (from, to) ->
+        {
+            float[] tile = new float[BLOCK_ROWS * BLOCK_COLUMNS];
+
+            for (int block = from; block < to; block++)
+            {
+                multiplyBlock(alpha, first.values, aRow, aColumn, depth,
+                        packed, result, accumulate, block * BLOCK_ROWS, tile);
+            }
+        });
+    }
+
+    /**
+     * Computes one block of rows for blocked multiplication.
+     * @param alpha the multiplier of the product
+     * @param a the values of the first matrix
+     * @param aRow the distance between rows of the first matrix
+     * @param aColumn the distance between columns of the first matrix
+     * @param depth the number of columns of the first matrix
+     * @param packed the packed second matrix
+     * @param result the matrix where multiplication result is to be stored
+     * @param accumulate true to add product to result
+     * @param firstRow the first row of the block
+     * @param tile the temporary array for tile values
+     */
+    private static void multiplyBlock(float alpha, float[] a, int aRow,
+            int aColumn, int depth, float[] packed, Matrix result,
+            boolean accumulate, int firstRow, float[] tile)
+    {
+        final int columns = result.columns;
+        final int height = Math.min(BLOCK_ROWS, result.rows - firstRow);
+        final boolean plain = !accumulate && alpha == 1.0f;
+
+        for (int column = 0; column < columns; column += BLOCK_COLUMNS)
+        {
+            final int width = Math.min(BLOCK_COLUMNS, columns - column);
+            final int panel = column * depth;
+
+            Arrays.fill(tile, 0, height * width, 0.0f);
 
-                result.values[row][column] = sum;
+            for (int k0 = 0; k0 < depth; k0 += BLOCK_DEPTH)
+            {
+                int k1 = Math.min(k0 + BLOCK_DEPTH, depth);
+
+                for (int i = 0; i < height; i++)
+                {
+                    int t = i * width;
+                    int source = (firstRow + i) * aRow + k0 * aColumn;
+
+                    for (int k = k0; k < k1; k++, source += aColumn)
+                    {
+                        Kernels.addScaled(a[source], packed, panel + k * width,
+                                tile, t, width);
+                    }
+                }
+            }
+
+            // alpha and accumulation are applied when tile is written back
+            for (int i = 0; i < height; i++)
+            {
+                int target = result.index(firstRow + i, column);
+
+                for (int j = 0; j < width; j++, target += result.columnStride)
+                {
+                    float value = tile[i * width + j];
+
+                    if (plain)
+                        result.values[target] = value;
+                    else if (accumulate)
+                        result.values[target] += alpha * value;
+                    else
+                        result.values[target] = alpha * value;
+                }
             }
         }
     }
@@ -1041,16 +1750,388 @@ public final class Matrix implements Serializable
         if (result.length < rows)
             throw new IllegalArgumentException("Destination vector too short");
 
-        for (int row = 0; row < rows; row++)
+        final float[] values = matrix.values;
+        final int rowStride = matrix.rowStride;
+        final int columnStride = matrix.columnStride;
+
+        // rows are contiguous, so every result is a dot product
+        if (matrix.order == Order.ROW_MAJOR)
+        {
+            for (int row = 0; row < rows; row++)
+            {
+                result[row] = Kernels.dot(values, row * rowStride,
+                        vector, 0, columns);
+            }
+
+            return;
+        }
+
+        // columns are contiguous, so result is a sum of scaled columns
+        Arrays.fill(result, 0, rows, 0.0f);
+
+        for (int column = 0; column < columns; column++)
         {
-            float sum = 0.0f;
+            Kernels.addScaled(vector[column], values,
+                    column * columnStride, result, 0, rows);
+        }
+    }
 
-            for (int column = 0; column < columns; column++)
+    /**
+     * Transforms points by 4x4 matrix. Every point consists of three
+     * consecutive values (X, Y, Z) with implicit W equal to 1.
+     * Source and destination arrays can be the same object.
+     * @param matrix the transformation matrix
+     * @param src the array with source points
+     * @param srcOffset the offset of the first source point
+     * @param srcStride the distance between source points
+     * @param dst the array for transformed points
+     * @param dstOffset the offset of the first transformed point
+     * @param dstStride the distance between transformed points
+     * @param count the number of points
+     */
+    public static void transformPoints(Matrix matrix,
+            float[] src, int srcOffset, int srcStride,
+            float[] dst, int dstOffset, int dstStride, int count)
+    {
+        transformPoints(matrix, src, srcOffset, srcStride,
+                dst, dstOffset, dstStride, count, false);
+    }
+
+    /**
+     * Transforms points by 4x4 matrix. Every point consists of three
+     * consecutive values (X, Y, Z) with implicit W equal to 1.
+     * Source and destination arrays can be the same object.
+     * @param matrix the transformation matrix
+     * @param src the array with source points
+     * @param srcOffset the offset of the first source point
+     * @param srcStride the distance between source points
+     * @param dst the array for transformed points
+     * @param dstOffset the offset of the first transformed point
+     * @param dstStride the distance between transformed points
+     * @param count the number of points
+     * @param parallel {@code true} to split large arrays between threads
+     */
+    public static void transformPoints(Matrix matrix,
+            float[] src, int srcOffset, int srcStride,
+            float[] dst, int dstOffset, int dstStride, int count,
+            boolean parallel)
+    {
+        transform(matrix, POINTS, src, srcOffset, srcStride,
+                dst, dstOffset, dstStride, count, parallel);
+    }
+
+    /**
+     * Transforms directions by 4x4 matrix. Every direction consists of three
+     * consecutive values (X, Y, Z) with implicit W equal to 0,
+     * so translation is ignored.
+     * Source and destination arrays can be the same object.
+     * @param matrix the transformation matrix
+     * @param src the array with source directions
+     * @param srcOffset the offset of the first source direction
+     * @param srcStride the distance between source directions
+     * @param dst the array for transformed directions
+     * @param dstOffset the offset of the first transformed direction
+     * @param dstStride the distance between transformed directions
+     * @param count the number of directions
+     */
+    public static void transformDirections(Matrix matrix,
+            float[] src, int srcOffset, int srcStride,
+            float[] dst, int dstOffset, int dstStride, int count)
+    {
+        transformDirections(matrix, src, srcOffset, srcStride,
+                dst, dstOffset, dstStride, count, false);
+    }
+
+    /**
+     * Transforms directions by 4x4 matrix. Every direction consists of three
+     * consecutive values (X, Y, Z) with implicit W equal to 0,
+     * so translation is ignored.
+     * Source and destination arrays can be the same object.
+     * @param matrix the transformation matrix
+     * @param src the array with source directions
+     * @param srcOffset the offset of the first source direction
+     * @param srcStride the distance between source directions
+     * @param dst the array for transformed directions
+     * @param dstOffset the offset of the first transformed direction
+     * @param dstStride the distance between transformed directions
+     * @param count the number of directions
+     * @param parallel {@code true} to split large arrays between threads
+     */
+    public static void transformDirections(Matrix matrix,
+            float[] src, int srcOffset, int srcStride,
+            float[] dst, int dstOffset, int dstStride, int count,
+            boolean parallel)
+    {
+        transform(matrix, DIRECTIONS, src, srcOffset, srcStride,
+                dst, dstOffset, dstStride, count, parallel);
+    }
+
+    /**
+     * Projects points by 4x4 matrix. Every point consists of three
+     * consecutive values (X, Y, Z) with implicit W equal to 1.
+     * Transformed points are divided by their W coordinate.
+     * Source and destination arrays can be the same object.
+     * @param matrix the projection matrix
+     * @param src the array with source points
+     * @param srcOffset the offset of the first source point
+     * @param srcStride the distance between source points
+     * @param dst the array for projected points
+     * @param dstOffset the offset of the first projected point
+     * @param dstStride the distance between projected points
+     * @param count the number of points
+     */
+    public static void projectPoints(Matrix matrix,
+            float[] src, int srcOffset, int srcStride,
+            float[] dst, int dstOffset, int dstStride, int count)
+    {
+        projectPoints(matrix, src, srcOffset, srcStride,
+                dst, dstOffset, dstStride, count, false);
+    }
+
+    /**
+     * Projects points by 4x4 matrix. Every point consists of three
+     * consecutive values (X, Y, Z) with implicit W equal to 1.
+     * Transformed points are divided by their W coordinate.
+     * Source and destination arrays can be the same object.
+     * @param matrix the projection matrix
+     * @param src the array with source points
+     * @param srcOffset the offset of the first source point
+     * @param srcStride the distance between source points
+     * @param dst the array for projected points
+     * @param dstOffset the offset of the first projected point
+     * @param dstStride the distance between projected points
+     * @param count the number of points
+     * @param parallel {@code true} to split large arrays between threads
+     */
+    public static void projectPoints(Matrix matrix,
+            float[] src, int srcOffset, int srcStride,
+            float[] dst, int dstOffset, int dstStride, int count,
+            boolean parallel)
+    {
+        transform(matrix, PROJECTED, src, srcOffset, srcStride,
+                dst, dstOffset, dstStride, count, parallel);
+    }
+
+    /**
+     * Transforms points stored in {@code FloatBuffer} by 4x4 matrix.
+     * Offsets are absolute and buffer positions are not changed.
+     * @param matrix the transformation matrix
+     * @param src the buffer with source points
+     * @param srcOffset the offset of the first source point
+     * @param srcStride the distance between source points
+     * @param dst the buffer for transformed points
+     * @param dstOffset the offset of the first transformed point
+     * @param dstStride the distance between transformed points
+     * @param count the number of points
+     * @see #transformPoints(Matrix, float[], int, int, float[], int, int, int)
+     */
+    public static void transformPoints(Matrix matrix,
+            FloatBuffer src, int srcOffset, int srcStride,
+            FloatBuffer dst, int dstOffset, int dstStride, int count)
+    {
+        transform(matrix, POINTS, src, srcOffset, srcStride,
+                dst, dstOffset, dstStride, count);
+    }
+
+    /**
+     * Transforms directions stored in {@code FloatBuffer} by 4x4 matrix.
+     * Offsets are absolute and buffer positions are not changed.
+     * @param matrix the transformation matrix
+     * @param src the buffer with source directions
+     * @param srcOffset the offset of the first source direction
+     * @param srcStride the distance between source directions
+     * @param dst the buffer for transformed directions
+     * @param dstOffset the offset of the first transformed direction
+     * @param dstStride the distance between transformed directions
+     * @param count the number of directions
+     * @see #transformDirections(Matrix, float[], int, int, float[], int, int, int)
+     */
+    public static void transformDirections(Matrix matrix,
+            FloatBuffer src, int srcOffset, int srcStride,
+            FloatBuffer dst, int dstOffset, int dstStride, int count)
+    {
+        transform(matrix, DIRECTIONS, src, srcOffset, srcStride,
+                dst, dstOffset, dstStride, count);
+    }
+
+    /**
+     * Projects points stored in {@code FloatBuffer} by 4x4 matrix.
+     * Offsets are absolute and buffer positions are not changed.
+     * @param matrix the projection matrix
+     * @param src the buffer with source points
+     * @param srcOffset the offset of the first source point
+     * @param srcStride the distance between source points
+     * @param dst the buffer for projected points
+     * @param dstOffset the offset of the first projected point
+     * @param dstStride the distance between projected points
+     * @param count the number of points
+     * @see #projectPoints(Matrix, float[], int, int, float[], int, int, int)
+     */
+    public static void projectPoints(Matrix matrix,
+            FloatBuffer src, int srcOffset, int srcStride,
+            FloatBuffer dst, int dstOffset, int dstStride, int count)
+    {
+        transform(matrix, PROJECTED, src, srcOffset, srcStride,
+                dst, dstOffset, dstStride, count);
+    }
+
+    /**
+     * Transforms points or directions stored in arrays.
+     * @param matrix the transformation matrix
+     * @param mode the transformation mode
+     * @param src the source array
+     * @param srcOffset the source offset
+     * @param srcStride the source stride
+     * @param dst the destination array
+     * @param dstOffset the destination offset
+     * @param dstStride the destination stride
+     * @param count the number of elements
+     * @param parallel {@code true} to split large arrays between threads
+     */
+    private static void transform(final Matrix matrix, final int mode,
+            final float[] src, final int srcOffset, final int srcStride,
+            final float[] dst, final int dstOffset, final int dstStride,
+            int count, boolean parallel)
+    {
+        checkSize(matrix, 4);
+
+        if (count <= 0) return;
+
+        if (srcOffset + (count - 1) * srcStride + 3 > src.length)
+            throw new IllegalArgumentException("Source array too short");
+
+        if (dstOffset + (count - 1) * dstStride + 3 > dst.length)
+            throw new IllegalArgumentException("Destination array too short");
+
+        if (!parallel)
+        {
+            transformRange(matrix, mode, src, srcOffset, srcStride,
+                    dst, dstOffset, dstStride, 0, count);
+            return;
+        }
+
+        Parallel.forRange(0, count, PARALLEL_TRANSFORM_GRAIN, (from, to) ->
+                transformRange(matrix, mode, src, srcOffset, srcStride,
+                        dst, dstOffset, dstStride, from, to));
+    }
+
+    /**
+     * Transforms range of points or directions stored in arrays.
+     * @param matrix the transformation matrix
+     * @param mode the transformation mode
+     * @param src the source array
+     * @param srcOffset the source offset
+     * @param srcStride the source stride
+     * @param dst the destination array
+     * @param dstOffset the destination offset
+     * @param dstStride the destination stride
+     * @param from the first element to transform (inclusive)
+     * @param to the last element to transform (exclusive)
+     */
+    private static void transformRange(Matrix matrix, int mode,
+            float[] src, int srcOffset, int srcStride,
+            float[] dst, int dstOffset, int dstStride, int from, int to)
+    {
+        final float[] m = matrix.values;
+        final int r = matrix.rowStride, c = matrix.columnStride;
+
+        final float m00 = m[0],     m01 = m[c],         m02 = m[2 * c],         m03 = m[3 * c];
+        final float m10 = m[r],     m11 = m[r + c],     m12 = m[r + 2 * c],     m13 = m[r + 3 * c];
+        final float m20 = m[2 * r], m21 = m[2 * r + c], m22 = m[2 * r + 2 * c], m23 = m[2 * r + 3 * c];
+        final float m30 = m[3 * r], m31 = m[3 * r + c], m32 = m[3 * r + 2 * c], m33 = m[3 * r + 3 * c];
+
+        int s = srcOffset + from * srcStride;
+        int d = dstOffset + from * dstStride;
+
+        switch (mode)
+        {
+            case POINTS:
+                for (int i = from; i < to; i++, s += srcStride, d += dstStride)
+                {
+                    float x = src[s], y = src[s + 1], z = src[s + 2];
+
+                    dst[d]     = m00 * x + m01 * y + m02 * z + m03;
+                    dst[d + 1] = m10 * x + m11 * y + m12 * z + m13;
+                    dst[d + 2] = m20 * x + m21 * y + m22 * z + m23;
+                }
+                break;
+            case DIRECTIONS:
+                for (int i = from; i < to; i++, s += srcStride, d += dstStride)
+                {
+                    float x = src[s], y = src[s + 1], z = src[s + 2];
+
+                    dst[d]     = m00 * x + m01 * y + m02 * z;
+                    dst[d + 1] = m10 * x + m11 * y + m12 * z;
+                    dst[d + 2] = m20 * x + m21 * y + m22 * z;
+                }
+                break;
+            case PROJECTED:
+                for (int i = from; i < to; i++, s += srcStride, d += dstStride)
+                {
+                    float x = src[s], y = src[s + 1], z = src[s + 2];
+                    float w = 1.0f / (m30 * x + m31 * y + m32 * z + m33);
+
+                    dst[d]     = (m00 * x + m01 * y + m02 * z + m03) * w;
+                    dst[d + 1] = (m10 * x + m11 * y + m12 * z + m13) * w;
+                    dst[d + 2] = (m20 * x + m21 * y + m22 * z + m23) * w;
+                }
+                break;
+        }
+    }
+
+    /**
+     * Transforms points or directions stored in buffers.
+     * @param matrix the transformation matrix
+     * @param mode the transformation mode
+     * @param src the source buffer
+     * @param srcOffset the source offset
+     * @param srcStride the source stride
+     * @param dst the destination buffer
+     * @param dstOffset the destination offset
+     * @param dstStride the destination stride
+     * @param count the number of elements
+     */
+    private static void transform(Matrix matrix, int mode,
+            FloatBuffer src, int srcOffset, int srcStride,
+            FloatBuffer dst, int dstOffset, int dstStride, int count)
+    {
+        // heap buffers are transformed through their arrays
+        if (src.hasArray() && dst.hasArray())
+        {
+            transform(matrix, mode,
+                    src.array(), src.arrayOffset() + srcOffset, srcStride,
+                    dst.array(), dst.arrayOffset() + dstOffset, dstStride,
+                    count, false);
+            return;
+        }
+
+        checkSize(matrix, 4);
+
+        // other buffers are transformed in chunks copied to an array
+        int chunk = Math.min(count, 256);
+        float[] temp = new float[3 * chunk];
+
+        for (int first = 0; first < count; first += chunk)
+        {
+            int size = Math.min(chunk, count - first);
+            int s = srcOffset + first * srcStride;
+            int d = dstOffset + first * dstStride;
+
+            for (int i = 0, t = 0; i < size; i++, s += srcStride)
             {
-                sum += matrix.get(row, column) * vector[column];
+                temp[t++] = src.get(s);
+                temp[t++] = src.get(s + 1);
+                temp[t++] = src.get(s + 2);
             }
 
-            result[row] = sum;
+            transformRange(matrix, mode, temp, 0, 3, temp, 0, 3, 0, size);
+
+            for (int i = 0, t = 0; i < size; i++, d += dstStride)
+            {
+                dst.put(d, temp[t++]);
+                dst.put(d + 1, temp[t++]);
+                dst.put(d + 2, temp[t++]);
+            }
         }
     }
 
@@ -1063,13 +2144,13 @@ public final class Matrix implements Serializable
     {
         checkCompatibility(src, dest);
 
-        int rows = src.getRows();
-        int columns = src.getColumns();
-
-        for (int row = 0; row < rows; row++)
+        if (src.order == dest.order)
         {
-            System.arraycopy(src.values[row], 0, dest.values[row], 0, columns);
+            System.arraycopy(src.values, 0, dest.values, 0, src.values.length);
+            return;
         }
+
+        subCopy(src, dest);
     }
 
     /**
@@ -1082,12 +2163,38 @@ public final class Matrix implements Serializable
         if (dest.rows > src.rows) throw new IllegalArgumentException("Incompatible matrices");
         if (dest.columns > src.columns) throw new IllegalArgumentException("Incompatible matrices");
 
-        int rows = src.getRows();
-        int columns = src.getColumns();
+        int rows = dest.getRows();
+        int columns = dest.getColumns();
+
+        if (src.order == Order.ROW_MAJOR && dest.order == Order.ROW_MAJOR)
+        {
+            for (int row = 0; row < rows; row++)
+            {
+                System.arraycopy(src.values, row * src.rowStride,
+                        dest.values, row * dest.rowStride, columns);
+            }
+
+            return;
+        }
+
+        if (src.order == Order.COLUMN_MAJOR && dest.order == Order.COLUMN_MAJOR)
+        {
+            for (int column = 0; column < columns; column++)
+            {
+                System.arraycopy(src.values, column * src.columnStride,
+                        dest.values, column * dest.columnStride, rows);
+            }
+
+            return;
+        }
 
         for (int row = 0; row < rows; row++)
         {
-            System.arraycopy(src.values[row], 0, dest.values[row], 0, columns);
+            for (int column = 0; column < columns; column++)
+            {
+                dest.values[dest.index(row, column)] =
+                        src.values[src.index(row, column)];
+            }
         }
     }
 
@@ -1100,9 +2207,18 @@ public final class Matrix implements Serializable
     {
         checkCompatibility(first, second);
 
-        float[][] temp = first.values;
-        first.values = second.values;
-        second.values = temp;
+        if (first.order == second.order)
+        {
+            float[] temp = first.values;
+            first.values = second.values;
+            second.values = temp;
+        }
+        else
+        {
+            Matrix temp = new Matrix(first);
+            copy(second, first);
+            copy(temp, second);
+        }
     }
 
     /**
@@ -1125,13 +2241,21 @@ public final class Matrix implements Serializable
         {
             for (int column = 0; column < columns; column++)
             {
-                dest.values[column][row] = src.values[row][column];
+                dest.values[dest.index(column, row)] =
+                        src.values[src.index(row, column)];
             }
         }
     }
 
     /**
      * Computes inverse of given matrix and stores it in other matrix.
+     * Destination matrix can be the same object as source matrix.
+     *
+     * Matrices up to 4x4 are inverted using closed-form formulas.
+     * Affine 4x4 matrices (with last row equal to {@code 0 0 0 1}) are
+     * inverted with {@link #inverseAffine(Matrix, Matrix)}. Larger matrices
+     * are inverted using Gaussian elimination with partial pivoting.
+     *
      * @param src the source matrix
      * @param dest the destination matrix
      */
@@ -1139,120 +2263,323 @@ public final class Matrix implements Serializable
     {
         checkCompatibility(src, dest);
 
+        if (src.rows != src.columns)
+            throw new IllegalArgumentException("Cannot invert non-square matrix");
+
+        switch (src.rows)
+        {
+            case 1:
+                inverse1(src, dest);
+                return;
+            case 2:
+                inverse2(src, dest);
+                return;
+            case 3:
+                inverse3(src, dest);
+                return;
+            case 4:
+                if (isAffine(src))
+                    inverseAffine(src, dest);
+                else
+                    inverse4(src, dest);
+                return;
+        }
+
         // create a working copy
-        src.requestResult();
-        copy(src, src.result);
+        Matrix work = new Matrix(src);
 
         // load destination with identity matrix
         dest.loadIdentity();
 
         // perform Gaussian elimination
-        gaussianElimination(src.result, dest);
+        gaussianElimination(work, dest);
+    }
+
+    /**
+     * Computes inverse of affine 4x4 matrix and stores it in other matrix.
+     * Last row of source matrix is assumed to be {@code 0 0 0 1}.
+     * Destination matrix can be the same object as source matrix.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    public static void inverseAffine(Matrix src, Matrix dest)
+    {
+        checkSize(src, 4);
+        checkSize(dest, 4);
+
+        final float[] m = src.values;
+        final int r = src.rowStride, c = src.columnStride;
+
+        float m00 = m[0],         m01 = m[c],             m02 = m[2 * c];
+        float m10 = m[r],         m11 = m[r + c],         m12 = m[r + 2 * c];
+        float m20 = m[2 * r],     m21 = m[2 * r + c],     m22 = m[2 * r + 2 * c];
+        float tx = m[3 * c], ty = m[r + 3 * c], tz = m[2 * r + 3 * c];
+
+        float c00 = m11 * m22 - m12 * m21;
+        float c01 = m12 * m20 - m10 * m22;
+        float c02 = m10 * m21 - m11 * m20;
+
+        float det = m00 * c00 + m01 * c01 + m02 * c02;
+
+        if (det == 0.0f)
+            throw new IllegalArgumentException(
+                    "Matrix cannot be inverted: determinant is 0");
+
+        float inv = 1.0f / det;
+
+        float r00 = c00 * inv;
+        float r01 = (m02 * m21 - m01 * m22) * inv;
+        float r02 = (m01 * m12 - m02 * m11) * inv;
+        float r10 = c01 * inv;
+        float r11 = (m00 * m22 - m02 * m20) * inv;
+        float r12 = (m02 * m10 - m00 * m12) * inv;
+        float r20 = c02 * inv;
+        float r21 = (m01 * m20 - m00 * m21) * inv;
+        float r22 = (m00 * m11 - m01 * m10) * inv;
+
+        dest.set4(r00, r01, r02, -(r00 * tx + r01 * ty + r02 * tz),
+                r10, r11, r12, -(r10 * tx + r11 * ty + r12 * tz),
+                r20, r21, r22, -(r20 * tx + r21 * ty + r22 * tz),
+                0.0f, 0.0f, 0.0f, 1.0f);
+    }
+
+    /**
+     * Computes inverse of rigid-body 4x4 matrix and stores it in other matrix.
+     * Source matrix is assumed to contain only rotation and translation,
+     * so the inverse is computed by transposing the rotation and
+     * rotating negated translation. Results are undefined for other matrices.
+     * Destination matrix can be the same object as source matrix.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    public static void inverseRigid(Matrix src, Matrix dest)
+    {
+        checkSize(src, 4);
+        checkSize(dest, 4);
+
+        final float[] m = src.values;
+        final int r = src.rowStride, c = src.columnStride;
+
+        float m00 = m[0],         m01 = m[c],             m02 = m[2 * c];
+        float m10 = m[r],         m11 = m[r + c],         m12 = m[r + 2 * c];
+        float m20 = m[2 * r],     m21 = m[2 * r + c],     m22 = m[2 * r + 2 * c];
+        float tx = m[3 * c], ty = m[r + 3 * c], tz = m[2 * r + 3 * c];
+
+        dest.set4(m00, m10, m20, -(m00 * tx + m10 * ty + m20 * tz),
+                m01, m11, m21, -(m01 * tx + m11 * ty + m21 * tz),
+                m02, m12, m22, -(m02 * tx + m12 * ty + m22 * tz),
+                0.0f, 0.0f, 0.0f, 1.0f);
+    }
+
+    /**
+     * Checks if 4x4 matrix is affine (last row is {@code 0 0 0 1}).
+     * @param matrix the matrix to check
+     * @return {@code true} if matrix is affine
+     */
+    private static boolean isAffine(Matrix matrix)
+    {
+        final float[] m = matrix.values;
+        final int r = 3 * matrix.rowStride, c = matrix.columnStride;
+
+        return m[r] == 0.0f && m[r + c] == 0.0f
+                && m[r + 2 * c] == 0.0f && m[r + 3 * c] == 1.0f;
+    }
+
+    /**
+     * Computes inverse of 1x1 matrix.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    private static void inverse1(Matrix src, Matrix dest)
+    {
+        float value = src.values[0];
+
+        if (value == 0.0f)
+            throw new IllegalArgumentException(
+                    "Matrix cannot be inverted: determinant is 0");
+
+        dest.values[0] = 1.0f / value;
+    }
+
+    /**
+     * Computes inverse of 2x2 matrix.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    private static void inverse2(Matrix src, Matrix dest)
+    {
+        float m00 = src.get(0, 0), m01 = src.get(0, 1);
+        float m10 = src.get(1, 0), m11 = src.get(1, 1);
+
+        float det = m00 * m11 - m01 * m10;
+
+        if (det == 0.0f)
+            throw new IllegalArgumentException(
+                    "Matrix cannot be inverted: determinant is 0");
+
+        float inv = 1.0f / det;
+
+        dest.set(0, 0, m11 * inv);
+        dest.set(0, 1, -m01 * inv);
+        dest.set(1, 0, -m10 * inv);
+        dest.set(1, 1, m00 * inv);
     }
 
     /**
      * Computes inverse of 3x3 matrix.
-     * This code is left in case it is needed.
      * @param src the source matrix
      * @param dest the destination matrix
      */
     private static void inverse3(Matrix src, Matrix dest)
     {
-        // shortcut for source values
-        final float m[][] = src.values;
+        final float[] m = src.values;
+        final int r = src.rowStride, c = src.columnStride;
 
-        // determinant
-        float det = m[0][0] * m[1][1] * m[2][2]
-                + m[1][0] * m[2][1] * m[0][2]
-                + m[2][0] * m[0][1] * m[1][2]
-                - m[0][0] * m[2][1] * m[1][2]
-                - m[1][0] * m[0][1] * m[2][2]
-                - m[2][0] * m[1][1] * m[0][2];
+        float m00 = m[0],         m01 = m[c],             m02 = m[2 * c];
+        float m10 = m[r],         m11 = m[r + c],         m12 = m[r + 2 * c];
+        float m20 = m[2 * r],     m21 = m[2 * r + c],     m22 = m[2 * r + 2 * c];
 
-        if(Math.abs(det) < 1e-6f)
+        float c00 = m11 * m22 - m12 * m21;
+        float c01 = m12 * m20 - m10 * m22;
+        float c02 = m10 * m21 - m11 * m20;
+
+        float det = m00 * c00 + m01 * c01 + m02 * c02;
+
+        if (det == 0.0f)
             throw new IllegalArgumentException(
                     "Matrix cannot be inverted: determinant is 0");
 
-        float detInv = 1.0f / det;
+        float inv = 1.0f / det;
+
+        float r00 = c00 * inv;
+        float r01 = (m02 * m21 - m01 * m22) * inv;
+        float r02 = (m01 * m12 - m02 * m11) * inv;
+        float r10 = c01 * inv;
+        float r11 = (m00 * m22 - m02 * m20) * inv;
+        float r12 = (m02 * m10 - m00 * m12) * inv;
+        float r20 = c02 * inv;
+        float r21 = (m01 * m20 - m00 * m21) * inv;
+        float r22 = (m00 * m11 - m01 * m10) * inv;
+
+        dest.set(0, 0, r00); dest.set(0, 1, r01); dest.set(0, 2, r02);
+        dest.set(1, 0, r10); dest.set(1, 1, r11); dest.set(1, 2, r12);
+        dest.set(2, 0, r20); dest.set(2, 1, r21); dest.set(2, 2, r22);
+    }
+
+    /**
+     * Computes inverse of 4x4 matrix using cofactors.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    private static void inverse4(Matrix src, Matrix dest)
+    {
+        final float[] m = src.values;
+        final int r = src.rowStride, c = src.columnStride;
+
+        float m00 = m[0],     m01 = m[c],         m02 = m[2 * c],         m03 = m[3 * c];
+        float m10 = m[r],     m11 = m[r + c],     m12 = m[r + 2 * c],     m13 = m[r + 3 * c];
+        float m20 = m[2 * r], m21 = m[2 * r + c], m22 = m[2 * r + 2 * c], m23 = m[2 * r + 3 * c];
+        float m30 = m[3 * r], m31 = m[3 * r + c], m32 = m[3 * r + 2 * c], m33 = m[3 * r + 3 * c];
+
+        float s0 = m00 * m11 - m10 * m01;
+        float s1 = m00 * m12 - m10 * m02;
+        float s2 = m00 * m13 - m10 * m03;
+        float s3 = m01 * m12 - m11 * m02;
+        float s4 = m01 * m13 - m11 * m03;
+        float s5 = m02 * m13 - m12 * m03;
 
-        float m00 =  (m[1][1] * m[2][2] - m[2][1] * m[1][2]);
-        float m01 = -(m[1][0] * m[2][2] - m[2][0] * m[1][2]);
-        float m02 =  (m[1][0] * m[2][1] - m[2][0] * m[1][1]);
-        float m10 = -(m[0][1] * m[2][2] - m[2][1] * m[0][2]);
-        float m11 =  (m[0][0] * m[2][2] - m[2][0] * m[0][2]);
-        float m12 = -(m[0][0] * m[2][1] - m[2][0] * m[0][1]);
-        float m20 =  (m[0][1] * m[1][2] - m[1][1] * m[0][2]);
-        float m21 = -(m[0][0] * m[1][2] - m[1][0] * m[0][2]);
-        float m22 =  (m[0][0] * m[1][1] - m[1][0] * m[0][1]);
+        float c5 = m22 * m33 - m32 * m23;
+        float c4 = m21 * m33 - m31 * m23;
+        float c3 = m21 * m32 - m31 * m22;
+        float c2 = m20 * m33 - m30 * m23;
+        float c1 = m20 * m32 - m30 * m22;
+        float c0 = m20 * m31 - m30 * m21;
 
-        dest.values[0][0] = m00 * detInv;
-        dest.values[0][1] = m01 * detInv;
-        dest.values[0][2] = m02 * detInv;
-        dest.values[1][0] = m10 * detInv;
-        dest.values[1][1] = m11 * detInv;
-        dest.values[1][2] = m12 * detInv;
-        dest.values[2][0] = m20 * detInv;
-        dest.values[2][1] = m21 * detInv;
-        dest.values[2][2] = m22 * detInv;
+        float det = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+
+        if (det == 0.0f)
+            throw new IllegalArgumentException(
+                    "Matrix cannot be inverted: determinant is 0");
+
+        float inv = 1.0f / det;
+
+        dest.set4(( m11 * c5 - m12 * c4 + m13 * c3) * inv,
+                (-m01 * c5 + m02 * c4 - m03 * c3) * inv,
+                ( m31 * s5 - m32 * s4 + m33 * s3) * inv,
+                (-m21 * s5 + m22 * s4 - m23 * s3) * inv,
+                (-m10 * c5 + m12 * c2 - m13 * c1) * inv,
+                ( m00 * c5 - m02 * c2 + m03 * c1) * inv,
+                (-m30 * s5 + m32 * s2 - m33 * s1) * inv,
+                ( m20 * s5 - m22 * s2 + m23 * s1) * inv,
+                ( m10 * c4 - m11 * c2 + m13 * c0) * inv,
+                (-m00 * c4 + m01 * c2 - m03 * c0) * inv,
+                ( m30 * s4 - m31 * s2 + m33 * s0) * inv,
+                (-m20 * s4 + m21 * s2 - m23 * s0) * inv,
+                (-m10 * c3 + m11 * c1 - m12 * c0) * inv,
+                ( m00 * c3 - m01 * c1 + m02 * c0) * inv,
+                (-m30 * s3 + m31 * s1 - m32 * s0) * inv,
+                ( m20 * s3 - m21 * s1 + m22 * s0) * inv);
     }
 
     /**
      * Performs Gaussian Elimination on two matrices.
      * This method can be used to calculate matrix inverse. Simply load
      * {@code second} with identity matrix.
+     *
+     * Rows are swapped so that the largest value in each column
+     * is used as the pivot (partial pivoting).
+     *
      * @param first the first matrix
      * @param second the second matrix
      */
     public static void gaussianElimination(Matrix first, Matrix second)
     {
-        checkCompatibility(first, second);
+        if (first.getRows() != second.getRows())
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: different row count");
 
         int rows = first.getRows();
 
         // converting first matrix to row echelon form
         for (int diagonal = 0; diagonal < rows; diagonal++)
         {
-            float value = first.get(diagonal, diagonal);
+            // find row with the largest value in this column
+            int pivot = diagonal;
+            float max = Math.abs(first.get(diagonal, diagonal));
 
-            // if first element is zero, find non-zero row
-            // and add to this one while scaling to 1
-            if (Math.abs(value) < 1e-6f)
+            for (int row = diagonal + 1; row < rows; row++)
             {
-                int row = diagonal + 1;
+                float value = Math.abs(first.get(row, diagonal));
 
-                for (; row < rows; row++)
+                if (value > max)
                 {
-                    if (Math.abs(first.get(row, diagonal)) > 1e-6f)
-                        break;
+                    pivot = row;
+                    max = value;
                 }
+            }
 
-                if (row == rows)
-                {
-                    throw new RuntimeException(
-                            "Matrix seems to be invalid or non-invertible");
-                }
+            if (max < 1e-6f)
+            {
+                throw new RuntimeException(
+                        "Matrix seems to be invalid or non-invertible");
+            }
 
-                // this will rescale first value to 1
-                value = 1.0f / first.get(row, diagonal);
+            first.swapRow(diagonal, pivot);
+            second.swapRow(diagonal, pivot);
 
-                first.addRow(diagonal, row, value);
-                second.addRow(diagonal, row, value);
-            }
-            // else scale rows by element on diagonal to get 1
-            else
-            {
-                // this will rescale first value to 1
-                float scale = 1.0f / first.get(diagonal, diagonal);
+            // this will rescale first value to 1
+            float scale = 1.0f / first.get(diagonal, diagonal);
 
-                first.scaleRow(diagonal, scale);
-                second.scaleRow(diagonal, scale);
-            }
+            first.scaleRow(diagonal, scale);
+            second.scaleRow(diagonal, scale);
 
             // clear columns below the diagonal by adding other rows
             for (int row = diagonal + 1; row < rows; row++)
             {
                 // this will result in first value being 0
-                value = first.get(row, diagonal);
+                float value = first.get(row, diagonal);
+
+                if (value == 0.0f) continue;
 
                 first.addRow(row, diagonal, -value);
                 second.addRow(row, diagonal, -value);
@@ -1267,12 +2594,58 @@ public final class Matrix implements Serializable
             {
                 float value = first.get(row, diagonal);
 
+                if (value == 0.0f) continue;
+
                 first.addRow(row, diagonal, -value);
                 second.addRow(row, diagonal, -value);
             }
         }
     }
 
+    /**
+     * Changes all values of 4x4 matrix. Arguments are given in row order.
+     */
+    private void set4(float m00, float m01, float m02, float m03,
+            float m10, float m11, float m12, float m13,
+            float m20, float m21, float m22, float m23,
+            float m30, float m31, float m32, float m33)
+    {
+        final float[] m = values;
+        final int r = rowStride, c = columnStride;
+
+        m[0] = m00;     m[c] = m01;         m[2 * c] = m02;         m[3 * c] = m03;
+        m[r] = m10;     m[r + c] = m11;     m[r + 2 * c] = m12;     m[r + 3 * c] = m13;
+        m[2 * r] = m20; m[2 * r + c] = m21; m[2 * r + 2 * c] = m22; m[2 * r + 3 * c] = m23;
+        m[3 * r] = m30; m[3 * r + c] = m31; m[3 * r + 2 * c] = m32; m[3 * r + 3 * c] = m33;
+    }
+
+    /**
+     * Checks the number of matrix columns. Throws
+     * {@code IllegalArgumentException} if it's different than required.
+     * @param matrix the matrix to check
+     * @param columns the required number of columns
+     */
+    private static void checkColumns(Matrix matrix, int columns)
+    {
+        if (matrix.getColumns() != columns)
+            throw new IllegalArgumentException(
+                    "Incompatible matrix: " + columns + " columns required");
+    }
+
+    /**
+     * Checks matrix size. Throws {@code IllegalArgumentException}
+     * if matrix doesn't have given number of rows and columns.
+     * @param matrix the matrix to check
+     * @param size the required number of rows and columns
+     */
+    private static void checkSize(Matrix matrix, int size)
+    {
+        if (matrix.getRows() != size || matrix.getColumns() != size)
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: " + size + "x" + size
+                    + " matrix required");
+    }
+
     /**
      * Checks matrix compatibility. Throws {@code IllegalArgumentException}
      * if matrices don't have equal number of rows and columns.
@@ -1289,4 +2662,53 @@ public final class Matrix implements Serializable
             throw new IllegalArgumentException(
                     "Incompatible matrices: different column count");
     }
+
+    /**
+     * Returns float view of byte buffer starting at given position.
+     * View uses byte order of the buffer.
+     * @param buffer the byte buffer
+     * @param offset the position in bytes
+     * @return the float view
+     */
+    private static FloatBuffer view(ByteBuffer buffer, int offset)
+    {
+        ByteBuffer duplicate = buffer.duplicate().order(buffer.order());
+
+        ((Buffer) duplicate).clear();
+        ((Buffer) duplicate).position(offset);
+
+        return duplicate.asFloatBuffer();
+    }
+
+    /**
+     * Returns duplicate of float buffer starting at given position.
+     * @param buffer the float buffer
+     * @param offset the position
+     * @return the duplicate buffer
+     */
+    private static FloatBuffer view(FloatBuffer buffer, int offset)
+    {
+        FloatBuffer duplicate = buffer.duplicate();
+
+        ((Buffer) duplicate).clear();
+        ((Buffer) duplicate).position(offset);
+
+        return duplicate;
+    }
+
+    // modes of point transformation
+    private static final int POINTS = 0;
+    private static final int DIRECTIONS = 1;
+    private static final int PROJECTED = 2;
+
+    // the number of points transformed by one thread
+    private static final int PARALLEL_TRANSFORM_GRAIN = 16384;
+
+    // the number of multiply-adds above which blocked kernel is used
+    private static final long BLOCKED_MULTIPLY_THRESHOLD = 128L * 128L * 128L;
+
+    // tile sizes for blocked kernel
+    private static final int BLOCK_ROWS = 64;
+    private static final int BLOCK_COLUMNS = 256;
+    private static final int BLOCK_DEPTH = 128;
 }
@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+import java.io.Serializable;
+
+/**
+ * Class implementing 3x3 matrix storage and operations.
+ *
+ * Values are kept in separate fields, so all operations are fully unrolled
+ * and don't allocate memory. This class is useful for normal matrices
+ * and other 3D rotations.
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class Matrix3f implements Serializable
+{
+    // matrix values, mRC is the value in row R and column C
+    float m00, m01, m02;
+    float m10, m11, m12;
+    float m20, m21, m22;
+
+
+    /**
+     * Creates new matrix with all values equal to zero.
+     */
+    public Matrix3f()
+    {
+    }
+
+    /**
+     * Creates new matrix as a copy of another matrix.
+     * @param other the matrix to copy
+     */
+    public Matrix3f(Matrix3f other)
+    {
+        set(other);
+    }
+
+    /**
+     * Creates new matrix as a copy of generic 3x3 matrix.
+     * @param other the matrix to copy
+     */
+    public Matrix3f(Matrix other)
+    {
+        set(other);
+    }
+
+    /**
+     * Returns the value under given row and column.
+     * @param row the row index
+     * @param column the column index
+     * @return the value
+     */
+    public float get(int row, int column)
+    {
+        checkIndex(row, column);
+
+        switch (row * 3 + column)
+        {
+            case 0: return m00;
+            case 1: return m01;
+            case 2: return m02;
+            case 3: return m10;
+            case 4: return m11;
+            case 5: return m12;
+            case 6: return m20;
+            case 7: return m21;
+            case 8: return m22;
+        }
+
+        throw new IndexOutOfBoundsException(
+                "Invalid index: " + row + ", " + column);
+    }
+
+    /**
+     * Changes the value under given row and column.
+     * @param row the row index
+     * @param column the column index
+     * @param value the new value
+     */
+    public void set(int row, int column, float value)
+    {
+        checkIndex(row, column);
+
+        switch (row * 3 + column)
+        {
+            case 0: m00 = value; return;
+            case 1: m01 = value; return;
+            case 2: m02 = value; return;
+            case 3: m10 = value; return;
+            case 4: m11 = value; return;
+            case 5: m12 = value; return;
+            case 6: m20 = value; return;
+            case 7: m21 = value; return;
+            case 8: m22 = value; return;
+        }
+
+        throw new IndexOutOfBoundsException(
+                "Invalid index: " + row + ", " + column);
+    }
+
+    /**
+     * Copies values from other matrix to this matrix.
+     * @param other the matrix to copy values from
+     * @return this matrix
+     */
+    public Matrix3f set(Matrix3f other)
+    {
+        m00 = other.m00; m01 = other.m01; m02 = other.m02;
+        m10 = other.m10; m11 = other.m11; m12 = other.m12;
+        m20 = other.m20; m21 = other.m21; m22 = other.m22;
+
+        return this;
+    }
+
+    /**
+     * Copies upper-left 3x3 part of 4x4 matrix to this matrix.
+     * @param other the matrix to copy values from
+     * @return this matrix
+     */
+    public Matrix3f set(Matrix4f other)
+    {
+        m00 = other.m00; m01 = other.m01; m02 = other.m02;
+        m10 = other.m10; m11 = other.m11; m12 = other.m12;
+        m20 = other.m20; m21 = other.m21; m22 = other.m22;
+
+        return this;
+    }
+
+    /**
+     * Copies values from generic 3x3 matrix to this matrix.
+     * @param other the matrix to copy values from
+     * @return this matrix
+     */
+    public Matrix3f set(Matrix other)
+    {
+        checkSize(other);
+
+        m00 = other.get(0, 0); m01 = other.get(0, 1); m02 = other.get(0, 2);
+        m10 = other.get(1, 0); m11 = other.get(1, 1); m12 = other.get(1, 2);
+        m20 = other.get(2, 0); m21 = other.get(2, 1); m22 = other.get(2, 2);
+
+        return this;
+    }
+
+    /**
+     * Copies values from this matrix to generic 3x3 matrix.
+     * @param other the matrix to copy values to
+     */
+    public void get(Matrix other)
+    {
+        checkSize(other);
+
+        other.set(0, 0, m00); other.set(0, 1, m01); other.set(0, 2, m02);
+        other.set(1, 0, m10); other.set(1, 1, m11); other.set(1, 2, m12);
+        other.set(2, 0, m20); other.set(2, 1, m21); other.set(2, 2, m22);
+    }
+
+    /**
+     * Creates new generic matrix with values of this matrix.
+     * @return the new matrix
+     */
+    public Matrix toMatrix()
+    {
+        Matrix matrix = new Matrix(3);
+
+        get(matrix);
+
+        return matrix;
+    }
+
+    /**
+     * Loads this matrix with identity values.
+     * @return this matrix
+     */
+    public Matrix3f loadIdentity()
+    {
+        m00 = 1.0f; m01 = 0.0f; m02 = 0.0f;
+        m10 = 0.0f; m11 = 1.0f; m12 = 0.0f;
+        m20 = 0.0f; m21 = 0.0f; m22 = 1.0f;
+
+        return this;
+    }
+
+    /**
+     * Transforms this matrix by other matrix.
+     * @param transform the transformation matrix
+     * @return this matrix
+     */
+    public Matrix3f transform(Matrix3f transform)
+    {
+        multiply(this, transform, this);
+
+        return this;
+    }
+
+    /**
+     * Transposes this matrix.
+     * @return this matrix
+     */
+    public Matrix3f transpose()
+    {
+        transpose(this, this);
+
+        return this;
+    }
+
+    /**
+     * Computes inverse of this matrix.
+     * @return this matrix
+     */
+    public Matrix3f inverse()
+    {
+        inverse(this, this);
+
+        return this;
+    }
+
+    /**
+     * Calculates determinant of this matrix.
+     * @return the determinant
+     */
+    public float determinant()
+    {
+        return m00 * (m11 * m22 - m12 * m21)
+                - m01 * (m10 * m22 - m12 * m20)
+                + m02 * (m10 * m21 - m11 * m20);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+
+        for (int row = 0; row < 3; row++)
+        {
+            if (row > 0) builder.append('\n');
+
+            for (int column = 0; column < 3; column++)
+            {
+                if (column > 0) builder.append('\t');
+
+                builder.append(get(row, column));
+            }
+        }
+
+        return builder.toString();
+    }
+
+
+    /**
+     * Multiplies two matrices and stores result in other matrix.
+     * Result matrix can be the same object as any of the source matrices.
+     * @param first the first matrix to multiply
+     * @param second the second matrix to multiply
+     * @param result the matrix where multiplication result is to be stored
+     */
+    public static void multiply(Matrix3f first, Matrix3f second,
+            Matrix3f result)
+    {
+        final Matrix3f a = first, b = second;
+
+        float r00 = a.m00 * b.m00 + a.m01 * b.m10 + a.m02 * b.m20;
+        float r01 = a.m00 * b.m01 + a.m01 * b.m11 + a.m02 * b.m21;
+        float r02 = a.m00 * b.m02 + a.m01 * b.m12 + a.m02 * b.m22;
+
+        float r10 = a.m10 * b.m00 + a.m11 * b.m10 + a.m12 * b.m20;
+        float r11 = a.m10 * b.m01 + a.m11 * b.m11 + a.m12 * b.m21;
+        float r12 = a.m10 * b.m02 + a.m11 * b.m12 + a.m12 * b.m22;
+
+        float r20 = a.m20 * b.m00 + a.m21 * b.m10 + a.m22 * b.m20;
+        float r21 = a.m20 * b.m01 + a.m21 * b.m11 + a.m22 * b.m21;
+        float r22 = a.m20 * b.m02 + a.m21 * b.m12 + a.m22 * b.m22;
+
+        result.m00 = r00; result.m01 = r01; result.m02 = r02;
+        result.m10 = r10; result.m11 = r11; result.m12 = r12;
+        result.m20 = r20; result.m21 = r21; result.m22 = r22;
+    }
+
+    /**
+     * Multiplies vector by a matrix.
+     * Result array can be the same object as source array.
+     * @param matrix the matrix to multiply
+     * @param vector the vector to multiply
+     * @param result the result of multiplication
+     */
+    public static void multiply(Matrix3f matrix, float[] vector, float[] result)
+    {
+        final Matrix3f m = matrix;
+
+        float x = vector[0], y = vector[1], z = vector[2];
+
+        result[0] = m.m00 * x + m.m01 * y + m.m02 * z;
+        result[1] = m.m10 * x + m.m11 * y + m.m12 * z;
+        result[2] = m.m20 * x + m.m21 * y + m.m22 * z;
+    }
+
+    /**
+     * Computes transpose of given matrix and stores it in other matrix.
+     * Destination matrix can be the same object as source matrix.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    public static void transpose(Matrix3f src, Matrix3f dest)
+    {
+        float t;
+
+        dest.m00 = src.m00; dest.m11 = src.m11; dest.m22 = src.m22;
+
+        t = src.m01; dest.m01 = src.m10; dest.m10 = t;
+        t = src.m02; dest.m02 = src.m20; dest.m20 = t;
+        t = src.m12; dest.m12 = src.m21; dest.m21 = t;
+    }
+
+    /**
+     * Computes inverse of given matrix and stores it in other matrix.
+     * Destination matrix can be the same object as source matrix.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    public static void inverse(Matrix3f src, Matrix3f dest)
+    {
+        final Matrix3f m = src;
+
+        float c00 = m.m11 * m.m22 - m.m12 * m.m21;
+        float c01 = m.m12 * m.m20 - m.m10 * m.m22;
+        float c02 = m.m10 * m.m21 - m.m11 * m.m20;
+
+        float det = m.m00 * c00 + m.m01 * c01 + m.m02 * c02;
+
+        if (det == 0.0f)
+            throw new IllegalArgumentException(
+                    "Matrix cannot be inverted: determinant is 0");
+
+        float inv = 1.0f / det;
+
+        float r00 = c00 * inv;
+        float r01 = (m.m02 * m.m21 - m.m01 * m.m22) * inv;
+        float r02 = (m.m01 * m.m12 - m.m02 * m.m11) * inv;
+
+        float r10 = c01 * inv;
+        float r11 = (m.m00 * m.m22 - m.m02 * m.m20) * inv;
+        float r12 = (m.m02 * m.m10 - m.m00 * m.m12) * inv;
+
+        float r20 = c02 * inv;
+        float r21 = (m.m01 * m.m20 - m.m00 * m.m21) * inv;
+        float r22 = (m.m00 * m.m11 - m.m01 * m.m10) * inv;
+
+        dest.m00 = r00; dest.m01 = r01; dest.m02 = r02;
+        dest.m10 = r10; dest.m11 = r11; dest.m12 = r12;
+        dest.m20 = r20; dest.m21 = r21; dest.m22 = r22;
+    }
+
+    /**
+     * Checks if row and column are inside matrix. Throws
+     * {@code IndexOutOfBoundsException} otherwise.
+     * @param row the row index
+     * @param column the column index
+     */
+    private static void checkIndex(int row, int column)
+    {
+        if (row < 0 || row >= 3 || column < 0 || column >= 3)
+            throw new IndexOutOfBoundsException(
+                    "Invalid index: " + row + ", " + column);
+    }
+
+    /**
+     * Checks if generic matrix is 3x3. Throws
+     * {@code IllegalArgumentException} otherwise.
+     * @param matrix the matrix to check
+     */
+    private static void checkSize(Matrix matrix)
+    {
+        if (matrix.getRows() != 3 || matrix.getColumns() != 3)
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: 3x3 matrix required");
+    }
+}
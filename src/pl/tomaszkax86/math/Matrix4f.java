@@ -0,0 +1,460 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+import java.io.Serializable;
+
+/**
+ * Class implementing 4x4 matrix storage and operations.
+ *
+ * Values are kept in separate fields, so all operations are fully unrolled
+ * and don't allocate memory. Use this class instead of {@link Matrix}
+ * for transformations in performance-critical code.
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class Matrix4f implements Serializable
+{
+    // matrix values, mRC is the value in row R and column C
+    float m00, m01, m02, m03;
+    float m10, m11, m12, m13;
+    float m20, m21, m22, m23;
+    float m30, m31, m32, m33;
+
+
+    /**
+     * Creates new matrix with all values equal to zero.
+     */
+    public Matrix4f()
+    {
+    }
+
+    /**
+     * Creates new matrix as a copy of another matrix.
+     * @param other the matrix to copy
+     */
+    public Matrix4f(Matrix4f other)
+    {
+        set(other);
+    }
+
+    /**
+     * Creates new matrix as a copy of generic 4x4 matrix.
+     * @param other the matrix to copy
+     */
+    public Matrix4f(Matrix other)
+    {
+        set(other);
+    }
+
+    /**
+     * Returns the value under given row and column.
+     * @param row the row index
+     * @param column the column index
+     * @return the value
+     */
+    public float get(int row, int column)
+    {
+        checkIndex(row, column);
+
+        switch (row * 4 + column)
+        {
+            case 0: return m00;
+            case 1: return m01;
+            case 2: return m02;
+            case 3: return m03;
+            case 4: return m10;
+            case 5: return m11;
+            case 6: return m12;
+            case 7: return m13;
+            case 8: return m20;
+            case 9: return m21;
+            case 10: return m22;
+            case 11: return m23;
+            case 12: return m30;
+            case 13: return m31;
+            case 14: return m32;
+            case 15: return m33;
+        }
+
+        throw new IndexOutOfBoundsException(
+                "Invalid index: " + row + ", " + column);
+    }
+
+    /**
+     * Changes the value under given row and column.
+     * @param row the row index
+     * @param column the column index
+     * @param value the new value
+     */
+    public void set(int row, int column, float value)
+    {
+        checkIndex(row, column);
+
+        switch (row * 4 + column)
+        {
+            case 0: m00 = value; return;
+            case 1: m01 = value; return;
+            case 2: m02 = value; return;
+            case 3: m03 = value; return;
+            case 4: m10 = value; return;
+            case 5: m11 = value; return;
+            case 6: m12 = value; return;
+            case 7: m13 = value; return;
+            case 8: m20 = value; return;
+            case 9: m21 = value; return;
+            case 10: m22 = value; return;
+            case 11: m23 = value; return;
+            case 12: m30 = value; return;
+            case 13: m31 = value; return;
+            case 14: m32 = value; return;
+            case 15: m33 = value; return;
+        }
+
+        throw new IndexOutOfBoundsException(
+                "Invalid index: " + row + ", " + column);
+    }
+
+    /**
+     * Copies values from other matrix to this matrix.
+     * @param other the matrix to copy values from
+     * @return this matrix
+     */
+    public Matrix4f set(Matrix4f other)
+    {
+        m00 = other.m00; m01 = other.m01; m02 = other.m02; m03 = other.m03;
+        m10 = other.m10; m11 = other.m11; m12 = other.m12; m13 = other.m13;
+        m20 = other.m20; m21 = other.m21; m22 = other.m22; m23 = other.m23;
+        m30 = other.m30; m31 = other.m31; m32 = other.m32; m33 = other.m33;
+
+        return this;
+    }
+
+    /**
+     * Copies values from generic 4x4 matrix to this matrix.
+     * @param other the matrix to copy values from
+     * @return this matrix
+     */
+    public Matrix4f set(Matrix other)
+    {
+        checkSize(other);
+
+        m00 = other.get(0, 0); m01 = other.get(0, 1);
+        m02 = other.get(0, 2); m03 = other.get(0, 3);
+        m10 = other.get(1, 0); m11 = other.get(1, 1);
+        m12 = other.get(1, 2); m13 = other.get(1, 3);
+        m20 = other.get(2, 0); m21 = other.get(2, 1);
+        m22 = other.get(2, 2); m23 = other.get(2, 3);
+        m30 = other.get(3, 0); m31 = other.get(3, 1);
+        m32 = other.get(3, 2); m33 = other.get(3, 3);
+
+        return this;
+    }
+
+    /**
+     * Copies values from this matrix to generic 4x4 matrix.
+     * @param other the matrix to copy values to
+     */
+    public void get(Matrix other)
+    {
+        checkSize(other);
+
+        other.set(0, 0, m00); other.set(0, 1, m01);
+        other.set(0, 2, m02); other.set(0, 3, m03);
+        other.set(1, 0, m10); other.set(1, 1, m11);
+        other.set(1, 2, m12); other.set(1, 3, m13);
+        other.set(2, 0, m20); other.set(2, 1, m21);
+        other.set(2, 2, m22); other.set(2, 3, m23);
+        other.set(3, 0, m30); other.set(3, 1, m31);
+        other.set(3, 2, m32); other.set(3, 3, m33);
+    }
+
+    /**
+     * Creates new generic matrix with values of this matrix.
+     * @return the new matrix
+     */
+    public Matrix toMatrix()
+    {
+        Matrix matrix = new Matrix(4);
+
+        get(matrix);
+
+        return matrix;
+    }
+
+    /**
+     * Loads this matrix with identity values.
+     * @return this matrix
+     */
+    public Matrix4f loadIdentity()
+    {
+        m00 = 1.0f; m01 = 0.0f; m02 = 0.0f; m03 = 0.0f;
+        m10 = 0.0f; m11 = 1.0f; m12 = 0.0f; m13 = 0.0f;
+        m20 = 0.0f; m21 = 0.0f; m22 = 1.0f; m23 = 0.0f;
+        m30 = 0.0f; m31 = 0.0f; m32 = 0.0f; m33 = 1.0f;
+
+        return this;
+    }
+
+    /**
+     * Transforms this matrix by other matrix.
+     * @param transform the transformation matrix
+     * @return this matrix
+     */
+    public Matrix4f transform(Matrix4f transform)
+    {
+        multiply(this, transform, this);
+
+        return this;
+    }
+
+    /**
+     * Transposes this matrix.
+     * @return this matrix
+     */
+    public Matrix4f transpose()
+    {
+        transpose(this, this);
+
+        return this;
+    }
+
+    /**
+     * Computes inverse of this matrix.
+     * @return this matrix
+     */
+    public Matrix4f inverse()
+    {
+        inverse(this, this);
+
+        return this;
+    }
+
+    /**
+     * Calculates determinant of this matrix.
+     * @return the determinant
+     */
+    public float determinant()
+    {
+        float s0 = m00 * m11 - m10 * m01;
+        float s1 = m00 * m12 - m10 * m02;
+        float s2 = m00 * m13 - m10 * m03;
+        float s3 = m01 * m12 - m11 * m02;
+        float s4 = m01 * m13 - m11 * m03;
+        float s5 = m02 * m13 - m12 * m03;
+
+        float c5 = m22 * m33 - m32 * m23;
+        float c4 = m21 * m33 - m31 * m23;
+        float c3 = m21 * m32 - m31 * m22;
+        float c2 = m20 * m33 - m30 * m23;
+        float c1 = m20 * m32 - m30 * m22;
+        float c0 = m20 * m31 - m30 * m21;
+
+        return s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+
+        for (int row = 0; row < 4; row++)
+        {
+            if (row > 0) builder.append('\n');
+
+            for (int column = 0; column < 4; column++)
+            {
+                if (column > 0) builder.append('\t');
+
+                builder.append(get(row, column));
+            }
+        }
+
+        return builder.toString();
+    }
+
+
+    /**
+     * Multiplies two matrices and stores result in other matrix.
+     * Result matrix can be the same object as any of the source matrices.
+     * @param first the first matrix to multiply
+     * @param second the second matrix to multiply
+     * @param result the matrix where multiplication result is to be stored
+     */
+    public static void multiply(Matrix4f first, Matrix4f second,
+            Matrix4f result)
+    {
+        final Matrix4f a = first, b = second;
+
+        float r00 = a.m00 * b.m00 + a.m01 * b.m10 + a.m02 * b.m20 + a.m03 * b.m30;
+        float r01 = a.m00 * b.m01 + a.m01 * b.m11 + a.m02 * b.m21 + a.m03 * b.m31;
+        float r02 = a.m00 * b.m02 + a.m01 * b.m12 + a.m02 * b.m22 + a.m03 * b.m32;
+        float r03 = a.m00 * b.m03 + a.m01 * b.m13 + a.m02 * b.m23 + a.m03 * b.m33;
+
+        float r10 = a.m10 * b.m00 + a.m11 * b.m10 + a.m12 * b.m20 + a.m13 * b.m30;
+        float r11 = a.m10 * b.m01 + a.m11 * b.m11 + a.m12 * b.m21 + a.m13 * b.m31;
+        float r12 = a.m10 * b.m02 + a.m11 * b.m12 + a.m12 * b.m22 + a.m13 * b.m32;
+        float r13 = a.m10 * b.m03 + a.m11 * b.m13 + a.m12 * b.m23 + a.m13 * b.m33;
+
+        float r20 = a.m20 * b.m00 + a.m21 * b.m10 + a.m22 * b.m20 + a.m23 * b.m30;
+        float r21 = a.m20 * b.m01 + a.m21 * b.m11 + a.m22 * b.m21 + a.m23 * b.m31;
+        float r22 = a.m20 * b.m02 + a.m21 * b.m12 + a.m22 * b.m22 + a.m23 * b.m32;
+        float r23 = a.m20 * b.m03 + a.m21 * b.m13 + a.m22 * b.m23 + a.m23 * b.m33;
+
+        float r30 = a.m30 * b.m00 + a.m31 * b.m10 + a.m32 * b.m20 + a.m33 * b.m30;
+        float r31 = a.m30 * b.m01 + a.m31 * b.m11 + a.m32 * b.m21 + a.m33 * b.m31;
+        float r32 = a.m30 * b.m02 + a.m31 * b.m12 + a.m32 * b.m22 + a.m33 * b.m32;
+        float r33 = a.m30 * b.m03 + a.m31 * b.m13 + a.m32 * b.m23 + a.m33 * b.m33;
+
+        result.m00 = r00; result.m01 = r01; result.m02 = r02; result.m03 = r03;
+        result.m10 = r10; result.m11 = r11; result.m12 = r12; result.m13 = r13;
+        result.m20 = r20; result.m21 = r21; result.m22 = r22; result.m23 = r23;
+        result.m30 = r30; result.m31 = r31; result.m32 = r32; result.m33 = r33;
+    }
+
+    /**
+     * Multiplies vector by a matrix.
+     * Result array can be the same object as source array.
+     * @param matrix the matrix to multiply
+     * @param vector the vector to multiply
+     * @param result the result of multiplication
+     */
+    public static void multiply(Matrix4f matrix, float[] vector, float[] result)
+    {
+        final Matrix4f m = matrix;
+
+        float x = vector[0], y = vector[1], z = vector[2], w = vector[3];
+
+        result[0] = m.m00 * x + m.m01 * y + m.m02 * z + m.m03 * w;
+        result[1] = m.m10 * x + m.m11 * y + m.m12 * z + m.m13 * w;
+        result[2] = m.m20 * x + m.m21 * y + m.m22 * z + m.m23 * w;
+        result[3] = m.m30 * x + m.m31 * y + m.m32 * z + m.m33 * w;
+    }
+
+    /**
+     * Computes transpose of given matrix and stores it in other matrix.
+     * Destination matrix can be the same object as source matrix.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    public static void transpose(Matrix4f src, Matrix4f dest)
+    {
+        float t;
+
+        dest.m00 = src.m00; dest.m11 = src.m11;
+        dest.m22 = src.m22; dest.m33 = src.m33;
+
+        t = src.m01; dest.m01 = src.m10; dest.m10 = t;
+        t = src.m02; dest.m02 = src.m20; dest.m20 = t;
+        t = src.m03; dest.m03 = src.m30; dest.m30 = t;
+        t = src.m12; dest.m12 = src.m21; dest.m21 = t;
+        t = src.m13; dest.m13 = src.m31; dest.m31 = t;
+        t = src.m23; dest.m23 = src.m32; dest.m32 = t;
+    }
+
+    /**
+     * Computes inverse of given matrix and stores it in other matrix.
+     * Destination matrix can be the same object as source matrix.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    public static void inverse(Matrix4f src, Matrix4f dest)
+    {
+        final Matrix4f m = src;
+
+        float s0 = m.m00 * m.m11 - m.m10 * m.m01;
+        float s1 = m.m00 * m.m12 - m.m10 * m.m02;
+        float s2 = m.m00 * m.m13 - m.m10 * m.m03;
+        float s3 = m.m01 * m.m12 - m.m11 * m.m02;
+        float s4 = m.m01 * m.m13 - m.m11 * m.m03;
+        float s5 = m.m02 * m.m13 - m.m12 * m.m03;
+
+        float c5 = m.m22 * m.m33 - m.m32 * m.m23;
+        float c4 = m.m21 * m.m33 - m.m31 * m.m23;
+        float c3 = m.m21 * m.m32 - m.m31 * m.m22;
+        float c2 = m.m20 * m.m33 - m.m30 * m.m23;
+        float c1 = m.m20 * m.m32 - m.m30 * m.m22;
+        float c0 = m.m20 * m.m31 - m.m30 * m.m21;
+
+        float det = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+
+        if (det == 0.0f)
+            throw new IllegalArgumentException(
+                    "Matrix cannot be inverted: determinant is 0");
+
+        float inv = 1.0f / det;
+
+        float r00 = ( m.m11 * c5 - m.m12 * c4 + m.m13 * c3) * inv;
+        float r01 = (-m.m01 * c5 + m.m02 * c4 - m.m03 * c3) * inv;
+        float r02 = ( m.m31 * s5 - m.m32 * s4 + m.m33 * s3) * inv;
+        float r03 = (-m.m21 * s5 + m.m22 * s4 - m.m23 * s3) * inv;
+
+        float r10 = (-m.m10 * c5 + m.m12 * c2 - m.m13 * c1) * inv;
+        float r11 = ( m.m00 * c5 - m.m02 * c2 + m.m03 * c1) * inv;
+        float r12 = (-m.m30 * s5 + m.m32 * s2 - m.m33 * s1) * inv;
+        float r13 = ( m.m20 * s5 - m.m22 * s2 + m.m23 * s1) * inv;
+
+        float r20 = ( m.m10 * c4 - m.m11 * c2 + m.m13 * c0) * inv;
+        float r21 = (-m.m00 * c4 + m.m01 * c2 - m.m03 * c0) * inv;
+        float r22 = ( m.m30 * s4 - m.m31 * s2 + m.m33 * s0) * inv;
+        float r23 = (-m.m20 * s4 + m.m21 * s2 - m.m23 * s0) * inv;
+
+        float r30 = (-m.m10 * c3 + m.m11 * c1 - m.m12 * c0) * inv;
+        float r31 = ( m.m00 * c3 - m.m01 * c1 + m.m02 * c0) * inv;
+        float r32 = (-m.m30 * s3 + m.m31 * s1 - m.m32 * s0) * inv;
+        float r33 = ( m.m20 * s3 - m.m21 * s1 + m.m22 * s0) * inv;
+
+        dest.m00 = r00; dest.m01 = r01; dest.m02 = r02; dest.m03 = r03;
+        dest.m10 = r10; dest.m11 = r11; dest.m12 = r12; dest.m13 = r13;
+        dest.m20 = r20; dest.m21 = r21; dest.m22 = r22; dest.m23 = r23;
+        dest.m30 = r30; dest.m31 = r31; dest.m32 = r32; dest.m33 = r33;
+    }
+
+    /**
+     * Checks if row and column are inside matrix. Throws
+     * {@code IndexOutOfBoundsException} otherwise.
+     * @param row the row index
+     * @param column the column index
+     */
+    private static void checkIndex(int row, int column)
+    {
+        if (row < 0 || row >= 4 || column < 0 || column >= 4)
+            throw new IndexOutOfBoundsException(
+                    "Invalid index: " + row + ", " + column);
+    }
+
+    /**
+     * Checks if generic matrix is 4x4. Throws
+     * {@code IllegalArgumentException} otherwise.
+     * @param matrix the matrix to check
+     */
+    private static void checkSize(Matrix matrix)
+    {
+        if (matrix.getRows() != 4 || matrix.getColumns() != 4)
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: 4x4 matrix required");
+    }
+}
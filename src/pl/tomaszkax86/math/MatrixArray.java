@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Class implementing array of 4x4 matrices.
+ *
+ * All matrices are packed one after another in a single {@code float}
+ * array, each in column-major order, so the whole array can be stored
+ * in a buffer with one bulk copy. Bulk operations on large arrays
+ * are split between threads of common {@code ForkJoinPool}.
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class MatrixArray
+{
+    // the number of values of one matrix
+    static final int SIZE = 16;
+
+    // the number of matrices processed by one thread
+    private static final int PARALLEL_GRAIN = 4096;
+
+    // the number of matrices
+    private final int count;
+
+    // matrix values, matrix i starts at index 16 * i
+    final float[] values;
+
+
+    /**
+     * Creates new array of matrices with all values equal to zero.
+     * @param count the number of matrices
+     */
+    public MatrixArray(int count)
+    {
+        this.count = count;
+        this.values = new float[count * SIZE];
+    }
+
+    /**
+     * Returns the number of matrices.
+     * @return the number of matrices
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Returns the value of given matrix under given row and column.
+     * @param index the matrix index
+     * @param row the row index
+     * @param column the column index
+     * @return the value
+     */
+    public float get(int index, int row, int column)
+    {
+        return values[index * SIZE + column * 4 + row];
+    }
+
+    /**
+     * Changes the value of given matrix under given row and column.
+     * @param index the matrix index
+     * @param row the row index
+     * @param column the column index
+     * @param value the new value
+     */
+    public void set(int index, int row, int column, float value)
+    {
+        values[index * SIZE + column * 4 + row] = value;
+    }
+
+    /**
+     * Copies values of given matrix to 4x4 matrix.
+     * @param index the matrix index
+     * @param matrix the matrix to copy values to
+     */
+    public void get(int index, Matrix matrix)
+    {
+        checkSize(matrix);
+
+        for (int column = 0, i = index * SIZE; column < 4; column++)
+        {
+            for (int row = 0; row < 4; row++)
+            {
+                matrix.set(row, column, values[i++]);
+            }
+        }
+    }
+
+    /**
+     * Copies values of 4x4 matrix to given matrix.
+     * @param index the matrix index
+     * @param matrix the matrix to copy values from
+     */
+    public void set(int index, Matrix matrix)
+    {
+        checkSize(matrix);
+
+        for (int column = 0, i = index * SIZE; column < 4; column++)
+        {
+            for (int row = 0; row < 4; row++)
+            {
+                values[i++] = matrix.get(row, column);
+            }
+        }
+    }
+
+    /**
+     * Loads given matrix with identity values.
+     * @param index the matrix index
+     */
+    public void loadIdentity(int index)
+    {
+        loadIdentity(values, index * SIZE);
+    }
+
+    /**
+     * Loads all matrices with identity values.
+     */
+    public void loadIdentity()
+    {
+        for (int i = 0; i < count; i++)
+        {
+            loadIdentity(values, i * SIZE);
+        }
+    }
+
+    /**
+     * Stores all matrices to {@code FloatBuffer} object.
+     * @param buffer the {@code FloatBuffer} to store matrices to
+     */
+    public void store(FloatBuffer buffer)
+    {
+        // casts keep compatibility with Java 8 Buffer methods
+        ((Buffer) buffer).clear();
+        buffer.put(values, 0, count * SIZE);
+        ((Buffer) buffer).flip();
+    }
+
+    /**
+     * Stores all matrices to {@code ByteBuffer} object.
+     * Values are written in byte order of the buffer.
+     * @param buffer the {@code ByteBuffer} to store matrices to
+     */
+    public void store(ByteBuffer buffer)
+    {
+        ((Buffer) buffer).clear();
+        buffer.asFloatBuffer().put(values, 0, count * SIZE);
+        ((Buffer) buffer).position(count * SIZE * Float.BYTES);
+        ((Buffer) buffer).flip();
+    }
+
+    /**
+     * Appends range of matrices to {@code FloatBuffer} object at its current
+     * position and advances the position.
+     * @param buffer the {@code FloatBuffer} to append matrices to
+     * @param first the index of first matrix
+     * @param count the number of matrices
+     */
+    public void append(FloatBuffer buffer, int first, int count)
+    {
+        checkRange(first, count);
+
+        buffer.put(values, first * SIZE, count * SIZE);
+    }
+
+    /**
+     * Appends range of matrices to {@code ByteBuffer} object at its current
+     * position and advances the position. Values are written in byte order
+     * of the buffer.
+     * @param buffer the {@code ByteBuffer} to append matrices to
+     * @param first the index of first matrix
+     * @param count the number of matrices
+     */
+    public void append(ByteBuffer buffer, int first, int count)
+    {
+        checkRange(first, count);
+
+        int position = buffer.position();
+
+        buffer.asFloatBuffer().put(values, first * SIZE, count * SIZE);
+        ((Buffer) buffer).position(position + count * SIZE * Float.BYTES);
+    }
+
+
+    /**
+     * Multiplies matrices pairwise, so that result matrix {@code i} is
+     * the product of matrices {@code i} of first and second array.
+     * Result array can be the same object as any of the source arrays.
+     * @param first the first array of matrices
+     * @param second the second array of matrices
+     * @param result the array where multiplication results are to be stored
+     */
+    public static void multiply(MatrixArray first, MatrixArray second,
+            MatrixArray result)
+    {
+        if (first.count != second.count || first.count != result.count)
+            throw new IllegalArgumentException("Incompatible matrix arrays");
+
+        final float[] a = first.values, b = second.values, c = result.values;
+
+        Parallel.forRange(0, first.count, PARALLEL_GRAIN, (from, to) ->
+        {
+            for (int i = from * SIZE, end = to * SIZE; i < end; i += SIZE)
+                multiply(a, i, b, i, c, i);
+        });
+    }
+
+    /**
+     * Computes world matrices from local matrices and parent indices.
+     * World matrix {@code i} is the product of world matrix of its parent
+     * and local matrix {@code i}, or local matrix {@code i} if parent
+     * index is negative. Every parent must precede its children,
+     * so matrices are processed in order in calling thread.
+     * World array can be the same object as local array.
+     * @param local the array of local matrices
+     * @param parents the parent indices, negative for root matrices
+     * @param world the array where world matrices are to be stored
+     */
+    public static void multiplyByParentIndex(MatrixArray local, int[] parents,
+            MatrixArray world)
+    {
+        if (local.count != world.count || parents.length < local.count)
+            throw new IllegalArgumentException("Incompatible matrix arrays");
+
+        final float[] l = local.values, w = world.values;
+
+        for (int i = 0; i < local.count; i++)
+        {
+            int parent = parents[i];
+            int offset = i * SIZE;
+
+            if (parent >= i)
+                throw new IllegalArgumentException(
+                        "Parent " + parent + " does not precede matrix " + i);
+
+            if (parent < 0)
+                System.arraycopy(l, offset, w, offset, SIZE);
+            else
+                multiply(w, parent * SIZE, l, offset, w, offset);
+        }
+    }
+
+    /**
+     * Computes inverses of affine matrices.
+     * Last row of every source matrix is assumed to be {@code 0 0 0 1}.
+     * Destination array can be the same object as source array.
+     * @param src the source array of matrices
+     * @param dest the destination array of matrices
+     * @see Matrix#inverseAffine(Matrix, Matrix)
+     */
+    public static void inverseAffine(MatrixArray src, MatrixArray dest)
+    {
+        if (src.count != dest.count)
+            throw new IllegalArgumentException("Incompatible matrix arrays");
+
+        final float[] s = src.values, d = dest.values;
+
+        Parallel.forRange(0, src.count, PARALLEL_GRAIN, (from, to) ->
+        {
+            for (int i = from * SIZE, end = to * SIZE; i < end; i += SIZE)
+                inverseAffine(s, i, d, i);
+        });
+    }
+
+    /**
+     * Multiplies two column-major 4x4 matrices stored in arrays.
+     * Result can overlap with any of the source matrices.
+     * @param a the first matrix values
+     * @param aOffset the index of the first matrix in its array
+     * @param b the second matrix values
+     * @param bOffset the index of the second matrix in its array
+     * @param c the result values
+     * @param cOffset the index of the result in its array
+     */
+    static void multiply(float[] a, int aOffset, float[] b, int bOffset,
+            float[] c, int cOffset)
+    {
+        float a00 = a[aOffset],      a10 = a[aOffset + 1],  a20 = a[aOffset + 2],  a30 = a[aOffset + 3];
+        float a01 = a[aOffset + 4],  a11 = a[aOffset + 5],  a21 = a[aOffset + 6],  a31 = a[aOffset + 7];
+        float a02 = a[aOffset + 8],  a12 = a[aOffset + 9],  a22 = a[aOffset + 10], a32 = a[aOffset + 11];
+        float a03 = a[aOffset + 12], a13 = a[aOffset + 13], a23 = a[aOffset + 14], a33 = a[aOffset + 15];
+
+        // each column of result depends only on the same column of b
+        for (int column = 0; column < 4; column++)
+        {
+            int j = bOffset + column * 4;
+            float b0 = b[j], b1 = b[j + 1], b2 = b[j + 2], b3 = b[j + 3];
+            int k = cOffset + column * 4;
+
+            c[k] = a00 * b0 + a01 * b1 + a02 * b2 + a03 * b3;
+            c[k + 1] = a10 * b0 + a11 * b1 + a12 * b2 + a13 * b3;
+            c[k + 2] = a20 * b0 + a21 * b1 + a22 * b2 + a23 * b3;
+            c[k + 3] = a30 * b0 + a31 * b1 + a32 * b2 + a33 * b3;
+        }
+    }
+
+    /**
+     * Computes inverse of column-major affine 4x4 matrix stored in array.
+     * Destination can be the same as source.
+     * @param m the source values
+     * @param src the index of the source matrix
+     * @param d the destination values
+     * @param dest the index of the destination matrix
+     */
+    static void inverseAffine(float[] m, int src, float[] d, int dest)
+    {
+        float m00 = m[src],     m10 = m[src + 1],  m20 = m[src + 2];
+        float m01 = m[src + 4], m11 = m[src + 5],  m21 = m[src + 6];
+        float m02 = m[src + 8], m12 = m[src + 9],  m22 = m[src + 10];
+        float tx = m[src + 12], ty = m[src + 13], tz = m[src + 14];
+
+        float c00 = m11 * m22 - m12 * m21;
+        float c01 = m12 * m20 - m10 * m22;
+        float c02 = m10 * m21 - m11 * m20;
+
+        float det = m00 * c00 + m01 * c01 + m02 * c02;
+
+        if (det == 0.0f)
+            throw new IllegalArgumentException(
+                    "Matrix cannot be inverted: determinant is 0");
+
+        float inv = 1.0f / det;
+
+        float r00 = c00 * inv;
+        float r01 = (m02 * m21 - m01 * m22) * inv;
+        float r02 = (m01 * m12 - m02 * m11) * inv;
+        float r10 = c01 * inv;
+        float r11 = (m00 * m22 - m02 * m20) * inv;
+        float r12 = (m02 * m10 - m00 * m12) * inv;
+        float r20 = c02 * inv;
+        float r21 = (m01 * m20 - m00 * m21) * inv;
+        float r22 = (m00 * m11 - m01 * m10) * inv;
+
+        d[dest] = r00;     d[dest + 1] = r10;  d[dest + 2] = r20;  d[dest + 3] = 0.0f;
+        d[dest + 4] = r01; d[dest + 5] = r11;  d[dest + 6] = r21;  d[dest + 7] = 0.0f;
+        d[dest + 8] = r02; d[dest + 9] = r12;  d[dest + 10] = r22; d[dest + 11] = 0.0f;
+
+        d[dest + 12] = -(r00 * tx + r01 * ty + r02 * tz);
+        d[dest + 13] = -(r10 * tx + r11 * ty + r12 * tz);
+        d[dest + 14] = -(r20 * tx + r21 * ty + r22 * tz);
+        d[dest + 15] = 1.0f;
+    }
+
+    /**
+     * Loads column-major 4x4 matrix stored in array with identity values.
+     * @param m the matrix values
+     * @param offset the index of the matrix
+     */
+    static void loadIdentity(float[] m, int offset)
+    {
+        for (int i = 0; i < SIZE; i++)
+            m[offset + i] = (i % 5 == 0) ? 1.0f : 0.0f;
+    }
+
+    /**
+     * Checks if range of matrices is inside this array. Throws
+     * {@code IndexOutOfBoundsException} otherwise.
+     * @param first the index of first matrix
+     * @param count the number of matrices
+     */
+    private void checkRange(int first, int count)
+    {
+        if (first < 0 || count < 0 || first + count > this.count)
+            throw new IndexOutOfBoundsException("Invalid matrix range");
+    }
+
+    /**
+     * Checks if generic matrix is 4x4. Throws
+     * {@code IllegalArgumentException} otherwise.
+     * @param matrix the matrix to check
+     */
+    private static void checkSize(Matrix matrix)
+    {
+        if (matrix.getRows() != 4 || matrix.getColumns() != 4)
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: 4x4 matrix required");
+    }
+}
@@ -0,0 +1,1998 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+import java.io.Serializable;
+import java.nio.Buffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Class implementing double-precision matrix storage and operations.
+ *
+ * This is a counterpart of {@link Matrix} for computations which need more
+ * precision than {@code float} provides, for example transformations of
+ * objects far from the origin. Methods converting to {@link Matrix} allow
+ * composing transformations in double precision and emitting the result
+ * (optionally relative to the camera position) in single precision.
+ *
+ * Values are kept in a single contiguous array, either in row-major
+ * or column-major order (see {@link Matrix.Order}). Row-major order is the default.
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class MatrixD implements Serializable
+{
+    // matrix dimensions and content
+    private final int rows, columns;
+    private final Matrix.Order order;
+    private double[] values;
+
+    // distance between consecutive rows and columns in values array
+    private final int rowStride, columnStride;
+
+
+    /**
+     * Creates new square matrix.
+     * @param size the number of rows and columns
+     */
+    public MatrixD(int size)
+    {
+        this(size, size);
+    }
+
+    /**
+     * Creates new matrix.
+     * @param rows the number of rows
+     * @param columns the number of columns
+     */
+    public MatrixD(int rows, int columns)
+    {
+        this(rows, columns, Matrix.Order.ROW_MAJOR);
+    }
+
+    /**
+     * Creates new matrix with given storage order.
+     * @param rows the number of rows
+     * @param columns the number of columns
+     * @param order the storage order
+     */
+    public MatrixD(int rows, int columns, Matrix.Order order)
+    {
+        if (order == null) throw new NullPointerException();
+
+        this.rows = rows;
+        this.columns = columns;
+        this.order = order;
+        this.values = new double[rows * columns];
+
+        if (order == Matrix.Order.ROW_MAJOR)
+        {
+            this.rowStride = columns;
+            this.columnStride = 1;
+        }
+        else
+        {
+            this.rowStride = 1;
+            this.columnStride = rows;
+        }
+    }
+
+    /**
+     * Creates new matrix as a copy of another matrix.
+     * Storage order of the other matrix is preserved.
+     * @param other the matrix to copy
+     */
+    public MatrixD(MatrixD other)
+    {
+        this(other.rows, other.columns, other.order);
+
+        System.arraycopy(other.values, 0, this.values, 0, values.length);
+    }
+
+    /**
+     * Returns the number of rows.
+     * @return the number of rows
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns.
+     * @return the number of columns
+     */
+    public int getColumns()
+    {
+        return columns;
+    }
+
+    /**
+     * Returns the storage order of this matrix.
+     * @return the storage order
+     */
+    public Matrix.Order getOrder()
+    {
+        return order;
+    }
+
+    /**
+     * Returns the value under given row and column.
+     * @param row the row index
+     * @param column the column index
+     * @return the value
+     */
+    public double get(int row, int column)
+    {
+        return values[index(row, column)];
+    }
+
+    /**
+     * Changes the value under given row and column
+     * @param row the row index
+     * @param column the column index
+     * @param value the new value
+     */
+    public void set(int row, int column, double value)
+    {
+        values[index(row, column)] = value;
+    }
+
+    /**
+     * Returns content of row.
+     * @param row the row index
+     * @param values the array for returned values
+     */
+    public void getRow(int row, double[] values)
+    {
+        if (order == Matrix.Order.ROW_MAJOR)
+        {
+            System.arraycopy(this.values, row * rowStride, values, 0, columns);
+            return;
+        }
+
+        for (int i = 0, index = row; i < columns; i++, index += columnStride)
+        {
+            values[i] = this.values[index];
+        }
+    }
+
+    /**
+     * Changes content of row.
+     * @param row the row index
+     * @param values the array with new values
+     */
+    public void setRow(int row, double[] values)
+    {
+        if (order == Matrix.Order.ROW_MAJOR)
+        {
+            System.arraycopy(values, 0, this.values, row * rowStride, columns);
+            return;
+        }
+
+        for (int i = 0, index = row; i < columns; i++, index += columnStride)
+        {
+            this.values[index] = values[i];
+        }
+    }
+
+    /**
+     * Returns content of column.
+     * @param column the column index
+     * @param values the array for returned values
+     */
+    public void getColumn(int column, double[] values)
+    {
+        if (order == Matrix.Order.COLUMN_MAJOR)
+        {
+            System.arraycopy(this.values, column * columnStride, values, 0, rows);
+            return;
+        }
+
+        for (int i = 0, index = column; i < rows; i++, index += rowStride)
+        {
+            values[i] = this.values[index];
+        }
+    }
+
+    /**
+     * Changes content of column.
+     * @param column the column index
+     * @param values the array with new values
+     */
+    public void setColumn(int column, double[] values)
+    {
+        if (order == Matrix.Order.COLUMN_MAJOR)
+        {
+            System.arraycopy(values, 0, this.values, column * columnStride, rows);
+            return;
+        }
+
+        for (int i = 0, index = column; i < rows; i++, index += rowStride)
+        {
+            this.values[index] = values[i];
+        }
+    }
+
+    /**
+     * Adds one row with another.
+     * The result of this operation can be summaries as:
+     * {@code row += other * multiplier}.
+     *
+     * @param row the row index
+     * @param other the other row index
+     * @param multiplier the multiplier
+     */
+    public void addRow(int row, int other, double multiplier)
+    {
+        int target = row * rowStride;
+        int source = other * rowStride;
+
+        for (int i = 0; i < columns; i++)
+        {
+            values[target] += multiplier * values[source];
+
+            target += columnStride;
+            source += columnStride;
+        }
+    }
+
+    /**
+     * Adds one column with another.
+     * The result of this operation can be summarized as:
+     * {@code column += other * multiplier}.
+     * @param column the column index
+     * @param other the other column index
+     * @param multiplier the multiplier
+     */
+    public void addColumn(int column, int other, double multiplier)
+    {
+        int target = column * columnStride;
+        int source = other * columnStride;
+
+        for (int i = 0; i < rows; i++)
+        {
+            values[target] += multiplier * values[source];
+
+            target += rowStride;
+            source += rowStride;
+        }
+    }
+
+    /**
+     * Multiplies every element in the row by value.
+     * @param row the row index
+     * @param multiplier the multiplier
+     */
+    public void scaleRow(int row, double multiplier)
+    {
+        int index = row * rowStride;
+
+        for (int i = 0; i < columns; i++, index += columnStride)
+        {
+            values[index] *= multiplier;
+        }
+    }
+
+    /**
+     * Multiplies every element in the column by value.
+     * @param column the column index
+     * @param multiplier the multiplier
+     */
+    public void scaleColumn(int column, double multiplier)
+    {
+        int index = column * columnStride;
+
+        for (int i = 0; i < rows; i++, index += rowStride)
+        {
+            values[index] *= multiplier;
+        }
+    }
+
+    /**
+     * Swaps content of two rows.
+     * @param row the row index
+     * @param other the other row index
+     */
+    public void swapRow(int row, int other)
+    {
+        if (row == other) return;
+
+        int first = row * rowStride;
+        int second = other * rowStride;
+
+        for (int i = 0; i < columns; i++)
+        {
+            double temp = values[first];
+            values[first] = values[second];
+            values[second] = temp;
+
+            first += columnStride;
+            second += columnStride;
+        }
+    }
+
+    /**
+     * Returns index of given row and column in values array.
+     * @param row the row index
+     * @param column the column index
+     * @return the index
+     */
+    private int index(int row, int column)
+    {
+        return row * rowStride + column * columnStride;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+
+        for (int row = 0; row < rows; row++)
+        {
+            if (row > 0) builder.append('\n');
+
+            for (int column = 0; column < columns; column++)
+            {
+                if (column > 0) builder.append('\t');
+
+                builder.append(get(row, column));
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Loads this matrix with identity values.
+     * @return this matrix
+     */
+    public MatrixD loadIdentity()
+    {
+        loadIdentity(this);
+
+        return this;
+    }
+
+    /**
+     * Transforms this matrix by other matrix.
+     * Transformation matrix must be square with size equal to
+     * the number of columns of this matrix.
+     * @param transform the transformation matrix
+     * @return this matrix
+     */
+    public MatrixD transform(MatrixD transform)
+    {
+        if (transform.rows != columns || transform.columns != columns)
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        if (transform == this) transform = new MatrixD(this);
+
+        final double[] t = transform.values;
+        final int tr = transform.rowStride, tc = transform.columnStride;
+
+        // every row of result depends only on the same row of this matrix
+        if (columns == 4)
+        {
+            double t00 = t[0],      t01 = t[tc],          t02 = t[2 * tc],          t03 = t[3 * tc];
+            double t10 = t[tr],     t11 = t[tr + tc],     t12 = t[tr + 2 * tc],     t13 = t[tr + 3 * tc];
+            double t20 = t[2 * tr], t21 = t[2 * tr + tc], t22 = t[2 * tr + 2 * tc], t23 = t[2 * tr + 3 * tc];
+            double t30 = t[3 * tr], t31 = t[3 * tr + tc], t32 = t[3 * tr + 2 * tc], t33 = t[3 * tr + 3 * tc];
+
+            final int c = columnStride;
+
+            for (int row = 0, i = 0; row < rows; row++, i += rowStride)
+            {
+                double a0 = values[i], a1 = values[i + c];
+                double a2 = values[i + 2 * c], a3 = values[i + 3 * c];
+
+                values[i] = a0 * t00 + a1 * t10 + a2 * t20 + a3 * t30;
+                values[i + c] = a0 * t01 + a1 * t11 + a2 * t21 + a3 * t31;
+                values[i + 2 * c] = a0 * t02 + a1 * t12 + a2 * t22 + a3 * t32;
+                values[i + 3 * c] = a0 * t03 + a1 * t13 + a2 * t23 + a3 * t33;
+            }
+
+            return this;
+        }
+
+        double[] temp = new double[columns];
+
+        for (int row = 0; row < rows; row++)
+        {
+            getRow(row, temp);
+
+            for (int column = 0; column < columns; column++)
+            {
+                double sum = 0.0;
+                int j = column * tc;
+
+                for (int k = 0; k < columns; k++, j += tr)
+                    sum += temp[k] * t[j];
+
+                values[index(row, column)] = sum;
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Transforms this matrix by translation matrix.
+     * Only the last column is changed.
+     * @param dx the translation of X axis
+     * @param dy the translation of Y axis
+     * @param dz the translation of Z axis
+     * @return this matrix
+     */
+    public MatrixD translate(double dx, double dy, double dz)
+    {
+        checkColumns(this, 4);
+
+        final int c = columnStride;
+
+        for (int row = 0, i = 0; row < rows; row++, i += rowStride)
+        {
+            values[i + 3 * c] += values[i] * dx
+                    + values[i + c] * dy + values[i + 2 * c] * dz;
+        }
+
+        return this;
+    }
+
+    /**
+     * Transforms this matrix by scale matrix.
+     * @param sx the scale on X axis
+     * @param sy the scale on Y axis
+     * @param sz the scale on Z axis
+     * @return this matrix
+     */
+    public MatrixD scale(double sx, double sy, double sz)
+    {
+        checkColumns(this, 4);
+
+        scaleColumn(0, sx);
+        scaleColumn(1, sy);
+        scaleColumn(2, sz);
+
+        return this;
+    }
+
+    /**
+     * Transforms this matrix by rotation matrix around X axis.
+     * @param angle the rotation angle in degrees
+     * @return this matrix
+     */
+    public MatrixD rotateX(double angle)
+    {
+        checkColumns(this, 4);
+
+        rotateColumns(1, 2, angle);
+
+        return this;
+    }
+
+    /**
+     * Transforms this matrix by rotation matrix around Y axis.
+     * @param angle the rotation angle in degrees
+     * @return this matrix
+     */
+    public MatrixD rotateY(double angle)
+    {
+        checkColumns(this, 4);
+
+        rotateColumns(2, 0, angle);
+
+        return this;
+    }
+
+    /**
+     * Transforms this matrix by rotation matrix around Z axis.
+     * @param angle the rotation angle in degrees
+     * @return this matrix
+     */
+    public MatrixD rotateZ(double angle)
+    {
+        checkColumns(this, 4);
+
+        rotateColumns(0, 1, angle);
+
+        return this;
+    }
+
+    /**
+     * Rotates two columns of this matrix in place.
+     * Only the given columns are changed.
+     * @param first the column rotated towards the second one
+     * @param second the other column
+     * @param angle the rotation angle in degrees
+     */
+    private void rotateColumns(int first, int second, double angle)
+    {
+        double radians = Math.toRadians(angle);
+        double cos = Math.cos(radians);
+        double sin = Math.sin(radians);
+
+        final int a = first * columnStride, b = second * columnStride;
+
+        for (int row = 0, i = 0; row < rows; row++, i += rowStride)
+        {
+            double va = values[i + a], vb = values[i + b];
+
+            values[i + a] = va * cos + vb * sin;
+            values[i + b] = vb * cos - va * sin;
+        }
+    }
+
+    /**
+     * Transforms this matrix by perspective projection matrix.
+     * @param fov the field of view in degrees
+     * @param aspect the aspect ratio (width / height)
+     * @param near the near plane
+     * @param far the far plane
+     * @return this matrix
+     */
+    public MatrixD perspective(double fov, double aspect, double near, double far)
+    {
+        checkColumns(this, 4);
+
+        double focal = (1.0 / Math.tan(0.5 * Math.toRadians(fov)));
+        double a = -(far + near) / (far - near);
+        double b = -2.0 * far * near / (far - near);
+
+        scaleColumn(0, focal / aspect);
+        scaleColumn(1, focal);
+
+        final int c = columnStride;
+
+        for (int row = 0, i = 0; row < rows; row++, i += rowStride)
+        {
+            double z = values[i + 2 * c];
+            double w = values[i + 3 * c];
+
+            values[i + 2 * c] = a * z - w;
+            values[i + 3 * c] = b * z;
+        }
+
+        return this;
+    }
+
+    /**
+     * Transforms this matrix by orthographic projection matrix.
+     * @param left the left plane (-X)
+     * @param right the right plane (+X)
+     * @param bottom the bottom plane (-Y)
+     * @param top the top plane (+Y)
+     * @param near the near plane
+     * @param far the far plane
+     * @return this matrix
+     */
+    public MatrixD ortho(double left, double right, double bottom, double top, double near, double far)
+    {
+        double sx = 2.0 / (right - left);
+        double sy = 2.0 / (top - bottom);
+        double sz = -2.0 / (far - near);
+
+        double tx = -(right + left) / (right - left);
+        double ty = -(top + bottom) / (top - bottom);
+        double tz = -(far + near) / (far - near);
+
+        translate(tx, ty, tz);
+        scale(sx, sy, sz);
+
+        return this;
+    }
+
+    /**
+     * Transforms this matrix by 2D orthographic projection matrix.
+     * @param left the left plane (-X)
+     * @param right the right plane (+X)
+     * @param bottom the bottom plane (-Y)
+     * @param top the top plane (+Y)
+     * @return this matrix
+     */
+    public MatrixD ortho2D(double left, double right, double bottom, double top)
+    {
+        return ortho(left, right, bottom, top, -1.0, 1.0);
+    }
+
+    /**
+     * Loads this matrix from {@code DoubleBuffer} object.
+     * @param buffer the {@code DoubleBuffer} to load matrix from
+     */
+    public void load(DoubleBuffer buffer)
+    {
+        load(this, buffer);
+    }
+
+    /**
+     * Stores this matrix in {@code DoubleBuffer} object.
+     * @param buffer the {@code DoubleBuffer} to store matrix to
+     */
+    public void store(DoubleBuffer buffer)
+    {
+        store(this, buffer);
+    }
+
+    /**
+     * Loads this matrix with translation matrix for given values.
+     * @param dx the X translation
+     * @param dy the Y translation
+     * @param dz the Z translation
+     */
+    public void loadTranslation(double dx, double dy, double dz)
+    {
+        loadTranslation(this, dx, dy, dz);
+    }
+
+    /**
+     * Loads this matrix with rotation around X axis.
+     * @param angle the angle in degrees
+     */
+    public void loadRotationX(double angle)
+    {
+        loadRotationX(this, angle);
+    }
+
+    /**
+     * Loads this matrix with rotation around Y axis.
+     * @param angle the angle in degrees
+     */
+    public void loadRotationY(double angle)
+    {
+        loadRotationY(this, angle);
+    }
+
+    /**
+     * Loads this matrix with rotation around Z axis.
+     * @param angle the angle in degrees
+     */
+    public void loadRotationZ(double angle)
+    {
+        loadRotationZ(this, angle);
+    }
+
+    /**
+     * Loads this matrix with scale values.
+     * @param sx the X scale
+     * @param sy the Y scale
+     * @param sz the Z scale
+     */
+    public void loadScale(double sx, double sy, double sz)
+    {
+        loadScale(this, sx, sy, sz);
+    }
+
+    /**
+     * Loads this matrix with perspective projection values.
+     * @param fov the field of view in degrees
+     * @param aspect the aspect ratio (width divided by height)
+     * @param near the near plane
+     * @param far the far plane
+     */
+    public void loadPerspective(double fov, double aspect, double near, double far)
+    {
+        loadPerspective(this, fov, aspect, near, far);
+    }
+
+    /**
+     * Loads this matrix with orthographic projection values.
+     * @param left the left plane
+     * @param right the right plane
+     * @param bottom the bottom plane
+     * @param top the top plane
+     * @param near the near plane
+     * @param far the far plane
+     */
+    public void loadOrtho(double left, double right,
+            double bottom, double top, double near, double far)
+    {
+        loadOrtho(this, left, right, bottom, top, near, far);
+    }
+
+    /**
+     * Loads this matrix with 2D orthographics projection values;
+     * @param left the left plane
+     * @param right the right plane
+     * @param bottom the bottom plane
+     * @param top the top plane
+     */
+    public void loadOrtho2D(double left, double right, double bottom, double top)
+    {
+        loadOrtho2D(this, left, right, bottom, top);
+    }
+
+    /**
+     * Loads this matrix with camera view specified as look at vectors.
+     * @param eyeX the eye X coordinate
+     * @param eyeY the eye Y coordinate
+     * @param eyeZ the eye Z coordinate
+     * @param centerX the look at X coordinate
+     * @param centerY the look at Y coordinate
+     * @param centerZ the look at Z coordinate
+     * @param upX the up X coordinate
+     * @param upY the up Y coordinate
+     * @param upZ the up Z coordinate
+     */
+    public void loadLookAt(double eyeX, double eyeY, double eyeZ,
+            double centerX, double centerY, double centerZ,
+            double upX, double upY, double upZ)
+    {
+        loadLookAt(this, eyeX, eyeY, eyeZ,
+                centerX, centerY, centerZ,
+                upX, upY, upZ);
+    }
+
+    /**
+     * Loads this matrix with camera view transformation.
+     * @param x the X camera coordinate
+     * @param y the Y camera coordinate
+     * @param z the Z camera coordinate
+     * @param pitch the angle of rotation around X axis in degrees
+     * @param yaw the angle of rotation around Y axis in degrees
+     * @param roll the angle of rotation around Z axis in degrees
+     */
+    public void loadCameraView(double x, double y, double z,
+            double pitch, double yaw, double roll)
+    {
+        loadCameraView(this, x, y, z, pitch, yaw, roll);
+    }
+
+    /**
+     * Computes inverse of this matrix.
+     * @return this matrix
+     */
+    public MatrixD inverse()
+    {
+        if (rows != columns)
+            throw new IllegalStateException("Cannot invert non-square matrix");
+
+        inverse(this, this);
+
+        return this;
+    }
+
+    /**
+     * Transposes this matrix.
+     * @return this matrix
+     */
+    public MatrixD transpose()
+    {
+        if (rows != columns)
+            throw new IllegalStateException(
+                    "Cannot transpose non-square matrix in place");
+
+        for (int row = 1; row < rows; row++)
+        {
+            for (int column = 0; column < row; column++)
+            {
+                int a = index(row, column);
+                int b = index(column, row);
+
+                double temp = values[a];
+                values[a] = values[b];
+                values[b] = temp;
+            }
+        }
+
+        return this;
+    }
+
+
+    /**
+     * Copies values from single-precision matrix to this matrix.
+     * @param other the matrix to copy values from
+     * @return this matrix
+     */
+    public MatrixD set(Matrix other)
+    {
+        if (other.getRows() != rows || other.getColumns() != columns)
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        for (int row = 0; row < rows; row++)
+        {
+            for (int column = 0; column < columns; column++)
+            {
+                values[index(row, column)] = other.get(row, column);
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Copies values of this matrix to single-precision matrix.
+     * Values are rounded to nearest {@code float}.
+     * @param other the matrix to copy values to
+     */
+    public void get(Matrix other)
+    {
+        if (other.getRows() != rows || other.getColumns() != columns)
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        for (int row = 0; row < rows; row++)
+        {
+            for (int column = 0; column < columns; column++)
+            {
+                other.set(row, column, (float) values[index(row, column)]);
+            }
+        }
+    }
+
+    /**
+     * Creates new single-precision matrix with values of this matrix.
+     * @return the new matrix
+     */
+    public Matrix toMatrix()
+    {
+        Matrix matrix = new Matrix(rows, columns, order);
+
+        get(matrix);
+
+        return matrix;
+    }
+
+    /**
+     * Stores this matrix in {@code FloatBuffer} object
+     * in column-major order. Values are rounded to nearest {@code float}.
+     * @param buffer the {@code FloatBuffer} to store matrix to
+     */
+    public void store(FloatBuffer buffer)
+    {
+        // cast keeps compatibility with Java 8 Buffer methods
+        ((Buffer) buffer).clear();
+
+        for (int column = 0; column < columns; column++)
+        {
+            int element = column * columnStride;
+
+            for (int row = 0; row < rows; row++)
+            {
+                buffer.put((float) values[element]);
+                element += rowStride;
+            }
+        }
+
+        ((Buffer) buffer).flip();
+    }
+
+
+    /**
+     * Loads matrix from {@code DoubleBuffer} object.
+     * @param matrix the matrix to be loaded with values
+     * @param buffer the {@code DoubleBuffer} to load matrix from
+     */
+    public static void load(MatrixD matrix, DoubleBuffer buffer)
+    {
+        int rows = matrix.getRows();
+        int columns = matrix.getColumns();
+        int index = 0;
+
+        for (int column = 0; column < columns; column++)
+        {
+            int element = column * matrix.columnStride;
+
+            for (int row = 0; row < rows; row++)
+            {
+                matrix.values[element] = buffer.get(index);
+                element += matrix.rowStride;
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Stores matrix to {@code DoubleBuffer} object.
+     * @param matrix the matrix with values to be stored
+     * @param buffer the {@code DoubleBuffer} to store matrix to
+     */
+    public static void store(MatrixD matrix, DoubleBuffer buffer)
+    {
+        int rows = matrix.getRows();
+        int columns = matrix.getColumns();
+
+        ((Buffer) buffer).clear();
+
+        // column-major storage matches buffer layout
+        if (matrix.order == Matrix.Order.COLUMN_MAJOR)
+        {
+            buffer.put(matrix.values);
+            ((Buffer) buffer).flip();
+            return;
+        }
+
+        for (int column = 0; column < columns; column++)
+        {
+            int element = column * matrix.columnStride;
+
+            for (int row = 0; row < rows; row++)
+            {
+                buffer.put(matrix.values[element]);
+                element += matrix.rowStride;
+            }
+        }
+
+        ((Buffer) buffer).flip();
+    }
+
+    /**
+     * Loads matrix with identity values.
+     * @param matrix the matrix to be loaded with values
+     */
+    public static void loadIdentity(MatrixD matrix)
+    {
+        int rows = matrix.getRows();
+        int columns = matrix.getColumns();
+
+        for (int row = 0; row < rows; row++)
+        {
+            for (int column = 0; column < columns; column++)
+            {
+                matrix.set(row, column, (row == column ? 1.0 : 0.0));
+            }
+        }
+    }
+
+    /**
+     * Loads matrix with translation values.
+     * @param matrix the matrix to load values with
+     * @param dx the translation on X axis
+     * @param dy the translation on Y axis
+     * @param dz the translation on Z axis
+     */
+    public static void loadTranslation(MatrixD matrix,
+            double dx, double dy, double dz)
+    {
+        loadIdentity(matrix);
+
+        matrix.set(0, 3, dx);
+        matrix.set(1, 3, dy);
+        matrix.set(2, 3, dz);
+    }
+
+    /**
+     * Loads matrix with scale values.
+     * @param matrix the matrix to be loaded with values
+     * @param sx the X scale
+     * @param sy the Y scale
+     * @param sz the Z scale
+     */
+    public static void loadScale(MatrixD matrix, double sx, double sy, double sz)
+    {
+        loadIdentity(matrix);
+
+        matrix.set(0, 0, sx);
+        matrix.set(1, 1, sy);
+        matrix.set(2, 2, sz);
+    }
+
+    /**
+     * Loads matrix with perspective projection values.
+     * @param matrix the matrix to be loaded with values
+     * @param fov the field of view in degrees
+     * @param aspect the aspect ratio (width divided by height)
+     * @param near the near plane
+     * @param far the far plane
+     */
+    public static void loadPerspective(MatrixD matrix,
+            double fov, double aspect, double near, double far)
+    {
+        loadIdentity(matrix);
+
+        double focal = (1.0 / Math.tan(0.5 * Math.toRadians(fov)));
+
+        matrix.set(0, 0, focal / aspect);
+        matrix.set(1, 1, focal);
+        matrix.set(2, 2, -(far + near) / (far - near));
+        matrix.set(2, 3, -2.0 * far * near / (far - near));
+        matrix.set(3, 2, -1.0);
+        matrix.set(3, 3, 0.0);
+    }
+
+    /**
+     * Loads matrix with orthographic projection values.
+     * @param matrix the matrix to be loaded with values
+     * @param left the left plane
+     * @param right the right plane
+     * @param bottom the bottom plane
+     * @param top the top plane
+     * @param near the near plane
+     * @param far the far plane
+     */
+    public static void loadOrtho(MatrixD matrix, double left, double right,
+            double bottom, double top, double near, double far)
+    {
+        loadIdentity(matrix);
+
+        matrix.set(0, 0, 2.0 / (right - left));
+        matrix.set(1, 1, 2.0 / (top - bottom));
+        matrix.set(2, 2, -2.0 / (far - near));
+
+        matrix.set(0, 3, -(right + left) / (right - left));
+        matrix.set(1, 3, -(top + bottom) / (top - bottom));
+        matrix.set(2, 3, -(far + near) / (far - near));
+    }
+
+    /**
+     * Loads matrix with 2D orthographics projection values.
+     * @param matrix the matrix to be loaded with values
+     * @param left the left plane
+     * @param right the right plane
+     * @param bottom the bottom plane
+     * @param top the top plane
+     */
+    public static void loadOrtho2D(MatrixD matrix, double left, double right,
+            double bottom, double top)
+    {
+        loadOrtho(matrix, left, right, bottom, top, -1.0, 1.0);
+    }
+
+    /**
+     * Loads matrix with camera view using glLookAt parameters.
+     * @param matrix the matrix to load with values
+     * @param eyeX the eye X coordinate
+     * @param eyeY the eye Y coordinate
+     * @param eyeZ the eye Z coordinate
+     * @param centerX the look at X coordinate
+     * @param centerY the look at Y coordinate
+     * @param centerZ the look at Z coordinate
+     * @param upX the up vector X coordinate
+     * @param upY the up vector Y coordinate
+     * @param upZ the up vector Z coordinate
+     */
+    public static void loadLookAt(MatrixD matrix,
+            double eyeX, double eyeY, double eyeZ,
+            double centerX, double centerY, double centerZ,
+            double upX, double upY, double upZ)
+    {
+        // calculate forward vector
+        // normalized vector from Eye position to At position
+        double forwardX = centerX - eyeX;
+        double forwardY = centerY - eyeY;
+        double forwardZ = centerZ - eyeZ;
+
+        double inv = 1.0 / length(forwardX, forwardY, forwardZ);
+
+        forwardX *= inv;
+        forwardY *= inv;
+        forwardZ *= inv;
+
+        // calculate right vector
+        // normalized cross product of Up and Forward vectors
+        double sideX = (upY * forwardZ - upZ * forwardY);
+        double sideY = (upZ * forwardX - upX * forwardZ);
+        double sideZ = (upX * forwardY - upY * forwardX);
+
+        inv = 1.0 / length(sideX, sideY, sideZ);
+
+        sideX *= inv;
+        sideY *= inv;
+        sideZ *= inv;
+
+        // recalculate up vector
+        upX = (forwardY * sideZ - forwardZ * sideY);
+        upY = (forwardZ * sideX - forwardX * sideZ);
+        upZ = (forwardX * sideY - forwardY * sideX);
+
+        // set matrix values, last column is translation by negated eye
+        checkSize(matrix, 4);
+
+        matrix.set4(sideX, upX, forwardX,
+                -dot(sideX, upX, forwardX, eyeX, eyeY, eyeZ),
+                sideY, upY, forwardY,
+                -dot(sideY, upY, forwardY, eyeX, eyeY, eyeZ),
+                sideZ, upZ, forwardZ,
+                -dot(sideZ, upZ, forwardZ, eyeX, eyeY, eyeZ),
+                0.0, 0.0, 0.0, 1.0);
+    }
+
+    private static double dot(double x1, double y1, double z1,
+            double x2, double y2, double z2)
+    {
+        return x1 * x2 + y1 * y2 + z1 * z2;
+    }
+
+    private static double length(double dx, double dy, double dz)
+    {
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Loads matrix with camera view transformation.
+     * @param matrix the matrix to be loaded with values
+     * @param x the X camera coordinate
+     * @param y the Y camera coordinate
+     * @param z the Z camera coordinate
+     * @param pitch the angle of rotation around X axis in degrees
+     * @param yaw the angle of rotation around Y axis in degrees
+     * @param roll the angle of rotation around Z axis in degrees
+     */
+    public static void loadCameraView(MatrixD matrix, double x, double y, double z,
+            double pitch, double yaw, double roll)
+    {
+        checkSize(matrix, 4);
+
+        double radians = Math.toRadians(pitch);
+        double cx = Math.cos(radians);
+        double sx = Math.sin(radians);
+
+        radians = Math.toRadians(yaw);
+        double cy = Math.cos(radians);
+        double sy = Math.sin(radians);
+
+        radians = Math.toRadians(roll);
+        double cz = Math.cos(radians);
+        double sz = Math.sin(radians);
+
+        // rotation around Z axis, then X axis
+        double a00 = cz, a01 = -sz * cx, a02 = sz * sx;
+        double a10 = sz, a11 = cz * cx,  a12 = -cz * sx;
+        double a20 = 0.0, a21 = sx,     a22 = cx;
+
+        // then Y axis
+        double r00 = a00 * cy - a02 * sy, r02 = a00 * sy + a02 * cy;
+        double r10 = a10 * cy - a12 * sy, r12 = a10 * sy + a12 * cy;
+        double r20 = a20 * cy - a22 * sy, r22 = a20 * sy + a22 * cy;
+
+        // last column is rotated negated camera position
+        matrix.set4(r00, a01, r02, -dot(r00, a01, r02, x, y, z),
+                r10, a11, r12, -dot(r10, a11, r12, x, y, z),
+                r20, a21, r22, -dot(r20, a21, r22, x, y, z),
+                0.0, 0.0, 0.0, 1.0);
+    }
+
+    /**
+     * Loads rotation matrix around X axis.
+     * @param matrix the matrix to be loaded with rotation values
+     * @param angle the rotation angle in degrees
+     */
+    public static void loadRotationX(MatrixD matrix, double angle)
+    {
+        double radians = Math.toRadians(angle);
+        double cos = Math.cos(radians);
+        double sin = Math.sin(radians);
+
+        loadIdentity(matrix);
+
+        matrix.set(1, 1, cos);
+        matrix.set(1, 2, -sin);
+        matrix.set(2, 1, sin);
+        matrix.set(2, 2, cos);
+    }
+
+    /**
+     * Loads rotation matrix around Y axis.
+     * @param matrix the matrix to be loaded with rotation values
+     * @param angle the rotation angle in degrees
+     */
+    public static void loadRotationY(MatrixD matrix, double angle)
+    {
+        double radians = Math.toRadians(angle);
+        double cos = Math.cos(radians);
+        double sin = Math.sin(radians);
+
+        loadIdentity(matrix);
+
+        matrix.set(0, 0, cos);
+        matrix.set(0, 2, sin);
+        matrix.set(2, 0, -sin);
+        matrix.set(2, 2, cos);
+    }
+
+    /**
+     * Loads rotation matrix around Z axis.
+     * @param matrix the matrix to be loaded with rotation values
+     * @param angle the rotation angle in degrees
+     */
+    public static void loadRotationZ(MatrixD matrix, double angle)
+    {
+        double radians = Math.toRadians(angle);
+        double cos = Math.cos(radians);
+        double sin = Math.sin(radians);
+
+        loadIdentity(matrix);
+
+        matrix.set(0, 0, cos);
+        matrix.set(0, 1, -sin);
+        matrix.set(1, 0, sin);
+        matrix.set(1, 1, cos);
+    }
+
+    /**
+     * Adds two matrices and stores result in third one.
+     * @param first the first matrix to add
+     * @param second the second matrix to add
+     * @param result the matrix for result
+     */
+    public static void add(MatrixD first, MatrixD second, MatrixD result)
+    {
+        checkCompatibility(first, second);
+        checkCompatibility(first, result);
+
+        // matrices with the same order can be added element by element
+        if (first.order == second.order && first.order == result.order)
+        {
+            for (int i = 0; i < result.values.length; i++)
+                result.values[i] = first.values[i] + second.values[i];
+
+            return;
+        }
+
+        int rows = first.getRows();
+        int columns = first.getColumns();
+
+        for (int row = 0; row < rows; row++)
+        {
+            for (int column = 0; column < columns; column++)
+            {
+                double x = first.get(row, column);
+                double y = second.get(row, column);
+
+                result.set(row, column, x + y);
+            }
+        }
+    }
+
+    /**
+     * Multiplies two matrices and stores result in other matrix.
+     * @param first the first matrix to multiply
+     * @param second the second matrix to multiply
+     * @param result the matrix where multiplication result is to be stored
+     */
+    public static void multiply(MatrixD first, MatrixD second, MatrixD result)
+    {
+        if(first.getRows() != result.getRows())
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        if(second.getColumns() != result.getColumns())
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        if(first.getColumns() != second.getRows())
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        int rows = first.getRows();
+        int columns = second.getColumns();
+        int depth = first.getColumns();
+
+        final double[] a = first.values;
+        final double[] b = second.values;
+        final double[] c = result.values;
+
+        final int aRow = first.rowStride, aColumn = first.columnStride;
+        final int bRow = second.rowStride, bColumn = second.columnStride;
+
+        for (int row = 0; row < rows; row++)
+        {
+            for (int column = 0; column < columns; column++)
+            {
+                double sum = 0.0;
+
+                int i = row * aRow;
+                int j = column * bColumn;
+
+                for (int k = 0; k < depth; k++, i += aColumn, j += bRow)
+                    sum += a[i] * b[j];
+
+                c[result.index(row, column)] = sum;
+            }
+        }
+    }
+
+    /**
+     * Multiplies vector by a matrix.
+     * @param matrix the matrix to multiply
+     * @param vector the vector to multiply
+     * @return the result of multiplication
+     */
+    public static VectorD multiply(MatrixD matrix, VectorD vector)
+    {
+        VectorD result = new VectorD(matrix.getRows());
+
+        multiply(matrix, vector, result);
+
+        return result;
+    }
+
+    /**
+     * Multiplies vector by a matrix.
+     * @param matrix the matrix to multiply
+     * @param vector the vector to multiply
+     * @param result the result of multiplication
+     */
+    public static void multiply(MatrixD matrix, VectorD vector, VectorD result)
+    {
+        multiply(matrix, vector.values, result.values);
+    }
+
+    /**
+     * Multiplies vector by a matrix.
+     * @param matrix the matrix to multiply
+     * @param vector the vector to multiply
+     * @param result the result of multiplication
+     */
+    public static void multiply(MatrixD matrix, double[] vector, double[] result)
+    {
+        int rows = matrix.getRows();
+        int columns = matrix.getColumns();
+
+        if (vector.length < columns)
+            throw new IllegalArgumentException("Source vector too short");
+
+        if (result.length < rows)
+            throw new IllegalArgumentException("Destination vector too short");
+
+        final double[] values = matrix.values;
+        final int rowStride = matrix.rowStride;
+        final int columnStride = matrix.columnStride;
+
+        for (int row = 0; row < rows; row++)
+        {
+            double sum = 0.0;
+            int index = row * rowStride;
+
+            for (int column = 0; column < columns; column++, index += columnStride)
+                sum += values[index] * vector[column];
+
+            result[row] = sum;
+        }
+    }
+
+    /**
+     * Multiplies two matrices in double precision and stores result
+     * in single-precision matrix. Values are rounded only once,
+     * after multiplication.
+     * @param first the first matrix to multiply
+     * @param second the second matrix to multiply
+     * @param result the matrix where multiplication result is to be stored
+     */
+    public static void multiply(MatrixD first, MatrixD second, Matrix result)
+    {
+        if (first.rows != result.getRows() || second.columns != result.getColumns()
+                || first.columns != second.rows)
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        final double[] a = first.values, b = second.values;
+        final int depth = first.columns;
+
+        for (int row = 0; row < first.rows; row++)
+        {
+            for (int column = 0; column < second.columns; column++)
+            {
+                double sum = 0.0;
+
+                int i = row * first.rowStride;
+                int j = column * second.columnStride;
+
+                for (int k = 0; k < depth; k++, i += first.columnStride, j += second.rowStride)
+                    sum += a[i] * b[j];
+
+                result.set(row, column, (float) sum);
+            }
+        }
+    }
+
+    /**
+     * Stores 4x4 transformation relative to given origin in single-precision
+     * matrix. Result is equal to translation by negated origin multiplied by
+     * source matrix, so it maps points to coordinates relative to the origin.
+     * Large translations cancel out before rounding, which avoids precision
+     * loss for objects far from the world origin but close to the camera.
+     * @param matrix the transformation matrix
+     * @param x the X coordinate of origin (usually camera position)
+     * @param y the Y coordinate of origin
+     * @param z the Z coordinate of origin
+     * @param result the matrix where relative transformation is to be stored
+     */
+    public static void toRelative(MatrixD matrix, double x, double y, double z,
+            Matrix result)
+    {
+        checkSize(matrix, 4);
+
+        if (result.getRows() != 4 || result.getColumns() != 4)
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: 4x4 matrix required");
+
+        for (int column = 0; column < 4; column++)
+        {
+            double w = matrix.get(3, column);
+
+            result.set(0, column, (float) (matrix.get(0, column) - x * w));
+            result.set(1, column, (float) (matrix.get(1, column) - y * w));
+            result.set(2, column, (float) (matrix.get(2, column) - z * w));
+            result.set(3, column, (float) w);
+        }
+    }
+
+    /**
+     * Multiplies two 4x4 matrices with translation by negated origin
+     * between them and stores result in single-precision matrix.
+     * The result is {@code first * T(-origin) * second}; typically first
+     * matrix is camera rotation (view without translation) and second is
+     * model matrix in world coordinates. Everything is computed in double
+     * precision in one pass and rounded once.
+     * @param first the first matrix to multiply
+     * @param second the second matrix to multiply
+     * @param x the X coordinate of origin (usually camera position)
+     * @param y the Y coordinate of origin
+     * @param z the Z coordinate of origin
+     * @param result the matrix where multiplication result is to be stored
+     */
+    public static void multiplyRelative(MatrixD first, MatrixD second,
+            double x, double y, double z, Matrix result)
+    {
+        checkSize(first, 4);
+        checkSize(second, 4);
+
+        if (result.getRows() != 4 || result.getColumns() != 4)
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: 4x4 matrix required");
+
+        for (int column = 0; column < 4; column++)
+        {
+            // column of T(-origin) * second
+            double w = second.get(3, column);
+            double c0 = second.get(0, column) - x * w;
+            double c1 = second.get(1, column) - y * w;
+            double c2 = second.get(2, column) - z * w;
+
+            for (int row = 0; row < 4; row++)
+            {
+                double sum = first.get(row, 0) * c0 + first.get(row, 1) * c1
+                        + first.get(row, 2) * c2 + first.get(row, 3) * w;
+
+                result.set(row, column, (float) sum);
+            }
+        }
+    }
+
+    /**
+     * Copies one matrix to another.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    public static void copy(MatrixD src, MatrixD dest)
+    {
+        checkCompatibility(src, dest);
+
+        if (src.order == dest.order)
+        {
+            System.arraycopy(src.values, 0, dest.values, 0, src.values.length);
+            return;
+        }
+
+        subCopy(src, dest);
+    }
+
+    /**
+     * Copies available region from one matrix to another.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    public static void subCopy(MatrixD src, MatrixD dest)
+    {
+        if (dest.rows > src.rows) throw new IllegalArgumentException("Incompatible matrices");
+        if (dest.columns > src.columns) throw new IllegalArgumentException("Incompatible matrices");
+
+        int rows = dest.getRows();
+        int columns = dest.getColumns();
+
+        if (src.order == Matrix.Order.ROW_MAJOR && dest.order == Matrix.Order.ROW_MAJOR)
+        {
+            for (int row = 0; row < rows; row++)
+            {
+                System.arraycopy(src.values, row * src.rowStride,
+                        dest.values, row * dest.rowStride, columns);
+            }
+
+            return;
+        }
+
+        if (src.order == Matrix.Order.COLUMN_MAJOR && dest.order == Matrix.Order.COLUMN_MAJOR)
+        {
+            for (int column = 0; column < columns; column++)
+            {
+                System.arraycopy(src.values, column * src.columnStride,
+                        dest.values, column * dest.columnStride, rows);
+            }
+
+            return;
+        }
+
+        for (int row = 0; row < rows; row++)
+        {
+            for (int column = 0; column < columns; column++)
+            {
+                dest.values[dest.index(row, column)] =
+                        src.values[src.index(row, column)];
+            }
+        }
+    }
+
+    /**
+     * Swaps content of two matrices.
+     * @param first the first matrix
+     * @param second the second matrix
+     */
+    public static void swap(MatrixD first, MatrixD second)
+    {
+        checkCompatibility(first, second);
+
+        if (first.order == second.order)
+        {
+            double[] temp = first.values;
+            first.values = second.values;
+            second.values = temp;
+        }
+        else
+        {
+            MatrixD temp = new MatrixD(first);
+            copy(second, first);
+            copy(temp, second);
+        }
+    }
+
+    /**
+     * Computes transpose of given matrix and stores it in other matrix.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    public static void transpose(MatrixD src, MatrixD dest)
+    {
+        if (src.rows != dest.columns)
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        if (src.columns != dest.rows)
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        int rows = src.rows;
+        int columns = src.columns;
+
+        for (int row = 0; row < rows; row++)
+        {
+            for (int column = 0; column < columns; column++)
+            {
+                dest.values[dest.index(column, row)] =
+                        src.values[src.index(row, column)];
+            }
+        }
+    }
+
+    /**
+     * Computes inverse of given matrix and stores it in other matrix.
+     * Destination matrix can be the same object as source matrix.
+     *
+     * Matrices up to 4x4 are inverted using closed-form formulas.
+     * Affine 4x4 matrices (with last row equal to {@code 0 0 0 1}) are
+     * inverted with {@link #inverseAffine(MatrixD, MatrixD)}. Larger matrices
+     * are inverted using Gaussian elimination with partial pivoting.
+     *
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    public static void inverse(MatrixD src, MatrixD dest)
+    {
+        checkCompatibility(src, dest);
+
+        if (src.rows != src.columns)
+            throw new IllegalArgumentException("Cannot invert non-square matrix");
+
+        switch (src.rows)
+        {
+            case 1:
+                inverse1(src, dest);
+                return;
+            case 2:
+                inverse2(src, dest);
+                return;
+            case 3:
+                inverse3(src, dest);
+                return;
+            case 4:
+                if (isAffine(src))
+                    inverseAffine(src, dest);
+                else
+                    inverse4(src, dest);
+                return;
+        }
+
+        // create a working copy
+        MatrixD work = new MatrixD(src);
+
+        // load destination with identity matrix
+        dest.loadIdentity();
+
+        // perform Gaussian elimination
+        gaussianElimination(work, dest);
+    }
+
+    /**
+     * Computes inverse of affine 4x4 matrix and stores it in other matrix.
+     * Last row of source matrix is assumed to be {@code 0 0 0 1}.
+     * Destination matrix can be the same object as source matrix.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    public static void inverseAffine(MatrixD src, MatrixD dest)
+    {
+        checkSize(src, 4);
+        checkSize(dest, 4);
+
+        final double[] m = src.values;
+        final int r = src.rowStride, c = src.columnStride;
+
+        double m00 = m[0],         m01 = m[c],             m02 = m[2 * c];
+        double m10 = m[r],         m11 = m[r + c],         m12 = m[r + 2 * c];
+        double m20 = m[2 * r],     m21 = m[2 * r + c],     m22 = m[2 * r + 2 * c];
+        double tx = m[3 * c], ty = m[r + 3 * c], tz = m[2 * r + 3 * c];
+
+        double c00 = m11 * m22 - m12 * m21;
+        double c01 = m12 * m20 - m10 * m22;
+        double c02 = m10 * m21 - m11 * m20;
+
+        double det = m00 * c00 + m01 * c01 + m02 * c02;
+
+        if (det == 0.0)
+            throw new IllegalArgumentException(
+                    "MatrixD cannot be inverted: determinant is 0");
+
+        double inv = 1.0 / det;
+
+        double r00 = c00 * inv;
+        double r01 = (m02 * m21 - m01 * m22) * inv;
+        double r02 = (m01 * m12 - m02 * m11) * inv;
+        double r10 = c01 * inv;
+        double r11 = (m00 * m22 - m02 * m20) * inv;
+        double r12 = (m02 * m10 - m00 * m12) * inv;
+        double r20 = c02 * inv;
+        double r21 = (m01 * m20 - m00 * m21) * inv;
+        double r22 = (m00 * m11 - m01 * m10) * inv;
+
+        dest.set4(r00, r01, r02, -(r00 * tx + r01 * ty + r02 * tz),
+                r10, r11, r12, -(r10 * tx + r11 * ty + r12 * tz),
+                r20, r21, r22, -(r20 * tx + r21 * ty + r22 * tz),
+                0.0, 0.0, 0.0, 1.0);
+    }
+
+    /**
+     * Computes inverse of rigid-body 4x4 matrix and stores it in other matrix.
+     * Source matrix is assumed to contain only rotation and translation,
+     * so the inverse is computed by transposing the rotation and
+     * rotating negated translation. Results are undefined for other matrices.
+     * Destination matrix can be the same object as source matrix.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    public static void inverseRigid(MatrixD src, MatrixD dest)
+    {
+        checkSize(src, 4);
+        checkSize(dest, 4);
+
+        final double[] m = src.values;
+        final int r = src.rowStride, c = src.columnStride;
+
+        double m00 = m[0],         m01 = m[c],             m02 = m[2 * c];
+        double m10 = m[r],         m11 = m[r + c],         m12 = m[r + 2 * c];
+        double m20 = m[2 * r],     m21 = m[2 * r + c],     m22 = m[2 * r + 2 * c];
+        double tx = m[3 * c], ty = m[r + 3 * c], tz = m[2 * r + 3 * c];
+
+        dest.set4(m00, m10, m20, -(m00 * tx + m10 * ty + m20 * tz),
+                m01, m11, m21, -(m01 * tx + m11 * ty + m21 * tz),
+                m02, m12, m22, -(m02 * tx + m12 * ty + m22 * tz),
+                0.0, 0.0, 0.0, 1.0);
+    }
+
+    /**
+     * Checks if 4x4 matrix is affine (last row is {@code 0 0 0 1}).
+     * @param matrix the matrix to check
+     * @return {@code true} if matrix is affine
+     */
+    private static boolean isAffine(MatrixD matrix)
+    {
+        final double[] m = matrix.values;
+        final int r = 3 * matrix.rowStride, c = matrix.columnStride;
+
+        return m[r] == 0.0 && m[r + c] == 0.0
+                && m[r + 2 * c] == 0.0 && m[r + 3 * c] == 1.0;
+    }
+
+    /**
+     * Computes inverse of 1x1 matrix.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    private static void inverse1(MatrixD src, MatrixD dest)
+    {
+        double value = src.values[0];
+
+        if (value == 0.0)
+            throw new IllegalArgumentException(
+                    "MatrixD cannot be inverted: determinant is 0");
+
+        dest.values[0] = 1.0 / value;
+    }
+
+    /**
+     * Computes inverse of 2x2 matrix.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    private static void inverse2(MatrixD src, MatrixD dest)
+    {
+        double m00 = src.get(0, 0), m01 = src.get(0, 1);
+        double m10 = src.get(1, 0), m11 = src.get(1, 1);
+
+        double det = m00 * m11 - m01 * m10;
+
+        if (det == 0.0)
+            throw new IllegalArgumentException(
+                    "MatrixD cannot be inverted: determinant is 0");
+
+        double inv = 1.0 / det;
+
+        dest.set(0, 0, m11 * inv);
+        dest.set(0, 1, -m01 * inv);
+        dest.set(1, 0, -m10 * inv);
+        dest.set(1, 1, m00 * inv);
+    }
+
+    /**
+     * Computes inverse of 3x3 matrix.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    private static void inverse3(MatrixD src, MatrixD dest)
+    {
+        final double[] m = src.values;
+        final int r = src.rowStride, c = src.columnStride;
+
+        double m00 = m[0],         m01 = m[c],             m02 = m[2 * c];
+        double m10 = m[r],         m11 = m[r + c],         m12 = m[r + 2 * c];
+        double m20 = m[2 * r],     m21 = m[2 * r + c],     m22 = m[2 * r + 2 * c];
+
+        double c00 = m11 * m22 - m12 * m21;
+        double c01 = m12 * m20 - m10 * m22;
+        double c02 = m10 * m21 - m11 * m20;
+
+        double det = m00 * c00 + m01 * c01 + m02 * c02;
+
+        if (det == 0.0)
+            throw new IllegalArgumentException(
+                    "MatrixD cannot be inverted: determinant is 0");
+
+        double inv = 1.0 / det;
+
+        double r00 = c00 * inv;
+        double r01 = (m02 * m21 - m01 * m22) * inv;
+        double r02 = (m01 * m12 - m02 * m11) * inv;
+        double r10 = c01 * inv;
+        double r11 = (m00 * m22 - m02 * m20) * inv;
+        double r12 = (m02 * m10 - m00 * m12) * inv;
+        double r20 = c02 * inv;
+        double r21 = (m01 * m20 - m00 * m21) * inv;
+        double r22 = (m00 * m11 - m01 * m10) * inv;
+
+        dest.set(0, 0, r00); dest.set(0, 1, r01); dest.set(0, 2, r02);
+        dest.set(1, 0, r10); dest.set(1, 1, r11); dest.set(1, 2, r12);
+        dest.set(2, 0, r20); dest.set(2, 1, r21); dest.set(2, 2, r22);
+    }
+
+    /**
+     * Computes inverse of 4x4 matrix using cofactors.
+     * @param src the source matrix
+     * @param dest the destination matrix
+     */
+    private static void inverse4(MatrixD src, MatrixD dest)
+    {
+        final double[] m = src.values;
+        final int r = src.rowStride, c = src.columnStride;
+
+        double m00 = m[0],     m01 = m[c],         m02 = m[2 * c],         m03 = m[3 * c];
+        double m10 = m[r],     m11 = m[r + c],     m12 = m[r + 2 * c],     m13 = m[r + 3 * c];
+        double m20 = m[2 * r], m21 = m[2 * r + c], m22 = m[2 * r + 2 * c], m23 = m[2 * r + 3 * c];
+        double m30 = m[3 * r], m31 = m[3 * r + c], m32 = m[3 * r + 2 * c], m33 = m[3 * r + 3 * c];
+
+        double s0 = m00 * m11 - m10 * m01;
+        double s1 = m00 * m12 - m10 * m02;
+        double s2 = m00 * m13 - m10 * m03;
+        double s3 = m01 * m12 - m11 * m02;
+        double s4 = m01 * m13 - m11 * m03;
+        double s5 = m02 * m13 - m12 * m03;
+
+        double c5 = m22 * m33 - m32 * m23;
+        double c4 = m21 * m33 - m31 * m23;
+        double c3 = m21 * m32 - m31 * m22;
+        double c2 = m20 * m33 - m30 * m23;
+        double c1 = m20 * m32 - m30 * m22;
+        double c0 = m20 * m31 - m30 * m21;
+
+        double det = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+
+        if (det == 0.0)
+            throw new IllegalArgumentException(
+                    "MatrixD cannot be inverted: determinant is 0");
+
+        double inv = 1.0 / det;
+
+        dest.set4(( m11 * c5 - m12 * c4 + m13 * c3) * inv,
+                (-m01 * c5 + m02 * c4 - m03 * c3) * inv,
+                ( m31 * s5 - m32 * s4 + m33 * s3) * inv,
+                (-m21 * s5 + m22 * s4 - m23 * s3) * inv,
+                (-m10 * c5 + m12 * c2 - m13 * c1) * inv,
+                ( m00 * c5 - m02 * c2 + m03 * c1) * inv,
+                (-m30 * s5 + m32 * s2 - m33 * s1) * inv,
+                ( m20 * s5 - m22 * s2 + m23 * s1) * inv,
+                ( m10 * c4 - m11 * c2 + m13 * c0) * inv,
+                (-m00 * c4 + m01 * c2 - m03 * c0) * inv,
+                ( m30 * s4 - m31 * s2 + m33 * s0) * inv,
+                (-m20 * s4 + m21 * s2 - m23 * s0) * inv,
+                (-m10 * c3 + m11 * c1 - m12 * c0) * inv,
+                ( m00 * c3 - m01 * c1 + m02 * c0) * inv,
+                (-m30 * s3 + m31 * s1 - m32 * s0) * inv,
+                ( m20 * s3 - m21 * s1 + m22 * s0) * inv);
+    }
+
+    /**
+     * Performs Gaussian Elimination on two matrices.
+     * This method can be used to calculate matrix inverse. Simply load
+     * {@code second} with identity matrix.
+     *
+     * Rows are swapped so that the largest value in each column
+     * is used as the pivot (partial pivoting).
+     *
+     * @param first the first matrix
+     * @param second the second matrix
+     */
+    public static void gaussianElimination(MatrixD first, MatrixD second)
+    {
+        if (first.getRows() != second.getRows())
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: different row count");
+
+        int rows = first.getRows();
+
+        // converting first matrix to row echelon form
+        for (int diagonal = 0; diagonal < rows; diagonal++)
+        {
+            // find row with the largest value in this column
+            int pivot = diagonal;
+            double max = Math.abs(first.get(diagonal, diagonal));
+
+            for (int row = diagonal + 1; row < rows; row++)
+            {
+                double value = Math.abs(first.get(row, diagonal));
+
+                if (value > max)
+                {
+                    pivot = row;
+                    max = value;
+                }
+            }
+
+            if (max < 1e-12)
+            {
+                throw new RuntimeException(
+                        "MatrixD seems to be invalid or non-invertible");
+            }
+
+            first.swapRow(diagonal, pivot);
+            second.swapRow(diagonal, pivot);
+
+            // this will rescale first value to 1
+            double scale = 1.0 / first.get(diagonal, diagonal);
+
+            first.scaleRow(diagonal, scale);
+            second.scaleRow(diagonal, scale);
+
+            // clear columns below the diagonal by adding other rows
+            for (int row = diagonal + 1; row < rows; row++)
+            {
+                // this will result in first value being 0
+                double value = first.get(row, diagonal);
+
+                if (value == 0.0) continue;
+
+                first.addRow(row, diagonal, -value);
+                second.addRow(row, diagonal, -value);
+            }
+        }
+
+        // clearing upper part of matrix
+        for (int diagonal = rows - 1; diagonal >= 0; diagonal--)
+        {
+            // going through upper rows
+            for (int row = 0; row < diagonal; row++)
+            {
+                double value = first.get(row, diagonal);
+
+                if (value == 0.0) continue;
+
+                first.addRow(row, diagonal, -value);
+                second.addRow(row, diagonal, -value);
+            }
+        }
+    }
+
+    /**
+     * Changes all values of 4x4 matrix. Arguments are given in row order.
+     */
+    private void set4(double m00, double m01, double m02, double m03,
+            double m10, double m11, double m12, double m13,
+            double m20, double m21, double m22, double m23,
+            double m30, double m31, double m32, double m33)
+    {
+        final double[] m = values;
+        final int r = rowStride, c = columnStride;
+
+        m[0] = m00;     m[c] = m01;         m[2 * c] = m02;         m[3 * c] = m03;
+        m[r] = m10;     m[r + c] = m11;     m[r + 2 * c] = m12;     m[r + 3 * c] = m13;
+        m[2 * r] = m20; m[2 * r + c] = m21; m[2 * r + 2 * c] = m22; m[2 * r + 3 * c] = m23;
+        m[3 * r] = m30; m[3 * r + c] = m31; m[3 * r + 2 * c] = m32; m[3 * r + 3 * c] = m33;
+    }
+
+    /**
+     * Checks the number of matrix columns. Throws
+     * {@code IllegalArgumentException} if it's different than required.
+     * @param matrix the matrix to check
+     * @param columns the required number of columns
+     */
+    private static void checkColumns(MatrixD matrix, int columns)
+    {
+        if (matrix.getColumns() != columns)
+            throw new IllegalArgumentException(
+                    "Incompatible matrix: " + columns + " columns required");
+    }
+
+    /**
+     * Checks matrix size. Throws {@code IllegalArgumentException}
+     * if matrix doesn't have given number of rows and columns.
+     * @param matrix the matrix to check
+     * @param size the required number of rows and columns
+     */
+    private static void checkSize(MatrixD matrix, int size)
+    {
+        if (matrix.getRows() != size || matrix.getColumns() != size)
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: " + size + "x" + size
+                    + " matrix required");
+    }
+
+    /**
+     * Checks matrix compatibility. Throws {@code IllegalArgumentException}
+     * if matrices don't have equal number of rows and columns.
+     * @param first the first matrix to check
+     * @param second the second matrix to check
+     */
+    private static void checkCompatibility(MatrixD first, MatrixD second)
+    {
+        if (first.getRows() != second.getRows())
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: different row count");
+
+        if (first.getColumns() != second.getColumns())
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: different column count");
+    }
+}
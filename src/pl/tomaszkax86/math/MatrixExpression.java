@@ -0,0 +1,483 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class implementing lazily evaluated matrix expressions.
+ *
+ * Expressions record transpose, multiply, add and scale operations
+ * without computing anything. When evaluated, transposes are moved to
+ * source matrices and read through swapped strides instead of being
+ * materialized, scale factors are folded into products and sums,
+ * and chains of multiplications are computed in the order with the
+ * smallest number of operations. Final products and sums are written
+ * directly into the destination matrix; temporary matrices are created
+ * only for inner products of longer chains and for sums used as factors.
+ *
+ * <pre>
+ * MatrixExpression.of(a).transpose().multiply(b).add(c).evaluate(result);
+ * </pre>
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class MatrixExpression
+{
+    /**
+     * Kinds of expression nodes.
+     */
+    private enum Kind
+    {
+        MATRIX, TRANSPOSE, MULTIPLY, ADD, SCALE
+    }
+
+    private final Kind kind;
+    private final int rows, columns;
+
+    // source matrix of MATRIX node
+    private final Matrix matrix;
+
+    // operands, right is used only by MULTIPLY and ADD nodes
+    private final MatrixExpression left, right;
+
+    // multiplier of SCALE node
+    private final float scalar;
+
+
+    private MatrixExpression(Kind kind, int rows, int columns, Matrix matrix,
+            MatrixExpression left, MatrixExpression right, float scalar)
+    {
+        this.kind = kind;
+        this.rows = rows;
+        this.columns = columns;
+        this.matrix = matrix;
+        this.left = left;
+        this.right = right;
+        this.scalar = scalar;
+    }
+
+    /**
+     * Creates expression consisting of a single matrix.
+     * Matrix is not copied, so its values are read during evaluation.
+     * @param matrix the matrix
+     * @return the expression
+     */
+    public static MatrixExpression of(Matrix matrix)
+    {
+        if (matrix == null) throw new NullPointerException();
+
+        return new MatrixExpression(Kind.MATRIX, matrix.getRows(),
+                matrix.getColumns(), matrix, null, null, 1.0f);
+    }
+
+    /**
+     * Returns the number of rows of expression result.
+     * @return the number of rows
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns of expression result.
+     * @return the number of columns
+     */
+    public int getColumns()
+    {
+        return columns;
+    }
+
+    /**
+     * Creates expression transposing this expression.
+     * @return the new expression
+     */
+    public MatrixExpression transpose()
+    {
+        return new MatrixExpression(Kind.TRANSPOSE, columns, rows,
+                null, this, null, 1.0f);
+    }
+
+    /**
+     * Creates expression multiplying this expression by other expression.
+     * @param other the second expression to multiply
+     * @return the new expression
+     */
+    public MatrixExpression multiply(MatrixExpression other)
+    {
+        if (columns != other.rows)
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        return new MatrixExpression(Kind.MULTIPLY, rows, other.columns,
+                null, this, other, 1.0f);
+    }
+
+    /**
+     * Creates expression multiplying this expression by matrix.
+     * @param other the matrix to multiply
+     * @return the new expression
+     */
+    public MatrixExpression multiply(Matrix other)
+    {
+        return multiply(of(other));
+    }
+
+    /**
+     * Creates expression adding other expression to this expression.
+     * @param other the expression to add
+     * @return the new expression
+     */
+    public MatrixExpression add(MatrixExpression other)
+    {
+        if (rows != other.rows || columns != other.columns)
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        return new MatrixExpression(Kind.ADD, rows, columns,
+                null, this, other, 1.0f);
+    }
+
+    /**
+     * Creates expression adding matrix to this expression.
+     * @param other the matrix to add
+     * @return the new expression
+     */
+    public MatrixExpression add(Matrix other)
+    {
+        return add(of(other));
+    }
+
+    /**
+     * Creates expression multiplying this expression by value.
+     * @param multiplier the multiplier
+     * @return the new expression
+     */
+    public MatrixExpression scale(float multiplier)
+    {
+        return new MatrixExpression(Kind.SCALE, rows, columns,
+                null, this, null, multiplier);
+    }
+
+    /**
+     * Evaluates this expression and stores result in new matrix.
+     * @return the new matrix
+     */
+    public Matrix evaluate()
+    {
+        Matrix result = new Matrix(rows, columns);
+
+        evaluate(result);
+
+        return result;
+    }
+
+    /**
+     * Evaluates this expression and stores result in given matrix.
+     * Result matrix can be one of the source matrices; in that case
+     * the expression is evaluated into a temporary matrix first.
+     * @param result the matrix where result is to be stored
+     */
+    public void evaluate(Matrix result)
+    {
+        if (result.getRows() != rows || result.getColumns() != columns)
+            throw new IllegalArgumentException("Incompatible matrices");
+
+        if (uses(result))
+        {
+            Matrix temp = new Matrix(rows, columns);
+
+            evaluate(temp);
+            Matrix.copy(temp, result);
+            return;
+        }
+
+        List<Term> terms = new ArrayList<>();
+
+        collect(this, false, 1.0f, terms);
+        evaluate(terms, result);
+    }
+
+    /**
+     * Checks if given matrix is used as a source by this expression.
+     * @param target the matrix to look for
+     * @return true if the matrix is used, false otherwise
+     */
+    private boolean uses(Matrix target)
+    {
+        switch (kind)
+        {
+            case MATRIX:
+                return matrix == target;
+            case MULTIPLY:
+            case ADD:
+                return left.uses(target) || right.uses(target);
+            default:
+                return left.uses(target);
+        }
+    }
+
+
+    /**
+     * Source matrix, possibly read as transposed.
+     */
+    private static final class Factor
+    {
+        final Matrix matrix;
+        final boolean transposed;
+
+        Factor(Matrix matrix, boolean transposed)
+        {
+            this.matrix = matrix;
+            this.transposed = transposed;
+        }
+
+        int rows()
+        {
+            return transposed ? matrix.getColumns() : matrix.getRows();
+        }
+
+        int columns()
+        {
+            return transposed ? matrix.getRows() : matrix.getColumns();
+        }
+    }
+
+    /**
+     * Product of factors multiplied by coefficient.
+     */
+    private static final class Term
+    {
+        final float coefficient;
+        final List<Factor> factors;
+
+        Term(float coefficient, List<Factor> factors)
+        {
+            this.coefficient = coefficient;
+            this.factors = factors;
+        }
+    }
+
+    /**
+     * Rewrites expression as a sum of terms, moving transposes
+     * to source matrices and collecting scale factors.
+     * @param node the expression
+     * @param transposed true if the expression is transposed
+     * @param coefficient the multiplier of the expression
+     * @param terms the list to add terms to
+     */
+    private static void collect(MatrixExpression node, boolean transposed,
+            float coefficient, List<Term> terms)
+    {
+        switch (node.kind)
+        {
+            case MATRIX:
+            {
+                List<Factor> factors = new ArrayList<>();
+
+                factors.add(new Factor(node.matrix, transposed));
+                terms.add(new Term(coefficient, factors));
+                return;
+            }
+            case TRANSPOSE:
+                collect(node.left, !transposed, coefficient, terms);
+                return;
+            case SCALE:
+                collect(node.left, transposed, coefficient * node.scalar, terms);
+                return;
+            case ADD:
+                collect(node.left, transposed, coefficient, terms);
+                collect(node.right, transposed, coefficient, terms);
+                return;
+            case MULTIPLY:
+            {
+                // (A B)' = B' A'
+                Term first = factor(transposed ? node.right : node.left, transposed);
+                Term second = factor(transposed ? node.left : node.right, transposed);
+
+                List<Factor> factors = new ArrayList<>(first.factors);
+
+                factors.addAll(second.factors);
+                terms.add(new Term(coefficient * first.coefficient
+                        * second.coefficient, factors));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rewrites operand of multiplication as a single term.
+     * Sums can't be a part of multiplication chain,
+     * so they are evaluated into temporary matrices.
+     * @param node the operand
+     * @param transposed true if the operand is transposed
+     * @return the term
+     */
+    private static Term factor(MatrixExpression node, boolean transposed)
+    {
+        List<Term> terms = new ArrayList<>();
+
+        collect(node, transposed, 1.0f, terms);
+
+        if (terms.size() == 1)
+            return terms.get(0);
+
+        Matrix temp = new Matrix(transposed ? node.columns : node.rows,
+                transposed ? node.rows : node.columns);
+
+        evaluate(terms, temp);
+
+        List<Factor> factors = new ArrayList<>();
+
+        factors.add(new Factor(temp, false));
+
+        return new Term(1.0f, factors);
+    }
+
+    /**
+     * Evaluates sum of terms into matrix. The first term overwrites
+     * the matrix and the following ones are added to it.
+     * @param terms the terms
+     * @param result the matrix where result is to be stored
+     */
+    private static void evaluate(List<Term> terms, Matrix result)
+    {
+        boolean accumulate = false;
+
+        for (Term term : terms)
+        {
+            List<Factor> factors = term.factors;
+            int count = factors.size();
+
+            if (count == 1)
+            {
+                Factor factor = factors.get(0);
+
+                Matrix.addScaled(term.coefficient, factor.matrix,
+                        factor.transposed, result, accumulate);
+            }
+            else
+            {
+                int[][] split = chainOrder(factors);
+
+                multiplyChain(factors, split, 0, count - 1,
+                        term.coefficient, result, accumulate);
+            }
+
+            accumulate = true;
+        }
+    }
+
+    /**
+     * Finds order of multiplication with the smallest number
+     * of scalar multiplications using dynamic programming.
+     * @param factors the matrices to multiply
+     * @return split[i][j] is the position after which product
+     * of factors from i to j is split
+     */
+    private static int[][] chainOrder(List<Factor> factors)
+    {
+        int n = factors.size();
+        long[] dimensions = new long[n + 1];
+
+        for (int i = 0; i < n; i++)
+            dimensions[i] = factors.get(i).rows();
+
+        dimensions[n] = factors.get(n - 1).columns();
+
+        long[][] cost = new long[n][n];
+        int[][] split = new int[n][n];
+
+        for (int length = 2; length <= n; length++)
+        {
+            for (int i = 0; i + length - 1 < n; i++)
+            {
+                int j = i + length - 1;
+
+                cost[i][j] = Long.MAX_VALUE;
+
+                for (int k = i; k < j; k++)
+                {
+                    long c = cost[i][k] + cost[k + 1][j]
+                            + dimensions[i] * dimensions[k + 1] * dimensions[j + 1];
+
+                    if (c < cost[i][j])
+                    {
+                        cost[i][j] = c;
+                        split[i][j] = k;
+                    }
+                }
+            }
+        }
+
+        return split;
+    }
+
+    /**
+     * Multiplies factors from given range in given order.
+     * Only the last multiplication writes to result matrix.
+     * @param factors the matrices to multiply
+     * @param split the multiplication order
+     * @param from the first factor
+     * @param to the last factor
+     * @param alpha the multiplier of the product
+     * @param result the matrix where result is to be stored
+     * @param accumulate true to add product to result
+     */
+    private static void multiplyChain(List<Factor> factors, int[][] split,
+            int from, int to, float alpha, Matrix result, boolean accumulate)
+    {
+        int k = split[from][to];
+
+        Factor first = product(factors, split, from, k);
+        Factor second = product(factors, split, k + 1, to);
+
+        Matrix.multiply(alpha, first.matrix, first.transposed,
+                second.matrix, second.transposed, result, accumulate);
+    }
+
+    /**
+     * Returns product of factors from given range,
+     * evaluating it into temporary matrix if it has more than one factor.
+     * @param factors the matrices to multiply
+     * @param split the multiplication order
+     * @param from the first factor
+     * @param to the last factor
+     * @return the product
+     */
+    private static Factor product(List<Factor> factors, int[][] split,
+            int from, int to)
+    {
+        if (from == to)
+            return factors.get(from);
+
+        Matrix temp = new Matrix(factors.get(from).rows(), factors.get(to).columns());
+
+        multiplyChain(factors, split, from, to, 1.0f, temp, false);
+
+        return new Factor(temp, false);
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+import java.util.Arrays;
+
+/**
+ * Class implementing stack of 4x4 transformation matrices.
+ *
+ * All matrices are allocated in advance and reused, so pushing, popping
+ * and transforming the top matrix don't allocate memory as long as
+ * the stack doesn't grow beyond its capacity.
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class MatrixStack
+{
+    // preallocated matrices, the ones above top are unused
+    private Matrix[] matrices;
+
+    // index of the top matrix
+    private int top;
+
+
+    /**
+     * Creates new matrix stack with default capacity.
+     */
+    public MatrixStack()
+    {
+        this(16);
+    }
+
+    /**
+     * Creates new matrix stack.
+     * Stack contains one identity matrix.
+     * @param capacity the number of preallocated matrices
+     */
+    public MatrixStack(int capacity)
+    {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+
+        matrices = new Matrix[capacity];
+
+        for (int i = 0; i < capacity; i++)
+            matrices[i] = new Matrix(4);
+
+        top = 0;
+        matrices[0].loadIdentity();
+    }
+
+    /**
+     * Returns the number of matrices on the stack.
+     * @return the number of matrices
+     */
+    public int getDepth()
+    {
+        return top + 1;
+    }
+
+    /**
+     * Returns the top matrix. Returned matrix is owned by the stack
+     * and can be modified until it is popped.
+     * @return the top matrix
+     */
+    public Matrix peek()
+    {
+        return matrices[top];
+    }
+
+    /**
+     * Pushes copy of the top matrix on the stack.
+     * @return this stack
+     */
+    public MatrixStack push()
+    {
+        if (top + 1 == matrices.length)
+            grow();
+
+        Matrix.copy(matrices[top], matrices[top + 1]);
+        top++;
+
+        return this;
+    }
+
+    /**
+     * Removes the top matrix from the stack.
+     * @return this stack
+     */
+    public MatrixStack pop()
+    {
+        if (top == 0)
+            throw new IllegalStateException("Matrix stack underflow");
+
+        top--;
+
+        return this;
+    }
+
+    /**
+     * Removes all matrices but the bottom one and loads it with identity.
+     * @return this stack
+     */
+    public MatrixStack clear()
+    {
+        top = 0;
+        matrices[0].loadIdentity();
+
+        return this;
+    }
+
+    /**
+     * Loads the top matrix with identity values.
+     * @return this stack
+     */
+    public MatrixStack loadIdentity()
+    {
+        matrices[top].loadIdentity();
+
+        return this;
+    }
+
+    /**
+     * Replaces the top matrix with values of other 4x4 matrix.
+     * @param matrix the matrix to copy
+     * @return this stack
+     */
+    public MatrixStack load(Matrix matrix)
+    {
+        Matrix.copy(matrix, matrices[top]);
+
+        return this;
+    }
+
+    /**
+     * Transforms the top matrix by other 4x4 matrix.
+     * @param transform the transformation matrix
+     * @return this stack
+     */
+    public MatrixStack multiply(Matrix transform)
+    {
+        matrices[top].transform(transform);
+
+        return this;
+    }
+
+    /**
+     * Transforms the top matrix by translation matrix.
+     * @param dx the translation of X axis
+     * @param dy the translation of Y axis
+     * @param dz the translation of Z axis
+     * @return this stack
+     */
+    public MatrixStack translate(float dx, float dy, float dz)
+    {
+        matrices[top].translate(dx, dy, dz);
+
+        return this;
+    }
+
+    /**
+     * Transforms the top matrix by scale matrix.
+     * @param sx the scale on X axis
+     * @param sy the scale on Y axis
+     * @param sz the scale on Z axis
+     * @return this stack
+     */
+    public MatrixStack scale(float sx, float sy, float sz)
+    {
+        matrices[top].scale(sx, sy, sz);
+
+        return this;
+    }
+
+    /**
+     * Transforms the top matrix by rotation matrix around X axis.
+     * @param angle the rotation angle in degrees
+     * @return this stack
+     */
+    public MatrixStack rotateX(float angle)
+    {
+        matrices[top].rotateX(angle);
+
+        return this;
+    }
+
+    /**
+     * Transforms the top matrix by rotation matrix around Y axis.
+     * @param angle the rotation angle in degrees
+     * @return this stack
+     */
+    public MatrixStack rotateY(float angle)
+    {
+        matrices[top].rotateY(angle);
+
+        return this;
+    }
+
+    /**
+     * Transforms the top matrix by rotation matrix around Z axis.
+     * @param angle the rotation angle in degrees
+     * @return this stack
+     */
+    public MatrixStack rotateZ(float angle)
+    {
+        matrices[top].rotateZ(angle);
+
+        return this;
+    }
+
+    /**
+     * Doubles the number of preallocated matrices.
+     */
+    private void grow()
+    {
+        int size = matrices.length;
+
+        matrices = Arrays.copyOf(matrices, 2 * size);
+
+        for (int i = size; i < matrices.length; i++)
+            matrices[i] = new Matrix(4);
+    }
+}
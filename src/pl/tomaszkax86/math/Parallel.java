@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Utility class for splitting work over index ranges
+ * between threads of common {@link ForkJoinPool}.
+ *
+ * @author Tomasz Kapuściński
+ */
+final class Parallel
+{
+    /**
+     * Work to be done on a range of indices.
+     */
+    interface Range
+    {
+        /**
+         * Processes indices from given range.
+         * @param from the first index (inclusive)
+         * @param to the last index (exclusive)
+         */
+        void run(int from, int to);
+    }
+
+
+    private Parallel() { }
+
+    /**
+     * Processes index range using common {@code ForkJoinPool}.
+     * Range is split in halves until parts are not larger than {@code grain}.
+     * If the pool has only one thread, whole range is processed
+     * in calling thread.
+     * @param from the first index (inclusive)
+     * @param to the last index (exclusive)
+     * @param grain the maximum number of indices processed by one task
+     * @param range the work to do
+     */
+    static void forRange(int from, int to, int grain, Range range)
+    {
+        if (to - from <= grain || ForkJoinPool.getCommonPoolParallelism() < 2)
+        {
+            range.run(from, to);
+            return;
+        }
+
+        ForkJoinPool.commonPool().invoke(new RangeAction(from, to, grain, range));
+    }
+
+
+    /**
+     * Fork/join task splitting index range in halves.
+     */
+    private static final class RangeAction extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to, grain;
+        private final Range range;
+
+        RangeAction(int from, int to, int grain, Range range)
+        {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.range = range;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= grain)
+            {
+                range.run(from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+
+            invokeAll(new RangeAction(from, middle, grain, range),
+                    new RangeAction(middle, to, grain, range));
+        }
+    }
+}
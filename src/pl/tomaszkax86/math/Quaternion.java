@@ -0,0 +1,578 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+import java.io.Serializable;
+
+/**
+ * This class implements quaternions used to represent rotations
+ * and static methods for quaternion operations.
+ *
+ * Array-based methods use quaternions stored as four consecutive
+ * values in X, Y, Z, W order.
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class Quaternion implements Serializable
+{
+    // the number of values of one quaternion in arrays
+    static final int SIZE = 4;
+
+    // dot product above which slerp falls back to nlerp
+    private static final float SLERP_THRESHOLD = 0.9995f;
+
+    // values of this quaternion in X, Y, Z, W order
+    final float[] values = new float[SIZE];
+
+
+    /**
+     * Creates new identity quaternion.
+     */
+    public Quaternion()
+    {
+        values[3] = 1.0f;
+    }
+
+    /**
+     * Creates new quaternion with given components.
+     * @param x the X component
+     * @param y the Y component
+     * @param z the Z component
+     * @param w the W component
+     */
+    public Quaternion(float x, float y, float z, float w)
+    {
+        set(x, y, z, w);
+    }
+
+    /**
+     * Creates new quaternion from other quaternion.
+     * @param other the quaternion to copy
+     */
+    public Quaternion(Quaternion other)
+    {
+        set(other);
+    }
+
+    /**
+     * Returns the X component.
+     * @return the X component
+     */
+    public float getX()
+    {
+        return values[0];
+    }
+
+    /**
+     * Returns the Y component.
+     * @return the Y component
+     */
+    public float getY()
+    {
+        return values[1];
+    }
+
+    /**
+     * Returns the Z component.
+     * @return the Z component
+     */
+    public float getZ()
+    {
+        return values[2];
+    }
+
+    /**
+     * Returns the W component.
+     * @return the W component
+     */
+    public float getW()
+    {
+        return values[3];
+    }
+
+    /**
+     * Changes all components of this quaternion.
+     * @param x the X component
+     * @param y the Y component
+     * @param z the Z component
+     * @param w the W component
+     * @return this quaternion
+     */
+    public Quaternion set(float x, float y, float z, float w)
+    {
+        values[0] = x;
+        values[1] = y;
+        values[2] = z;
+        values[3] = w;
+
+        return this;
+    }
+
+    /**
+     * Copies components of other quaternion to this quaternion.
+     * @param other the quaternion to copy components from
+     * @return this quaternion
+     */
+    public Quaternion set(Quaternion other)
+    {
+        System.arraycopy(other.values, 0, values, 0, SIZE);
+
+        return this;
+    }
+
+    /**
+     * Loads this quaternion with rotation from rotation matrix.
+     * Matrix must be 3x3 or 4x4, in which case only upper-left
+     * 3x3 part is used. Matrix must not contain scale.
+     * @param matrix the rotation matrix
+     * @return this quaternion
+     */
+    public Quaternion set(Matrix matrix)
+    {
+        int rows = matrix.getRows(), columns = matrix.getColumns();
+
+        if (rows != columns || (rows != 3 && rows != 4))
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: 3x3 or 4x4 matrix required");
+
+        float m00 = matrix.get(0, 0), m01 = matrix.get(0, 1), m02 = matrix.get(0, 2);
+        float m10 = matrix.get(1, 0), m11 = matrix.get(1, 1), m12 = matrix.get(1, 2);
+        float m20 = matrix.get(2, 0), m21 = matrix.get(2, 1), m22 = matrix.get(2, 2);
+
+        float trace = m00 + m11 + m22;
+
+        // use the largest of w, x, y, z to avoid division by small numbers
+        if (trace > 0.0f)
+        {
+            float s = 0.5f / (float) Math.sqrt(trace + 1.0f);
+
+            set((m21 - m12) * s, (m02 - m20) * s, (m10 - m01) * s, 0.25f / s);
+        }
+        else if (m00 > m11 && m00 > m22)
+        {
+            float s = 0.5f / (float) Math.sqrt(1.0f + m00 - m11 - m22);
+
+            set(0.25f / s, (m01 + m10) * s, (m02 + m20) * s, (m21 - m12) * s);
+        }
+        else if (m11 > m22)
+        {
+            float s = 0.5f / (float) Math.sqrt(1.0f + m11 - m00 - m22);
+
+            set((m01 + m10) * s, 0.25f / s, (m12 + m21) * s, (m02 - m20) * s);
+        }
+        else
+        {
+            float s = 0.5f / (float) Math.sqrt(1.0f + m22 - m00 - m11);
+
+            set((m02 + m20) * s, (m12 + m21) * s, 0.25f / s, (m10 - m01) * s);
+        }
+
+        return this;
+    }
+
+    /**
+     * Loads this quaternion with identity rotation.
+     * @return this quaternion
+     */
+    public Quaternion loadIdentity()
+    {
+        return set(0.0f, 0.0f, 0.0f, 1.0f);
+    }
+
+    /**
+     * Loads this quaternion with rotation around given axis.
+     * @param x the X component of rotation axis
+     * @param y the Y component of rotation axis
+     * @param z the Z component of rotation axis
+     * @param angle the rotation angle in degrees
+     * @return this quaternion
+     */
+    public Quaternion loadRotation(float x, float y, float z, float angle)
+    {
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+
+        if (length == 0.0f)
+            throw new IllegalArgumentException("Rotation axis has zero length");
+
+        double half = Math.toRadians(angle) * 0.5;
+        float s = (float) Math.sin(half) / length;
+
+        return set(x * s, y * s, z * s, (float) Math.cos(half));
+    }
+
+    /**
+     * Transforms this quaternion by other quaternion.
+     * Resulting rotation applies other rotation first.
+     * @param other the quaternion to multiply by
+     * @return this quaternion
+     */
+    public Quaternion transform(Quaternion other)
+    {
+        multiply(values, 0, other.values, 0, values, 0);
+
+        return this;
+    }
+
+    /**
+     * Conjugates this quaternion. For unit quaternion
+     * this computes the inverse rotation.
+     * @return this quaternion
+     */
+    public Quaternion conjugate()
+    {
+        values[0] = -values[0];
+        values[1] = -values[1];
+        values[2] = -values[2];
+
+        return this;
+    }
+
+    /**
+     * Normalizes this quaternion.
+     * @return this quaternion
+     */
+    public Quaternion normalize()
+    {
+        normalize(values, 0);
+
+        return this;
+    }
+
+    /**
+     * Returns the length of this quaternion.
+     * @return the length
+     */
+    public float length()
+    {
+        return (float) Math.sqrt(dot(this, this));
+    }
+
+    /**
+     * Stores rotation of this quaternion in 3x3 or 4x4 matrix.
+     * For 4x4 matrix, translation is set to zero.
+     * Quaternion is assumed to be normalized.
+     * @param matrix the matrix to store rotation in
+     */
+    public void get(Matrix matrix)
+    {
+        int rows = matrix.getRows(), columns = matrix.getColumns();
+
+        if (rows != columns || (rows != 3 && rows != 4))
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: 3x3 or 4x4 matrix required");
+
+        float x = values[0], y = values[1], z = values[2], w = values[3];
+
+        float xx = x * x, yy = y * y, zz = z * z;
+        float xy = x * y, xz = x * z, yz = y * z;
+        float wx = w * x, wy = w * y, wz = w * z;
+
+        matrix.set(0, 0, 1.0f - 2.0f * (yy + zz));
+        matrix.set(0, 1, 2.0f * (xy - wz));
+        matrix.set(0, 2, 2.0f * (xz + wy));
+        matrix.set(1, 0, 2.0f * (xy + wz));
+        matrix.set(1, 1, 1.0f - 2.0f * (xx + zz));
+        matrix.set(1, 2, 2.0f * (yz - wx));
+        matrix.set(2, 0, 2.0f * (xz - wy));
+        matrix.set(2, 1, 2.0f * (yz + wx));
+        matrix.set(2, 2, 1.0f - 2.0f * (xx + yy));
+
+        if (rows == 4)
+        {
+            for (int i = 0; i < 3; i++)
+            {
+                matrix.set(i, 3, 0.0f);
+                matrix.set(3, i, 0.0f);
+            }
+
+            matrix.set(3, 3, 1.0f);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "[" + values[0] + ", " + values[1] + ", "
+                + values[2] + ", " + values[3] + "]";
+    }
+
+
+    /**
+     * Calculates dot product of two quaternions.
+     * @param first the first quaternion
+     * @param second the second quaternion
+     * @return the dot product
+     */
+    public static float dot(Quaternion first, Quaternion second)
+    {
+        final float[] a = first.values, b = second.values;
+
+        return a[0] * b[0] + a[1] * b[1] + a[2] * b[2] + a[3] * b[3];
+    }
+
+    /**
+     * Multiplies two quaternions and stores result in other quaternion.
+     * Result quaternion can be the same object as any of the source ones.
+     * @param first the first quaternion to multiply
+     * @param second the second quaternion to multiply
+     * @param result the quaternion where multiplication result is to be stored
+     */
+    public static void multiply(Quaternion first, Quaternion second,
+            Quaternion result)
+    {
+        multiply(first.values, 0, second.values, 0, result.values, 0);
+    }
+
+    /**
+     * Interpolates linearly between two quaternions and normalizes result.
+     * Interpolation follows the shorter arc.
+     * Result quaternion can be the same object as any of the source ones.
+     * @param first the quaternion for {@code t = 0}
+     * @param second the quaternion for {@code t = 1}
+     * @param t the interpolation parameter
+     * @param result the quaternion where result is to be stored
+     */
+    public static void nlerp(Quaternion first, Quaternion second, float t,
+            Quaternion result)
+    {
+        nlerp(first.values, 0, second.values, 0, t, result.values, 0);
+    }
+
+    /**
+     * Interpolates spherically between two unit quaternions.
+     * Interpolation follows the shorter arc.
+     * Result quaternion can be the same object as any of the source ones.
+     * @param first the quaternion for {@code t = 0}
+     * @param second the quaternion for {@code t = 1}
+     * @param t the interpolation parameter
+     * @param result the quaternion where result is to be stored
+     */
+    public static void slerp(Quaternion first, Quaternion second, float t,
+            Quaternion result)
+    {
+        slerp(first.values, 0, second.values, 0, t, result.values, 0);
+    }
+
+    /**
+     * Interpolates spherically between many pairs of unit quaternions
+     * stored in arrays, using the same interpolation parameter.
+     * Result array can be the same as any of the source arrays.
+     * @param first the quaternions for {@code t = 0}
+     * @param firstOffset the index of the first value in first array
+     * @param second the quaternions for {@code t = 1}
+     * @param secondOffset the index of the first value in second array
+     * @param t the interpolation parameter
+     * @param result the array for interpolated quaternions
+     * @param resultOffset the index of the first value in result array
+     * @param count the number of quaternions
+     */
+    public static void slerp(float[] first, int firstOffset,
+            float[] second, int secondOffset, float t,
+            float[] result, int resultOffset, int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            int offset = i * SIZE;
+
+            slerp(first, firstOffset + offset, second, secondOffset + offset,
+                    t, result, resultOffset + offset);
+        }
+    }
+
+    /**
+     * Interpolates spherically between many pairs of unit quaternions
+     * stored in arrays, each pair with its own interpolation parameter.
+     * Result array can be the same as any of the source arrays.
+     * @param first the quaternions for {@code t = 0}
+     * @param firstOffset the index of the first value in first array
+     * @param second the quaternions for {@code t = 1}
+     * @param secondOffset the index of the first value in second array
+     * @param t the interpolation parameters
+     * @param tOffset the index of the first parameter
+     * @param result the array for interpolated quaternions
+     * @param resultOffset the index of the first value in result array
+     * @param count the number of quaternions
+     */
+    public static void slerp(float[] first, int firstOffset,
+            float[] second, int secondOffset, float[] t, int tOffset,
+            float[] result, int resultOffset, int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            int offset = i * SIZE;
+
+            slerp(first, firstOffset + offset, second, secondOffset + offset,
+                    t[tOffset + i], result, resultOffset + offset);
+        }
+    }
+
+    /**
+     * Converts many unit quaternions stored in array to rotation matrices.
+     * @param quaternions the quaternion values
+     * @param offset the index of the first value in the array
+     * @param result the array of matrices to store rotations in
+     * @param first the index of the first matrix in result array
+     * @param count the number of quaternions
+     */
+    public static void toMatrices(float[] quaternions, int offset,
+            MatrixArray result, int first, int count)
+    {
+        if (first < 0 || first + count > result.getCount())
+            throw new IndexOutOfBoundsException("Invalid matrix range");
+
+        for (int i = 0; i < count; i++)
+        {
+            toMatrix(quaternions, offset + i * SIZE,
+                    result.values, (first + i) * MatrixArray.SIZE);
+        }
+    }
+
+    /**
+     * Multiplies two quaternions stored in arrays.
+     */
+    static void multiply(float[] a, int aOffset, float[] b, int bOffset,
+            float[] r, int rOffset)
+    {
+        float ax = a[aOffset], ay = a[aOffset + 1], az = a[aOffset + 2], aw = a[aOffset + 3];
+        float bx = b[bOffset], by = b[bOffset + 1], bz = b[bOffset + 2], bw = b[bOffset + 3];
+
+        r[rOffset] = aw * bx + ax * bw + ay * bz - az * by;
+        r[rOffset + 1] = aw * by - ax * bz + ay * bw + az * bx;
+        r[rOffset + 2] = aw * bz + ax * by - ay * bx + az * bw;
+        r[rOffset + 3] = aw * bw - ax * bx - ay * by - az * bz;
+    }
+
+    /**
+     * Normalizes quaternion stored in array.
+     */
+    static void normalize(float[] q, int offset)
+    {
+        float x = q[offset], y = q[offset + 1], z = q[offset + 2], w = q[offset + 3];
+        float length = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+
+        if (length == 0.0f)
+            throw new ArithmeticException("Quaternion has zero length");
+
+        float inv = 1.0f / length;
+
+        q[offset] = x * inv;
+        q[offset + 1] = y * inv;
+        q[offset + 2] = z * inv;
+        q[offset + 3] = w * inv;
+    }
+
+    /**
+     * Interpolates linearly between quaternions stored in arrays
+     * and normalizes result.
+     */
+    static void nlerp(float[] a, int aOffset, float[] b, int bOffset,
+            float t, float[] r, int rOffset)
+    {
+        float ax = a[aOffset], ay = a[aOffset + 1], az = a[aOffset + 2], aw = a[aOffset + 3];
+        float bx = b[bOffset], by = b[bOffset + 1], bz = b[bOffset + 2], bw = b[bOffset + 3];
+
+        float cos = ax * bx + ay * by + az * bz + aw * bw;
+        float t0 = 1.0f - t, t1 = cos < 0.0f ? -t : t;
+
+        r[rOffset] = ax * t0 + bx * t1;
+        r[rOffset + 1] = ay * t0 + by * t1;
+        r[rOffset + 2] = az * t0 + bz * t1;
+        r[rOffset + 3] = aw * t0 + bw * t1;
+
+        normalize(r, rOffset);
+    }
+
+    /**
+     * Interpolates spherically between unit quaternions stored in arrays.
+     */
+    static void slerp(float[] a, int aOffset, float[] b, int bOffset,
+            float t, float[] r, int rOffset)
+    {
+        float ax = a[aOffset], ay = a[aOffset + 1], az = a[aOffset + 2], aw = a[aOffset + 3];
+        float bx = b[bOffset], by = b[bOffset + 1], bz = b[bOffset + 2], bw = b[bOffset + 3];
+
+        float cos = ax * bx + ay * by + az * bz + aw * bw;
+        float sign = 1.0f;
+
+        // q and -q are the same rotation, take the shorter arc
+        if (cos < 0.0f)
+        {
+            cos = -cos;
+            sign = -1.0f;
+        }
+
+        // sin of small angle loses precision, linear interpolation is enough
+        if (cos > SLERP_THRESHOLD)
+        {
+            nlerp(a, aOffset, b, bOffset, t, r, rOffset);
+            return;
+        }
+
+        double angle = Math.acos(cos);
+        double inv = 1.0 / Math.sin(angle);
+        float t0 = (float) (Math.sin((1.0 - t) * angle) * inv);
+        float t1 = (float) (Math.sin(t * angle) * inv) * sign;
+
+        r[rOffset] = ax * t0 + bx * t1;
+        r[rOffset + 1] = ay * t0 + by * t1;
+        r[rOffset + 2] = az * t0 + bz * t1;
+        r[rOffset + 3] = aw * t0 + bw * t1;
+    }
+
+    /**
+     * Converts unit quaternion stored in array to column-major
+     * 4x4 rotation matrix.
+     */
+    static void toMatrix(float[] q, int qOffset, float[] m, int offset)
+    {
+        float x = q[qOffset], y = q[qOffset + 1];
+        float z = q[qOffset + 2], w = q[qOffset + 3];
+
+        float xx = x * x, yy = y * y, zz = z * z;
+        float xy = x * y, xz = x * z, yz = y * z;
+        float wx = w * x, wy = w * y, wz = w * z;
+
+        m[offset] = 1.0f - 2.0f * (yy + zz);
+        m[offset + 1] = 2.0f * (xy + wz);
+        m[offset + 2] = 2.0f * (xz - wy);
+        m[offset + 3] = 0.0f;
+
+        m[offset + 4] = 2.0f * (xy - wz);
+        m[offset + 5] = 1.0f - 2.0f * (xx + zz);
+        m[offset + 6] = 2.0f * (yz + wx);
+        m[offset + 7] = 0.0f;
+
+        m[offset + 8] = 2.0f * (xz + wy);
+        m[offset + 9] = 2.0f * (yz - wx);
+        m[offset + 10] = 1.0f - 2.0f * (xx + yy);
+        m[offset + 11] = 0.0f;
+
+        m[offset + 12] = 0.0f;
+        m[offset + 13] = 0.0f;
+        m[offset + 14] = 0.0f;
+        m[offset + 15] = 1.0f;
+    }
+}
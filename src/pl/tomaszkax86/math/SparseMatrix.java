@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+import java.util.Arrays;
+
+/**
+ * This class implements sparse matrices in compressed sparse row format.
+ *
+ * Only non-zero values are stored, row by row, together with their column
+ * indices, so memory use is proportional to the number of non-zero values.
+ * Matrices are immutable and are created with {@link Builder}.
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class SparseMatrix
+{
+    // the number of rows processed by one thread
+    private static final int PARALLEL_GRAIN = 4096;
+
+    // matrix dimensions
+    private final int rows, columns;
+
+    // values of row i are at indices from rowStart[i] to rowStart[i + 1]
+    private final int[] rowStart;
+
+    // column indices of values, sorted within each row
+    private final int[] columnIndex;
+
+    // non-zero values
+    private final float[] values;
+
+
+    private SparseMatrix(int rows, int columns,
+            int[] rowStart, int[] columnIndex, float[] values)
+    {
+        this.rows = rows;
+        this.columns = columns;
+        this.rowStart = rowStart;
+        this.columnIndex = columnIndex;
+        this.values = values;
+    }
+
+    /**
+     * Returns the number of rows.
+     * @return the number of rows
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns.
+     * @return the number of columns
+     */
+    public int getColumns()
+    {
+        return columns;
+    }
+
+    /**
+     * Returns the number of stored values.
+     * @return the number of stored values
+     */
+    public int getNonZeroCount()
+    {
+        return values.length;
+    }
+
+    /**
+     * Returns the value under given row and column.
+     * @param row the row index
+     * @param column the column index
+     * @return the value, or zero if the value is not stored
+     */
+    public float get(int row, int column)
+    {
+        if (row < 0 || row >= rows || column < 0 || column >= columns)
+            throw new IndexOutOfBoundsException(
+                    "Invalid index: " + row + ", " + column);
+
+        int index = Arrays.binarySearch(columnIndex,
+                rowStart[row], rowStart[row + 1], column);
+
+        return index >= 0 ? values[index] : 0.0f;
+    }
+
+    /**
+     * Copies diagonal values to array.
+     * @param result the array for diagonal values
+     */
+    public void getDiagonal(float[] result)
+    {
+        for (int i = 0, count = Math.min(rows, columns); i < count; i++)
+            result[i] = get(i, i);
+    }
+
+    /**
+     * Creates new dense matrix with values of this matrix.
+     * @return the new matrix
+     */
+    public Matrix toMatrix()
+    {
+        Matrix matrix = new Matrix(rows, columns);
+
+        for (int row = 0; row < rows; row++)
+        {
+            for (int i = rowStart[row]; i < rowStart[row + 1]; i++)
+                matrix.set(row, columnIndex[i], values[i]);
+        }
+
+        return matrix;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SparseMatrix[" + rows + "x" + columns
+                + ", " + values.length + " values]";
+    }
+
+
+    /**
+     * Multiplies vector by sparse matrix.
+     * @param matrix the matrix to multiply
+     * @param vector the vector to multiply
+     * @param result the result of multiplication
+     */
+    public static void multiply(SparseMatrix matrix, Vector vector, Vector result)
+    {
+        multiply(matrix, vector, result, false);
+    }
+
+    /**
+     * Multiplies vector by sparse matrix, optionally splitting rows
+     * between threads of common {@code ForkJoinPool}.
+     * @param matrix the matrix to multiply
+     * @param vector the vector to multiply
+     * @param result the result of multiplication
+     * @param parallel true to use multiple threads
+     */
+    public static void multiply(SparseMatrix matrix, Vector vector,
+            Vector result, boolean parallel)
+    {
+        if (vector.size() != matrix.columns || result.size() != matrix.rows)
+            throw new IllegalArgumentException("Incompatible vectors");
+
+        multiply(matrix, vector.values, result.values, parallel);
+    }
+
+    /**
+     * Multiplies vector by sparse matrix, optionally splitting rows
+     * between threads of common {@code ForkJoinPool}.
+     * Result array must not be the same as vector array.
+     * @param matrix the matrix to multiply
+     * @param vector the vector to multiply
+     * @param result the result of multiplication
+     * @param parallel true to use multiple threads
+     */
+    public static void multiply(SparseMatrix matrix, float[] vector,
+            float[] result, boolean parallel)
+    {
+        if (vector == result)
+            throw new IllegalArgumentException("Result must not be the source vector");
+
+        if (parallel)
+            Parallel.forRange(0, matrix.rows, PARALLEL_GRAIN, (from, to) ->
+                    multiplyRange(matrix, vector, result, from, to));
+        else
+            multiplyRange(matrix, vector, result, 0, matrix.rows);
+    }
+
+    /**
+     * Multiplies vector by transpose of sparse matrix.
+     * @param matrix the matrix to multiply
+     * @param vector the vector to multiply
+     * @param result the result of multiplication
+     */
+    public static void multiplyTransposed(SparseMatrix matrix, Vector vector,
+            Vector result)
+    {
+        if (vector.size() != matrix.rows || result.size() != matrix.columns)
+            throw new IllegalArgumentException("Incompatible vectors");
+
+        multiplyTransposed(matrix, vector.values, result.values);
+    }
+
+    /**
+     * Multiplies vector by transpose of sparse matrix.
+     * Rows are scattered into result, so this method runs in one thread.
+     * Result array must not be the same as vector array.
+     * @param matrix the matrix to multiply
+     * @param vector the vector to multiply
+     * @param result the result of multiplication
+     */
+    public static void multiplyTransposed(SparseMatrix matrix, float[] vector,
+            float[] result)
+    {
+        if (vector == result)
+            throw new IllegalArgumentException("Result must not be the source vector");
+
+        Arrays.fill(result, 0, matrix.columns, 0.0f);
+
+        for (int row = 0; row < matrix.rows; row++)
+        {
+            float x = vector[row];
+
+            if (x == 0.0f)
+                continue;
+
+            for (int i = matrix.rowStart[row]; i < matrix.rowStart[row + 1]; i++)
+                result[matrix.columnIndex[i]] += matrix.values[i] * x;
+        }
+    }
+
+    /**
+     * Multiplies range of rows by vector.
+     */
+    private static void multiplyRange(SparseMatrix matrix, float[] vector,
+            float[] result, int from, int to)
+    {
+        final int[] start = matrix.rowStart, column = matrix.columnIndex;
+        final float[] v = matrix.values;
+
+        for (int row = from; row < to; row++)
+        {
+            float sum = 0.0f;
+
+            for (int i = start[row], end = start[row + 1]; i < end; i++)
+                sum += v[i] * vector[column[i]];
+
+            result[row] = sum;
+        }
+    }
+
+
+    /**
+     * Builder collecting values of sparse matrix in any order.
+     * Values added more than once under the same row and column are summed.
+     */
+    public static final class Builder
+    {
+        private final int rows, columns;
+
+        // added values in order of addition
+        private int count;
+        private int[] rowIndex = new int[16];
+        private int[] columnIndex = new int[16];
+        private float[] values = new float[16];
+
+        /**
+         * Creates new builder for matrix with given dimensions.
+         * @param rows the number of rows
+         * @param columns the number of columns
+         */
+        public Builder(int rows, int columns)
+        {
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        /**
+         * Adds value to the matrix under given row and column.
+         * @param row the row index
+         * @param column the column index
+         * @param value the value to add
+         * @return this builder
+         */
+        public Builder add(int row, int column, float value)
+        {
+            if (row < 0 || row >= rows || column < 0 || column >= columns)
+                throw new IndexOutOfBoundsException(
+                        "Invalid index: " + row + ", " + column);
+
+            if (count == values.length)
+            {
+                rowIndex = Arrays.copyOf(rowIndex, 2 * count);
+                columnIndex = Arrays.copyOf(columnIndex, 2 * count);
+                values = Arrays.copyOf(values, 2 * count);
+            }
+
+            rowIndex[count] = row;
+            columnIndex[count] = column;
+            values[count] = value;
+            count++;
+
+            return this;
+        }
+
+        /**
+         * Creates sparse matrix with added values.
+         * Builder can be used further after this call.
+         * @return the new matrix
+         */
+        public SparseMatrix build()
+        {
+            // counting sort by row
+            int[] start = new int[rows + 1];
+
+            for (int i = 0; i < count; i++)
+                start[rowIndex[i] + 1]++;
+
+            for (int row = 0; row < rows; row++)
+                start[row + 1] += start[row];
+
+            int[] next = Arrays.copyOf(start, rows);
+            int[] sortedColumns = new int[count];
+            float[] sortedValues = new float[count];
+
+            for (int i = 0; i < count; i++)
+            {
+                int j = next[rowIndex[i]]++;
+
+                sortedColumns[j] = columnIndex[i];
+                sortedValues[j] = values[i];
+            }
+
+            // sort each row by column and sum duplicates, compacting in place
+            int[] rowStart = new int[rows + 1];
+            int size = 0;
+
+            for (int row = 0; row < rows; row++)
+            {
+                int from = start[row], to = start[row + 1];
+
+                sortRow(sortedColumns, sortedValues, from, to);
+                rowStart[row] = size;
+
+                for (int i = from; i < to; i++)
+                {
+                    if (size > rowStart[row] && sortedColumns[size - 1] == sortedColumns[i])
+                    {
+                        sortedValues[size - 1] += sortedValues[i];
+                    }
+                    else
+                    {
+                        sortedColumns[size] = sortedColumns[i];
+                        sortedValues[size] = sortedValues[i];
+                        size++;
+                    }
+                }
+            }
+
+            rowStart[rows] = size;
+
+            return new SparseMatrix(rows, columns, rowStart,
+                    Arrays.copyOf(sortedColumns, size),
+                    Arrays.copyOf(sortedValues, size));
+        }
+
+        /**
+         * Sorts values of one row by column using insertion sort,
+         * rows of sparse matrices are short.
+         */
+        private static void sortRow(int[] columns, float[] values, int from, int to)
+        {
+            for (int i = from + 1; i < to; i++)
+            {
+                int column = columns[i];
+                float value = values[i];
+                int j = i - 1;
+
+                while (j >= from && columns[j] > column)
+                {
+                    columns[j + 1] = columns[j];
+                    values[j + 1] = values[j];
+                    j--;
+                }
+
+                columns[j + 1] = column;
+                values[j + 1] = value;
+            }
+        }
+    }
+}
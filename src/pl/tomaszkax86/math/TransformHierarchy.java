@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+import java.util.Arrays;
+
+/**
+ * Class implementing hierarchy of transformations.
+ *
+ * Every node has local translation, rotation (as a unit quaternion)
+ * and scale, and a cached world matrix equal to the world matrix
+ * of its parent multiplied by its local matrix. All data is kept
+ * in flat arrays indexed by node.
+ *
+ * Changing a node marks it as dirty. {@link #update()} recomputes
+ * world matrices of dirty nodes and their descendants only.
+ * Nodes are processed level by level, and nodes on the same level
+ * are split between threads of common {@code ForkJoinPool}.
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class TransformHierarchy
+{
+    // the number of nodes processed by one thread
+    private static final int PARALLEL_GRAIN = 1024;
+
+    // maximum and current number of nodes
+    private final int capacity;
+    private int count;
+
+    // parent indices, negative for root nodes
+    private final int[] parents;
+
+    // distance from root, root nodes have depth 0
+    private final int[] depths;
+
+    // local transformation as translation (x y z),
+    // rotation (x y z w) and scale (x y z)
+    private final float[] translations;
+    private final float[] rotations;
+    private final float[] scales;
+
+    // nodes with changed local transformation
+    private final boolean[] dirty;
+
+    // nodes whose world matrix was recomputed in current update
+    private final boolean[] changed;
+
+    // local and world matrices
+    private final MatrixArray locals;
+    private final MatrixArray worlds;
+
+    // nodes sorted by depth and index of the first node of every level,
+    // rebuilt after nodes are added
+    private int[] order;
+    private int[] levels;
+    private boolean ordered;
+
+
+    /**
+     * Creates new empty hierarchy.
+     * @param capacity the maximum number of nodes
+     */
+    public TransformHierarchy(int capacity)
+    {
+        this.capacity = capacity;
+        this.count = 0;
+
+        parents = new int[capacity];
+        depths = new int[capacity];
+        translations = new float[3 * capacity];
+        rotations = new float[4 * capacity];
+        scales = new float[3 * capacity];
+        dirty = new boolean[capacity];
+        changed = new boolean[capacity];
+        locals = new MatrixArray(capacity);
+        worlds = new MatrixArray(capacity);
+
+        order = new int[capacity];
+        levels = new int[0];
+        ordered = false;
+    }
+
+    /**
+     * Returns the number of nodes.
+     * @return the number of nodes
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Adds new node with identity local transformation.
+     * @param parent the parent node index, or -1 for root node
+     * @return the index of new node
+     */
+    public int addNode(int parent)
+    {
+        if (count == capacity)
+            throw new IllegalStateException("Hierarchy is full");
+
+        if (parent >= count)
+            throw new IllegalArgumentException("Invalid parent: " + parent);
+
+        int node = count++;
+
+        parents[node] = parent < 0 ? -1 : parent;
+        depths[node] = parent < 0 ? 0 : depths[parent] + 1;
+
+        setTranslation(node, 0.0f, 0.0f, 0.0f);
+        setRotation(node, 0.0f, 0.0f, 0.0f, 1.0f);
+        setScale(node, 1.0f, 1.0f, 1.0f);
+
+        ordered = false;
+
+        return node;
+    }
+
+    /**
+     * Returns the parent of given node.
+     * @param node the node index
+     * @return the parent node index, or -1 for root node
+     */
+    public int getParent(int node)
+    {
+        checkNode(node);
+
+        return parents[node];
+    }
+
+    /**
+     * Changes local translation of given node.
+     * @param node the node index
+     * @param x the translation of X axis
+     * @param y the translation of Y axis
+     * @param z the translation of Z axis
+     */
+    public void setTranslation(int node, float x, float y, float z)
+    {
+        checkNode(node);
+
+        int i = 3 * node;
+
+        translations[i] = x;
+        translations[i + 1] = y;
+        translations[i + 2] = z;
+        dirty[node] = true;
+    }
+
+    /**
+     * Changes local rotation of given node.
+     * Rotation is given as a unit quaternion.
+     * @param node the node index
+     * @param x the X component of quaternion
+     * @param y the Y component of quaternion
+     * @param z the Z component of quaternion
+     * @param w the W component of quaternion
+     */
+    public void setRotation(int node, float x, float y, float z, float w)
+    {
+        checkNode(node);
+
+        int i = 4 * node;
+
+        rotations[i] = x;
+        rotations[i + 1] = y;
+        rotations[i + 2] = z;
+        rotations[i + 3] = w;
+        dirty[node] = true;
+    }
+
+    /**
+     * Changes local rotation of given node.
+     * @param node the node index
+     * @param rotation the unit quaternion
+     */
+    public void setRotation(int node, Quaternion rotation)
+    {
+        final float[] q = rotation.values;
+
+        setRotation(node, q[0], q[1], q[2], q[3]);
+    }
+
+    /**
+     * Changes local scale of given node.
+     * @param node the node index
+     * @param x the scale on X axis
+     * @param y the scale on Y axis
+     * @param z the scale on Z axis
+     */
+    public void setScale(int node, float x, float y, float z)
+    {
+        checkNode(node);
+
+        int i = 3 * node;
+
+        scales[i] = x;
+        scales[i + 1] = y;
+        scales[i + 2] = z;
+        dirty[node] = true;
+    }
+
+    /**
+     * Copies local translation of given node to array.
+     * @param node the node index
+     * @param result the array for X, Y and Z translation
+     */
+    public void getTranslation(int node, float[] result)
+    {
+        checkNode(node);
+
+        System.arraycopy(translations, 3 * node, result, 0, 3);
+    }
+
+    /**
+     * Copies local rotation of given node to array.
+     * @param node the node index
+     * @param result the array for X, Y, Z and W quaternion components
+     */
+    public void getRotation(int node, float[] result)
+    {
+        checkNode(node);
+
+        System.arraycopy(rotations, 4 * node, result, 0, 4);
+    }
+
+    /**
+     * Copies local rotation of given node to quaternion.
+     * @param node the node index
+     * @param result the quaternion to store rotation in
+     */
+    public void getRotation(int node, Quaternion result)
+    {
+        getRotation(node, result.values);
+    }
+
+    /**
+     * Copies local scale of given node to array.
+     * @param node the node index
+     * @param result the array for X, Y and Z scale
+     */
+    public void getScale(int node, float[] result)
+    {
+        checkNode(node);
+
+        System.arraycopy(scales, 3 * node, result, 0, 3);
+    }
+
+    /**
+     * Returns true if given node was changed since last update.
+     * @param node the node index
+     * @return true if node is dirty, false otherwise
+     */
+    public boolean isDirty(int node)
+    {
+        checkNode(node);
+
+        return dirty[node];
+    }
+
+    /**
+     * Copies world matrix of given node to 4x4 matrix.
+     * Returned value is valid after last call to {@link #update()}.
+     * @param node the node index
+     * @param matrix the matrix to copy values to
+     */
+    public void getWorldMatrix(int node, Matrix matrix)
+    {
+        checkNode(node);
+
+        worlds.get(node, matrix);
+    }
+
+    /**
+     * Returns world matrices of all nodes. Matrix {@code i} belongs
+     * to node {@code i}. Returned array is owned by this hierarchy
+     * and is updated by {@link #update()}.
+     * @return the array of world matrices
+     */
+    public MatrixArray getWorldMatrices()
+    {
+        return worlds;
+    }
+
+    /**
+     * Recomputes world matrices of dirty nodes and their descendants.
+     */
+    public void update()
+    {
+        if (!ordered)
+            sortByDepth();
+
+        for (int level = 0; level + 1 < levels.length; level++)
+        {
+            Parallel.forRange(levels[level], levels[level + 1], PARALLEL_GRAIN,
+                    this::updateRange);
+        }
+
+        Arrays.fill(dirty, 0, count, false);
+    }
+
+    /**
+     * Recomputes world matrices of nodes from one level.
+     * @param from the first position in sorted nodes (inclusive)
+     * @param to the last position in sorted nodes (exclusive)
+     */
+    private void updateRange(int from, int to)
+    {
+        final float[] l = locals.values, w = worlds.values;
+
+        for (int i = from; i < to; i++)
+        {
+            int node = order[i];
+            int parent = parents[node];
+
+            // parents are on previous level, so their flags are final
+            boolean update = dirty[node] || (parent >= 0 && changed[parent]);
+
+            changed[node] = update;
+
+            if (!update)
+                continue;
+
+            int offset = node * MatrixArray.SIZE;
+
+            if (dirty[node])
+                loadLocal(node, l, offset);
+
+            if (parent < 0)
+                System.arraycopy(l, offset, w, offset, MatrixArray.SIZE);
+            else
+                MatrixArray.multiply(w, parent * MatrixArray.SIZE, l, offset, w, offset);
+        }
+    }
+
+    /**
+     * Computes local matrix of given node in column-major order.
+     * @param node the node index
+     * @param m the array for matrix values
+     * @param offset the index of matrix in the array
+     */
+    private void loadLocal(int node, float[] m, int offset)
+    {
+        int t = 3 * node;
+
+        Quaternion.toMatrix(rotations, 4 * node, m, offset);
+
+        for (int i = 0; i < 3; i++)
+        {
+            float scale = scales[t + i];
+            int column = offset + 4 * i;
+
+            m[column] *= scale;
+            m[column + 1] *= scale;
+            m[column + 2] *= scale;
+        }
+
+        m[offset + 12] = translations[t];
+        m[offset + 13] = translations[t + 1];
+        m[offset + 14] = translations[t + 2];
+    }
+
+    /**
+     * Sorts nodes by depth using counting sort.
+     */
+    private void sortByDepth()
+    {
+        int maxDepth = -1;
+
+        for (int i = 0; i < count; i++)
+            maxDepth = Math.max(maxDepth, depths[i]);
+
+        levels = new int[maxDepth + 2];
+
+        for (int i = 0; i < count; i++)
+            levels[depths[i] + 1]++;
+
+        for (int level = 1; level < levels.length; level++)
+            levels[level] += levels[level - 1];
+
+        int[] next = Arrays.copyOf(levels, levels.length);
+
+        for (int i = 0; i < count; i++)
+            order[next[depths[i]]++] = i;
+
+        ordered = true;
+    }
+
+    /**
+     * Checks if node index is valid. Throws
+     * {@code IndexOutOfBoundsException} otherwise.
+     * @param node the node index
+     */
+    private void checkNode(int node)
+    {
+        if (node < 0 || node >= count)
+            throw new IndexOutOfBoundsException("Invalid node: " + node);
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.math;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Class for packing values into uniform or shader storage blocks.
+ *
+ * Values are appended to a {@code ByteBuffer} at its current position
+ * with alignment and padding required by std140 or std430 layout
+ * (see {@link Layout}), so many matrices and vectors can be laid out
+ * in a single pass without resetting the buffer. Offsets are counted from
+ * the position of the buffer when packer was created. Values are written
+ * in byte order of the buffer, which should be native order for OpenGL.
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class UniformPacker
+{
+    /**
+     * Memory layout of a block.
+     */
+    public enum Layout
+    {
+        /**
+         * Layout for uniform blocks. Array elements and matrix columns
+         * are aligned to 16 bytes.
+         */
+        STD140,
+
+        /**
+         * Layout for shader storage blocks. Arrays of scalars and 2-component
+         * vectors are tightly packed.
+         */
+        STD430
+    }
+
+    private final ByteBuffer buffer;
+    private final Layout layout;
+
+    // position of the block start in the buffer
+    private final int start;
+
+
+    /**
+     * Creates new packer writing to buffer at its current position.
+     * @param buffer the buffer to write values to
+     * @param layout the block layout
+     */
+    public UniformPacker(ByteBuffer buffer, Layout layout)
+    {
+        if (buffer == null || layout == null) throw new NullPointerException();
+
+        this.buffer = buffer;
+        this.layout = layout;
+        this.start = buffer.position();
+    }
+
+    /**
+     * Returns the block layout.
+     * @return the layout
+     */
+    public Layout getLayout()
+    {
+        return layout;
+    }
+
+    /**
+     * Returns the offset of next value from block start.
+     * @return the offset in bytes
+     */
+    public int getOffset()
+    {
+        return buffer.position() - start;
+    }
+
+    /**
+     * Pads block with zeros up to given alignment.
+     * @param alignment the alignment in bytes
+     * @return this packer
+     */
+    public UniformPacker align(int alignment)
+    {
+        int offset = getOffset();
+        int padding = (alignment - offset % alignment) % alignment;
+
+        for (int i = 0; i < padding; i++)
+            buffer.put((byte) 0);
+
+        return this;
+    }
+
+    /**
+     * Appends scalar value.
+     * @param value the value
+     * @return this packer
+     */
+    public UniformPacker putFloat(float value)
+    {
+        align(4);
+        buffer.putFloat(value);
+
+        return this;
+    }
+
+    /**
+     * Appends integer value.
+     * @param value the value
+     * @return this packer
+     */
+    public UniformPacker putInt(int value)
+    {
+        align(4);
+        buffer.putInt(value);
+
+        return this;
+    }
+
+    /**
+     * Appends 2-component vector.
+     * @param x the X component
+     * @param y the Y component
+     * @return this packer
+     */
+    public UniformPacker putVec2(float x, float y)
+    {
+        align(8);
+        buffer.putFloat(x).putFloat(y);
+
+        return this;
+    }
+
+    /**
+     * Appends 3-component vector. Next scalar value can be placed
+     * directly after it.
+     * @param x the X component
+     * @param y the Y component
+     * @param z the Z component
+     * @return this packer
+     */
+    public UniformPacker putVec3(float x, float y, float z)
+    {
+        align(16);
+        buffer.putFloat(x).putFloat(y).putFloat(z);
+
+        return this;
+    }
+
+    /**
+     * Appends 4-component vector.
+     * @param x the X component
+     * @param y the Y component
+     * @param z the Z component
+     * @param w the W component
+     * @return this packer
+     */
+    public UniformPacker putVec4(float x, float y, float z, float w)
+    {
+        align(16);
+        buffer.putFloat(x).putFloat(y).putFloat(z).putFloat(w);
+
+        return this;
+    }
+
+    /**
+     * Appends vector with 1 to 4 components.
+     * @param vector the vector
+     * @return this packer
+     */
+    public UniformPacker putVector(Vector vector)
+    {
+        int size = vector.size();
+
+        if (size < 1 || size > 4)
+            throw new IllegalArgumentException("Vector must have 1 to 4 components");
+
+        align(alignment(size));
+
+        for (int i = 0; i < size; i++)
+            buffer.putFloat(vector.values[i]);
+
+        return this;
+    }
+
+    /**
+     * Appends array of scalar values.
+     * @param values the array with values
+     * @param offset the index of first value
+     * @param count the number of values
+     * @return this packer
+     */
+    public UniformPacker putFloatArray(float[] values, int offset, int count)
+    {
+        return putVectorArray(values, offset, count, 1);
+    }
+
+    /**
+     * Appends array of vectors stored one after another in float array.
+     * @param values the array with vector components
+     * @param offset the index of first component
+     * @param count the number of vectors
+     * @param components the number of components of each vector, 1 to 4
+     * @return this packer
+     */
+    public UniformPacker putVectorArray(float[] values, int offset,
+            int count, int components)
+    {
+        if (components < 1 || components > 4)
+            throw new IllegalArgumentException("Vector must have 1 to 4 components");
+
+        int stride = arrayStride(components);
+
+        align(stride);
+
+        for (int i = 0; i < count; i++)
+        {
+            for (int j = 0; j < components; j++)
+                buffer.putFloat(values[offset++]);
+
+            pad(stride - 4 * components);
+        }
+
+        return this;
+    }
+
+    /**
+     * Appends matrix as array of column vectors. Matrix can have
+     * 2 to 4 rows and columns.
+     * @param matrix the matrix
+     * @return this packer
+     */
+    public UniformPacker putMatrix(Matrix matrix)
+    {
+        int rows = matrix.getRows();
+        int columns = matrix.getColumns();
+
+        if (rows < 2 || rows > 4 || columns < 2 || columns > 4)
+            throw new IllegalArgumentException(
+                    "Incompatible matrices: 2 to 4 rows and columns required");
+
+        int stride = arrayStride(rows);
+
+        align(stride);
+
+        for (int column = 0; column < columns; column++)
+        {
+            for (int row = 0; row < rows; row++)
+                buffer.putFloat(matrix.get(row, column));
+
+            pad(stride - 4 * rows);
+        }
+
+        return this;
+    }
+
+    /**
+     * Appends 3x3 matrix. Each column is padded to 16 bytes.
+     * @param m the matrix
+     * @return this packer
+     */
+    public UniformPacker putMatrix(Matrix3f m)
+    {
+        align(16);
+
+        buffer.putFloat(m.m00).putFloat(m.m10).putFloat(m.m20).putFloat(0.0f);
+        buffer.putFloat(m.m01).putFloat(m.m11).putFloat(m.m21).putFloat(0.0f);
+        buffer.putFloat(m.m02).putFloat(m.m12).putFloat(m.m22).putFloat(0.0f);
+
+        return this;
+    }
+
+    /**
+     * Appends 4x4 matrix.
+     * @param m the matrix
+     * @return this packer
+     */
+    public UniformPacker putMatrix(Matrix4f m)
+    {
+        align(16);
+
+        buffer.putFloat(m.m00).putFloat(m.m10).putFloat(m.m20).putFloat(m.m30);
+        buffer.putFloat(m.m01).putFloat(m.m11).putFloat(m.m21).putFloat(m.m31);
+        buffer.putFloat(m.m02).putFloat(m.m12).putFloat(m.m22).putFloat(m.m32);
+        buffer.putFloat(m.m03).putFloat(m.m13).putFloat(m.m23).putFloat(m.m33);
+
+        return this;
+    }
+
+    /**
+     * Appends range of 4x4 matrices as an array. Layout of 4x4 matrix
+     * arrays is the same as storage of {@link MatrixArray}, so all
+     * matrices are copied at once.
+     * @param matrices the array of matrices
+     * @param first the index of first matrix
+     * @param count the number of matrices
+     * @return this packer
+     */
+    public UniformPacker putMatrixArray(MatrixArray matrices, int first, int count)
+    {
+        align(16);
+        matrices.append(buffer, first, count);
+
+        return this;
+    }
+
+    /**
+     * Finishes a structure. Under std140 layout, structure size
+     * is rounded up to 16 bytes.
+     * @return this packer
+     */
+    public UniformPacker endStruct()
+    {
+        if (layout == Layout.STD140) align(16);
+
+        return this;
+    }
+
+    /**
+     * Pads block to its final size and flips the buffer, so it can be
+     * uploaded. Under std140 layout, block size is rounded up to 16 bytes.
+     * @return the buffer
+     */
+    public ByteBuffer finish()
+    {
+        endStruct();
+
+        // cast keeps compatibility with Java 8 Buffer methods
+        ((Buffer) buffer).flip();
+
+        return buffer;
+    }
+
+    /**
+     * Appends given number of zero bytes.
+     * @param count the number of bytes
+     */
+    private void pad(int count)
+    {
+        for (int i = 0; i < count; i++)
+            buffer.put((byte) 0);
+    }
+
+    /**
+     * Returns base alignment of vector with given number of components.
+     * @param components the number of components
+     * @return the alignment in bytes
+     */
+    private static int alignment(int components)
+    {
+        switch (components)
+        {
+            case 1: return 4;
+            case 2: return 8;
+            default: return 16;
+        }
+    }
+
+    /**
+     * Returns stride of array elements or matrix columns, which are vectors
+     * with given number of components.
+     * @param components the number of components
+     * @return the stride in bytes
+     */
+    private int arrayStride(int components)
+    {
+        if (layout == Layout.STD140) return 16;
+
+        return alignment(components);
+    }
+}
@@ -231,18 +231,11 @@ public final class Vector implements Serializable
      */
     public static float dot(float[] first, float[] second)
     {
-        float result = 0.0f;
-
         int count = first.length;
         if (count != second.length)
             throw new IllegalArgumentException("Incompatible arrays");
 
-        for (int i = 0; i < count; i++)
-        {
-            result += first[i] * second[i];
-        }
-
-        return result;
+        return Kernels.dot(first, 0, second, 0, count);
     }
 
     /**
@@ -316,20 +309,10 @@ public final class Vector implements Serializable
      */
     public static void normalize(float[] values, int first, int count)
     {
-        float sum = 0.0f;
-        int last = first + count;
-
-        for (int i = first; i < last; i++)
-        {
-            sum += values[i] * values[i];
-        }
-
+        float sum = Kernels.sumOfSquares(values, first, count);
         float scale = 1.0f / (float) Math.sqrt(sum);
 
-        for (int i = first; i < last; i++)
-        {
-            values[i] *= scale;
-        }
+        Kernels.scale(values, first, count, scale);
     }
 
     /**
@@ -362,13 +345,7 @@ public final class Vector implements Serializable
      */
     public static float length(float[] values, int first, int count)
     {
-        float sum = 0.0f;
-        int last = first + count;
-
-        for (int i = first; i < last; i++)
-        {
-            sum += values[i] * values[i];
-        }
+        float sum = Kernels.sumOfSquares(values, first, count);
 
         return (float) Math.sqrt(sum);
     }
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2015, Tomasz Kapuściński
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package pl.tomaszkax86.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import pl.tomaszkax86.math.EigenDecomposition;
+import pl.tomaszkax86.math.Matrix;
+
+/**
+ * This class represents oriented bounding box computed with
+ * principal component analysis of vertex positions.
+ *
+ * Box axes are eigenvectors of covariance matrix of vertices.
+ * Covariance is accumulated in one pass over vertices, with vertex
+ * groups processed in parallel and partial results merged afterwards.
+ * Second pass finds box extents along computed axes.
+ *
+ * @author Tomasz Kapuściński
+ */
+public final class OrientedBoundingBox
+{
+    // box center
+    private final float[] center = new float[3];
+
+    // unit box axes, axis i starts at index 3 * i
+    private final float[] axes = new float[9];
+
+    // half of box size along each axis
+    private final float[] halfExtents = new float[3];
+
+
+    /**
+     * Computes oriented bounding box of all vertices of a model.
+     * @param model the model
+     */
+    public OrientedBoundingBox(Model model)
+    {
+        List<VertexGroup> groups = new ArrayList<>();
+
+        for (VertexGroup group : model)
+            groups.add(group);
+
+        compute(groups);
+    }
+
+    /**
+     * Computes oriented bounding box of vertices of a vertex group.
+     * @param group the vertex group
+     */
+    public OrientedBoundingBox(VertexGroup group)
+    {
+        compute(Collections.singletonList(group));
+    }
+
+    /**
+     * Copies box center to array.
+     * @param result the array for X, Y and Z coordinates
+     */
+    public void getCenter(float[] result)
+    {
+        System.arraycopy(center, 0, result, 0, 3);
+    }
+
+    /**
+     * Copies box axis to array. Axes are unit length, orthogonal and
+     * sorted by decreasing variance of vertices along them.
+     * @param axis the axis index (0, 1 or 2)
+     * @param result the array for X, Y and Z coordinates
+     */
+    public void getAxis(int axis, float[] result)
+    {
+        System.arraycopy(axes, 3 * axis, result, 0, 3);
+    }
+
+    /**
+     * Returns half of box size along given axis.
+     * @param axis the axis index (0, 1 or 2)
+     * @return the half extent
+     */
+    public float getHalfExtent(int axis)
+    {
+        return halfExtents[axis];
+    }
+
+    /**
+     * Returns box volume.
+     * @return the volume
+     */
+    public float getVolume()
+    {
+        return 8.0f * halfExtents[0] * halfExtents[1] * halfExtents[2];
+    }
+
+    /**
+     * Checks if point lies inside the box or on its boundary.
+     * @param x X point coordinate
+     * @param y Y point coordinate
+     * @param z Z point coordinate
+     * @return true if point is inside the box, false otherwise
+     */
+    public boolean contains(float x, float y, float z)
+    {
+        float dx = x - center[0], dy = y - center[1], dz = z - center[2];
+
+        for (int i = 0; i < 3; i++)
+        {
+            float distance = dx * axes[3 * i] + dy * axes[3 * i + 1] + dz * axes[3 * i + 2];
+
+            if (Math.abs(distance) > halfExtents[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Computes box axes, center and extents.
+     * @param groups the vertex groups
+     */
+    private void compute(List<VertexGroup> groups)
+    {
+        Moments moments = groups.parallelStream()
+                .map(Moments::new)
+                .reduce(new Moments(), Moments::merge);
+
+        if (moments.count == 0)
+            throw new IllegalArgumentException("No vertices");
+
+        Matrix covariance = new Matrix(3);
+
+        covariance.set(0, 0, (float) moments.cxx);
+        covariance.set(0, 1, (float) moments.cxy);
+        covariance.set(0, 2, (float) moments.cxz);
+        covariance.set(1, 1, (float) moments.cyy);
+        covariance.set(1, 2, (float) moments.cyz);
+        covariance.set(2, 2, (float) moments.czz);
+
+        EigenDecomposition eigen = new EigenDecomposition(covariance);
+        float[] axis = new float[3];
+
+        eigen.getEigenvector(0, axis);
+        System.arraycopy(axis, 0, axes, 0, 3);
+        eigen.getEigenvector(1, axis);
+        System.arraycopy(axis, 0, axes, 3, 3);
+
+        // third axis from cross product keeps the basis right-handed
+        axes[6] = axes[1] * axes[5] - axes[2] * axes[4];
+        axes[7] = axes[2] * axes[3] - axes[0] * axes[5];
+        axes[8] = axes[0] * axes[4] - axes[1] * axes[3];
+
+        float[] bounds = groups.parallelStream()
+                .map(this::bounds)
+                .reduce(OrientedBoundingBox::mergeBounds)
+                .get();
+
+        for (int i = 0; i < 3; i++)
+        {
+            float middle = 0.5f * (bounds[i] + bounds[i + 3]);
+
+            halfExtents[i] = 0.5f * (bounds[i + 3] - bounds[i]);
+
+            center[0] += middle * axes[3 * i];
+            center[1] += middle * axes[3 * i + 1];
+            center[2] += middle * axes[3 * i + 2];
+        }
+    }
+
+    /**
+     * Finds minimum and maximum projections of vertices on box axes.
+     * @param group the vertex group
+     * @return minimums followed by maximums for each axis
+     */
+    private float[] bounds(VertexGroup group)
+    {
+        float[] bounds = {
+            Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+            Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY
+        };
+
+        for (Vertex vertex : group)
+        {
+            float x = vertex.getX(), y = vertex.getY(), z = vertex.getZ();
+
+            for (int i = 0; i < 3; i++)
+            {
+                float distance = x * axes[3 * i] + y * axes[3 * i + 1] + z * axes[3 * i + 2];
+
+                bounds[i] = Math.min(bounds[i], distance);
+                bounds[i + 3] = Math.max(bounds[i + 3], distance);
+            }
+        }
+
+        return bounds;
+    }
+
+    /**
+     * Merges projection bounds of two vertex sets.
+     * @param first the first bounds
+     * @param second the second bounds
+     * @return the merged bounds
+     */
+    private static float[] mergeBounds(float[] first, float[] second)
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            first[i] = Math.min(first[i], second[i]);
+            first[i + 3] = Math.max(first[i + 3], second[i + 3]);
+        }
+
+        return first;
+    }
+
+
+    /**
+     * Mean and covariance of a set of vertices.
+     */
+    private static final class Moments
+    {
+        long count;
+
+        // mean position
+        double mx, my, mz;
+
+        // covariance, divided by the number of vertices
+        double cxx, cxy, cxz, cyy, cyz, czz;
+
+        /**
+         * Creates moments of empty set.
+         */
+        Moments()
+        {
+        }
+
+        /**
+         * Computes moments of vertex group in one pass.
+         * @param group the vertex group
+         */
+        Moments(VertexGroup group)
+        {
+            // sums of products of deviations from the running mean
+            double sxx = 0.0, sxy = 0.0, sxz = 0.0;
+            double syy = 0.0, syz = 0.0, szz = 0.0;
+
+            for (Vertex vertex : group)
+            {
+                count++;
+
+                double dx = vertex.getX() - mx;
+                double dy = vertex.getY() - my;
+                double dz = vertex.getZ() - mz;
+
+                mx += dx / count;
+                my += dy / count;
+                mz += dz / count;
+
+                // Welford update with deviations from old and new mean
+                double ex = vertex.getX() - mx;
+                double ey = vertex.getY() - my;
+                double ez = vertex.getZ() - mz;
+
+                sxx += dx * ex;
+                sxy += dx * ey;
+                sxz += dx * ez;
+                syy += dy * ey;
+                syz += dy * ez;
+                szz += dz * ez;
+            }
+
+            if (count > 0)
+            {
+                cxx = sxx / count; cxy = sxy / count; cxz = sxz / count;
+                cyy = syy / count; cyz = syz / count; czz = szz / count;
+            }
+        }
+
+        /**
+         * Combines moments of two disjoint sets of vertices.
+         * @param first the moments of the first set
+         * @param second the moments of the second set
+         * @return the moments of both sets
+         */
+        static Moments merge(Moments first, Moments second)
+        {
+            if (first.count == 0) return second;
+            if (second.count == 0) return first;
+
+            Moments result = new Moments();
+            long n = first.count + second.count;
+            double wa = (double) first.count / n, wb = (double) second.count / n;
+            double dx = second.mx - first.mx;
+            double dy = second.my - first.my;
+            double dz = second.mz - first.mz;
+            double w = wa * wb;
+
+            result.count = n;
+            result.mx = first.mx + dx * wb;
+            result.my = first.my + dy * wb;
+            result.mz = first.mz + dz * wb;
+
+            result.cxx = wa * first.cxx + wb * second.cxx + w * dx * dx;
+            result.cxy = wa * first.cxy + wb * second.cxy + w * dx * dy;
+            result.cxz = wa * first.cxz + wb * second.cxz + w * dx * dz;
+            result.cyy = wa * first.cyy + wb * second.cyy + w * dy * dy;
+            result.cyz = wa * first.cyz + wb * second.cyz + w * dy * dz;
+            result.czz = wa * first.czz + wb * second.czz + w * dz * dz;
+
+            return result;
+        }
+    }
+}